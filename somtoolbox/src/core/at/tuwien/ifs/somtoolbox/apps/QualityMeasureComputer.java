@@ -91,6 +91,10 @@ public class QualityMeasureComputer implements NetworkModel, SOMToolboxApp {
         // BEARBEITUNG DER EINGELESENEN ARGUMENTE
         try {
             GrowingLayer layer = gsom.getLayer();
+            if (dataWinnerMapping != null) {
+                // take the winners from the file, rather than searching them for each input
+                layer.setDataWinners(data, dataWinnerMapping);
+            }
             /*
              * Quality measeures____________________________________________________________________________________
              */
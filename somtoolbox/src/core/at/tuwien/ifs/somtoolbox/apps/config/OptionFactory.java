@@ -619,6 +619,11 @@ public class OptionFactory extends AbstractOptionFactory {
         return new Switch("denseData", JSAP.NO_SHORTFLAG, "dense", "Set if input data vectors are densely populated.");
     }
 
+    public static Switch getSwitchSinglePrecision() {
+        return new Switch("singlePrecision", JSAP.NO_SHORTFLAG, "float",
+                "Store the values as 32 bit floating point numbers, halving the size of the file.");
+    }
+
     public static Switch getSwitchIsNormalized() {
         return new Switch("normalization", JSAP.NO_SHORTFLAG, "normalized",
                 "Set, if vectors are normalized to unit length. At the moment this option is not crucial.");
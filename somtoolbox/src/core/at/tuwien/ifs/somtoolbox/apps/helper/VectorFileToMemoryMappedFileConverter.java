@@ -0,0 +1,88 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.apps.helper;
+
+import java.io.IOException;
+
+import com.martiansoftware.jsap.JSAPResult;
+
+import at.tuwien.ifs.somtoolbox.apps.config.AbstractOptionFactory;
+import at.tuwien.ifs.somtoolbox.apps.config.OptionFactory;
+import at.tuwien.ifs.somtoolbox.data.MemoryMappedSOMLibInputData;
+
+/**
+ * Converts an input file to a binary file that can be memory mapped, i.e. read by
+ * {@link MemoryMappedSOMLibInputData}. Like the {@link VectorFileToRandomAccessFileConverter}, the vectors are written
+ * while reading the input file, so data sets larger than the available memory can be converted.
+ * 
+ * @author agent
+ * @version $Id$
+ */
+public class VectorFileToMemoryMappedFileConverter extends VectorFileToRandomAccessFileConverter {
+
+    private final String outputFile;
+
+    private final boolean singlePrecision;
+
+    private MemoryMappedSOMLibInputData.Writer writer;
+
+    public VectorFileToMemoryMappedFileConverter(String inputVectorFile, boolean singlePrecision) throws IOException {
+        this.outputFile = getOutputFileName(inputVectorFile, MemoryMappedSOMLibInputData.getFileNameSuffix());
+        this.singlePrecision = singlePrecision;
+        // write all the vectors
+        readVectorFile(inputVectorFile, false);
+        if (writer == null) { // a file without vectors, processLine was never called
+            writer = new MemoryMappedSOMLibInputData.Writer(outputFile, numVectors(), dim(), singlePrecision);
+        }
+        // write the mean vector, the labels and the header
+        writer.close(dataNames);
+    }
+
+    /**
+     * Stores the information read in the memory mapped file.
+     */
+    @Override
+    protected void processLine(int documentIndex, String[] lineElements) throws Exception {
+        if (writer == null) {
+            writer = new MemoryMappedSOMLibInputData.Writer(outputFile, numVectors(), dim(), singlePrecision);
+        }
+        dataNames[documentIndex] = lineElements[dim].trim();
+        for (int termIndex = 0; termIndex < dim; termIndex++) {
+            writer.writeValue(parseDouble(lineElements[termIndex]));
+        }
+    }
+
+    /**
+     * Starts the conversion
+     * 
+     * @param args Needed program arguments:
+     *            <ul>
+     *            <li>-v inputVectorFile, mandatory</li>
+     *            <li>--float store the values in single precision, optional</li>
+     *            </ul>
+     * @throws IOException If the input vector file can't be read, or the output binary file can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        JSAPResult config = OptionFactory.parseResults(args, OptionFactory.getOptInputVectorFile(true),
+                OptionFactory.getSwitchSinglePrecision());
+        String inputVectorFile = AbstractOptionFactory.getFilePath(config, "inputVectorFile");
+
+        new VectorFileToMemoryMappedFileConverter(inputVectorFile, config.getBoolean("singlePrecision"));
+    }
+
+}
@@ -49,7 +49,7 @@ public class VectorFileToRandomAccessFileConverter extends SOMLibSparseInputData
     boolean headerWritten = false;
 
     public VectorFileToRandomAccessFileConverter(String inputVectorFile) throws IOException {
-        String outputFile = StringUtils.chomp(inputVectorFile, ".gz") + ".bin";
+        String outputFile = getOutputFileName(inputVectorFile, RandomAccessFileSOMLibInputData.getFileNameSuffix());
         if (new File(outputFile).exists()) {
             new File(outputFile).delete();
         }
@@ -61,6 +61,15 @@ public class VectorFileToRandomAccessFileConverter extends SOMLibSparseInputData
         file.close();
     }
 
+    /** Constructor for sub-classes writing a different binary format; they have to read the vector file themselves. */
+    protected VectorFileToRandomAccessFileConverter() {
+    }
+
+    /** Returns the name of the binary file for the given input vector file, i.e. replaces the .gz by the suffix. */
+    protected static String getOutputFileName(String inputVectorFile, String suffix) {
+        return StringUtils.chomp(inputVectorFile, ".gz") + suffix;
+    }
+
     /**
      * Stores the information read in the random access file.
      */
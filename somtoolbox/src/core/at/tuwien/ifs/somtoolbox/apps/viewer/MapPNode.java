@@ -135,6 +135,9 @@ public class MapPNode extends PNode {
 
     private PNode clusterLines;
 
+    /** The precision of the widths of the lines of the dendrogram overlay, in pixels. */
+    private static final float CLUSTER_LINE_WIDTH_STEP = 0.5f;
+
     /**
      * Default constructors - reading of input files not yet done.
      */
@@ -636,6 +639,23 @@ public class MapPNode extends PNode {
         return Math.abs(lineWidth);
     }
 
+    /**
+     * Adds a line of the dendrogram overlay to the path of its width; the widths are rounded to
+     * {@value #CLUSTER_LINE_WIDTH_STEP} pixels, limiting the number of paths.
+     */
+    private static void addClusterLine(TreeMap<Float, GeneralPath> linesByWidth, float lineWidth, float x1, float y1,
+            float x2, float y2) {
+        Float width = Math.max(CLUSTER_LINE_WIDTH_STEP, Math.round(lineWidth / CLUSTER_LINE_WIDTH_STEP)
+                * CLUSTER_LINE_WIDTH_STEP);
+        GeneralPath lines = linesByWidth.get(width);
+        if (lines == null) {
+            lines = new GeneralPath();
+            linesByWidth.put(width, lines);
+        }
+        lines.moveTo(x1, y1);
+        lines.lineTo(x2, y2);
+    }
+
     // Angela
     /**
      * Creates new {@link TreeBuilder}. if the builder is null, the current clustering is removed.
@@ -649,56 +669,45 @@ public class MapPNode extends PNode {
         if (builder == null) {
             currentClusteringTree = null;
         } else {
+            if (state.somInputReader != null) {
+                builder.setDendrogramCache(state.somInputReader.getWeightVectorFileName());
+            }
             currentClusteringTree = builder.createTree(units);
-            HashMap<PNode, Integer> distanceInfo = currentClusteringTree.getDendrogramDistanceInfo();
-
-            int maxLevel = Collections.max(distanceInfo.values());
+            int maxLevel = currentClusteringTree.getDepth();
 
             ArrayList<ClusterNode> nodes = currentClusteringTree.getNodesAtLevel(maxLevel);
 
+            // the largest and smallest difference between the merge costs of any two of these clusters: the range of
+            // the costs, and the smallest gap between two sorted costs
+            float[] mergeCosts = new float[nodes.size()];
+            for (int i = 0; i < mergeCosts.length; i++) {
+                mergeCosts[i] = (float) nodes.get(i).getMergeCost();
+            }
+            Arrays.sort(mergeCosts);
             float maxMerge = Float.MIN_VALUE;
             float minMerge = Float.MAX_VALUE;
-
-            for (int i = 0; i < nodes.size(); i++) {
-                float merge1 = (float) nodes.get(i).getMergeCost();
-
-                for (int j = i + 1; j < nodes.size(); j++) {
-                    float merge2 = (float) nodes.get(j).getMergeCost();
-                    float mergeDiff = Math.abs(merge1 - merge2);
-
-                    if (mergeDiff > maxMerge) {
-                        maxMerge = mergeDiff;
-                    }
-                    if (mergeDiff < minMerge) {
-                        minMerge = mergeDiff;
-                    }
+            if (mergeCosts.length > 1) {
+                maxMerge = Math.max(maxMerge, mergeCosts[mergeCosts.length - 1] - mergeCosts[0]);
+                for (int i = 1; i < mergeCosts.length; i++) {
+                    minMerge = Math.min(minMerge, mergeCosts[i] - mergeCosts[i - 1]);
                 }
             }
 
-            int maxDepth = Integer.MIN_VALUE;
-            int minDepth = Integer.MAX_VALUE;
-
-            Integer[] depths = new Integer[0];
-            depths = distanceInfo.values().toArray(depths);
-
-            for (int i = 0; i < depths.length; i++) {
-                int depth1 = depths[i];
-
-                for (int j = i + 1; j < depths.length; j++) {
-                    int depth2 = depths[j];
-                    int depthDiff = Math.abs(depth1 - depth2);
-
-                    if (depthDiff > maxDepth) {
-                        maxDepth = depthDiff;
-                    }
-                    if (depthDiff < minDepth) {
-                        minDepth = depthDiff;
-                    }
+            // the merge cost of the cluster each unit is in at that level
+            double[][] clusterMergeCosts = new double[units.length][];
+            for (int col = 0; col < units.length; col++) {
+                clusterMergeCosts[col] = new double[units[col].length];
+            }
+            for (ClusterNode node : nodes) {
+                for (GeneralUnitPNode unit : node.getUnitNodes()) {
+                    clusterMergeCosts[unit.getUnit().getXPos()][unit.getUnit().getYPos()] = node.getMergeCost();
                 }
             }
 
             clusterLines = new PNode();
             double OFFSET = 25.0;
+            // all lines of the same width are drawn as one path, to keep the number of nodes independent of the map size
+            TreeMap<Float, GeneralPath> linesByWidth = new TreeMap<Float, GeneralPath>();
 
             for (int col = 0; col < units.length; col++) {
                 for (int row = 0; row < units[col].length; row++) {
@@ -711,17 +720,10 @@ public class MapPNode extends PNode {
                         float x2 = (float) (unit2.getX() + unit2.getWidth() / 2);
                         float y2 = (float) (unit2.getY() + OFFSET);
 
-                        PPath line = PPath.createLine(x1, y1, x2, y2);
-
-                        ClusterNode n1 = currentClusteringTree.findClusterOf(unit1, maxLevel);
-                        ClusterNode n2 = currentClusteringTree.findClusterOf(unit2, maxLevel);
-
                         // int depth = currentClusteringTree.compareClusterDistanceOfPNodes(unit1, unit2);
-                        float lineWidth = scaleLineWidth((float) Math.abs(n1.getMergeCost() - n2.getMergeCost()),
-                                maxMerge, minMerge);
-
-                        line.setStroke(new BasicStroke(lineWidth, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_BEVEL));
-                        clusterLines.addChild(line);
+                        float lineWidth = scaleLineWidth((float) Math.abs(clusterMergeCosts[col][row]
+                                - clusterMergeCosts[col][row + 1]), maxMerge, minMerge);
+                        addClusterLine(linesByWidth, lineWidth, x1, y1, x2, y2);
                     }
 
                     if (col < units.length - 1) {
@@ -733,21 +735,21 @@ public class MapPNode extends PNode {
                         float x2 = (float) (unit2.getX() - OFFSET);
                         float y2 = (float) (unit2.getY() + unit2.getHeight() / 2);
 
-                        PPath line = PPath.createLine(x1, y1, x2, y2);
-
-                        ClusterNode n1 = currentClusteringTree.findClusterOf(unit1, maxLevel);
-                        ClusterNode n2 = currentClusteringTree.findClusterOf(unit2, maxLevel);
-
                         // int depth = currentClusteringTree.compareClusterDistanceOfPNodes(unit1, unit2);
-                        float lineWidth = scaleLineWidth((float) Math.abs(n1.getMergeCost() - n2.getMergeCost()),
-                                maxMerge, minMerge);
-
-                        line.setStroke(new BasicStroke(lineWidth, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_BEVEL));
-                        clusterLines.addChild(line);
+                        float lineWidth = scaleLineWidth((float) Math.abs(clusterMergeCosts[col][row]
+                                - clusterMergeCosts[col + 1][row]), maxMerge, minMerge);
+                        addClusterLine(linesByWidth, lineWidth, x1, y1, x2, y2);
                     }
                 }
             }
 
+            for (Map.Entry<Float, GeneralPath> lines : linesByWidth.entrySet()) {
+                PPath path = new PPath(lines.getValue(), new BasicStroke(lines.getKey(), BasicStroke.CAP_SQUARE,
+                        BasicStroke.JOIN_BEVEL));
+                path.setPaint(null);
+                clusterLines.addChild(path);
+            }
+
             clusterLines.moveToFront();
 
             addChild(clusterLines);
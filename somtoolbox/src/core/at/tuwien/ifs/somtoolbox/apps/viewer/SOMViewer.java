@@ -152,10 +152,13 @@ import at.tuwien.ifs.somtoolbox.visualization.SmoothedDataHistograms.SDHControlP
 import at.tuwien.ifs.somtoolbox.visualization.clustering.ClusteringAbortedException;
 import at.tuwien.ifs.somtoolbox.visualization.clustering.CompleteLinkageTreeBuilder;
 import at.tuwien.ifs.somtoolbox.visualization.clustering.KMeansTreeBuilder;
+import at.tuwien.ifs.somtoolbox.visualization.clustering.LinkageDendrogramBuilder.Linkage;
+import at.tuwien.ifs.somtoolbox.visualization.clustering.LinkageTreeBuilder;
 import at.tuwien.ifs.somtoolbox.visualization.clustering.SingleLinkageTreeBuilder;
 import at.tuwien.ifs.somtoolbox.visualization.clustering.TreeBuilder;
 import at.tuwien.ifs.somtoolbox.visualization.clustering.WardsLinkageTreeBuilder;
 import at.tuwien.ifs.somtoolbox.visualization.clustering.WardsLinkageTreeBuilderAll;
+import at.tuwien.ifs.somtoolbox.visualization.clustering.WardsLinkageTreeBuilderNNChain;
 
 /**
  * The class providing the main window of the SOMViewer application. Initialises all the control element windows (see
@@ -325,6 +328,8 @@ public class SOMViewer extends MaximisedJFrame implements ActionListener, Observ
 
     private ButtonModel previousSelectedClusteringMethod; // previously selected item
 
+    private JCheckBoxMenuItem weightClusteringByHitsMenuItem = null;
+
     private JMenu windowMenu;
 
     // ToolBar
@@ -1949,6 +1954,7 @@ public class SOMViewer extends MaximisedJFrame implements ActionListener, Observ
             public Object construct() {
                 if (builder != null) {
                     builder.setMonitor(monitor);
+                    builder.setWeightByHits(weightClusteringByHitsMenuItem.isSelected());
                 }
                 try {
                     getMap().buildTree(builder);
@@ -2021,14 +2027,24 @@ public class SOMViewer extends MaximisedJFrame implements ActionListener, Observ
                 menuMapClustering));
         clusterMethodGroup.add(makeClusteringMenuItem("Complete linkage", new CompleteLinkageTreeBuilder(),
                 menuMapClustering));
+        clusterMethodGroup.add(makeClusteringMenuItem("Average linkage", new LinkageTreeBuilder(Linkage.AVERAGE),
+                menuMapClustering));
+        clusterMethodGroup.add(makeClusteringMenuItem("Centroid linkage", new LinkageTreeBuilder(Linkage.CENTROID),
+                menuMapClustering));
         clusterMethodGroup.add(makeClusteringMenuItem("Ward's linkage (fast, inexact)", new WardsLinkageTreeBuilder(),
                 menuMapClustering));
-        clusterMethodGroup.add(makeClusteringMenuItem("Ward's linkage (exact)", new WardsLinkageTreeBuilderAll(),
+        clusterMethodGroup.add(makeClusteringMenuItem("Ward's linkage (exact)", new WardsLinkageTreeBuilderNNChain(),
                 menuMapClustering));
         clusterMethodGroup.add(makeClusteringMenuItem("Ward's linkage (exact, experimental)",
                 new WardsLinkageTreeBuilderAll(true), menuMapClustering));
         clusterMethodGroup.add(makeClusteringMenuItem("K-means", new KMeansTreeBuilder(), menuMapClustering));
 
+        menuMapClustering.addSeparator();
+        weightClusteringByHitsMenuItem = new JCheckBoxMenuItem("Weight units by number of inputs");
+        weightClusteringByHitsMenuItem.setToolTipText("Weights each unit by the number of inputs mapped to it, and "
+                + "attaches empty units to the most similar cluster (applies to the next clustering)");
+        menuMapClustering.add(weightClusteringByHitsMenuItem);
+
         menuBar.add(clusterMenu);
     }
 
@@ -20,9 +20,11 @@ package at.tuwien.ifs.somtoolbox.clustering;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang.NotImplementedException;
 
@@ -32,10 +34,19 @@ import prefuse.data.Tree;
 import at.tuwien.ifs.somtoolbox.SOMToolboxException;
 import at.tuwien.ifs.somtoolbox.clustering.functions.ClusterElementFunctions;
 import at.tuwien.ifs.somtoolbox.structures.ElementWithIndex;
-import at.tuwien.ifs.somtoolbox.util.Indices2D;
 import at.tuwien.ifs.somtoolbox.util.StdErrProgressWriter;
 
 /**
+ * Ward's clustering for arbitrary elements, for which a distance and a mean can be computed via
+ * {@link ClusterElementFunctions}.
+ * <p>
+ * As the ESS of a merged cluster can in general not be derived from the ESS of its parts, the ESS of all pairwise
+ * mergers of the current clusters is kept in a matrix. After each merge, only the row of the new cluster needs to be
+ * computed, i.e. O(n) ESS computations per step, instead of O(n<sup>2</sup>) for re-evaluating all pairs. With
+ * {@link #setNumberOfCPUs(int)}, computing the initial matrix and the row updates is split among a fixed set of tasks
+ * executed by a thread pool that is kept for the whole clustering.
+ * </p>
+ * 
  * @author Rudolf Mayer
  * @version $Id: WardClustering.java 3932 2010-11-09 16:56:38Z mayer $
  */
@@ -43,9 +54,31 @@ public class WardClustering<E> implements HierarchicalClusteringAlgorithm<E> {
 
     private int numberOfCPUs = 1;
 
-    private CountDownLatch doneSignal;
+    private ExecutorService executor;
 
-    private ThreadPoolExecutor e;
+    /** The tasks computing the ESS of merging a cluster with all the current clusters, one for each CPU. */
+    private ArrayList<Callable<Object>> rowUpdateTasks;
+
+    /**
+     * The clusters stored in the matrix, indexed by their slot; a merged cluster re-uses the slot of its left node, the
+     * slot of the right node is not used anymore.
+     */
+    private ArrayList<HierarchicalCluster<E>> slotClusters;
+
+    /**
+     * The ESS of merging the clusters in two slots, stored as lower triangular matrix, i.e. slot i &gt; j is at
+     * <code>[i][j]</code>.
+     */
+    private double[][] mergedESS;
+
+    /** The ESS of the clusters in each slot, i.e. their {@link HierarchicalCluster#getMergeCost()}. */
+    private double[] slotESS;
+
+    /** The slots of the current {@link #clusters}, in the same order. */
+    private int[] activeSlots;
+
+    /** The slot whose row in {@link #mergedESS} is currently being computed by the {@link #rowUpdateTasks}. */
+    private int updatedSlot;
 
     protected ArrayList<HierarchicalCluster<E>>[] clusterLevels;
 
@@ -144,33 +177,101 @@ public class WardClustering<E> implements HierarchicalClusteringAlgorithm<E> {
             }
         }
         clusterLevels[clusters.size() - 1] = new ArrayList<HierarchicalCluster<E>>(clusters);
+        initMergeCosts();
     }
 
-    public double getInitialMinESS(List<HierarchicalCluster<E>> clusters) {
-        double[][] ess = new double[clusters.size()][clusters.size()];
-
-        double minESS = Double.MAX_VALUE;
-        for (int i = 0; i < clusters.size(); i++) {
-            for (int j = i + 1; j < clusters.size(); j++) {
-                HierarchicalCluster<E> cluster1 = clusters.get(i);
-                HierarchicalCluster<E> cluster2 = clusters.get(j);
-                HierarchicalCluster<E> merged = new HierarchicalCluster<E>(cluster1, cluster2);
-                merged.setMergeCost(ess(merged));
-                cluster1.setMergeCost(ess(cluster1));
-                cluster2.setMergeCost(ess(cluster2));
-
-                double increase = merged.getMergeCostIncrease();
-                ess[i][j] = ess[j][i] = increase;
-                if (increase < minESS) {
-                    minESS = increase;
-                    // short-cut
-                    if (minESS == 0) {
-                        return minESS;
+    /** Computes the ESS of all clusters, and of all pairwise mergers of them. */
+    private void initMergeCosts() {
+        final int size = clusters.size();
+        slotClusters = new ArrayList<HierarchicalCluster<E>>(clusters);
+        activeSlots = new int[size];
+        mergedESS = new double[size][];
+        slotESS = new double[size];
+        for (int i = 0; i < size; i++) {
+            activeSlots[i] = i;
+            mergedESS[i] = new double[i];
+            slotESS[i] = ess(clusters.get(i));
+            clusters.get(i).setMergeCost(slotESS[i]);
+        }
+        // the rows are of different length, thus distribute them round-robin
+        ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(numberOfCPUs);
+        for (int t = 0; t < numberOfCPUs; t++) {
+            final int offset = t;
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    for (int i = offset; i < size; i += numberOfCPUs) {
+                        for (int j = 0; j < i; j++) {
+                            mergedESS[i][j] = ess(slotClusters.get(j), slotClusters.get(i));
+                        }
                     }
+                    return null;
                 }
+            });
+        }
+        run(tasks);
+
+        rowUpdateTasks = new ArrayList<Callable<Object>>(numberOfCPUs);
+        for (int t = 0; t < numberOfCPUs; t++) {
+            final int offset = t;
+            rowUpdateTasks.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    HierarchicalCluster<E> updated = slotClusters.get(updatedSlot);
+                    // the merged cluster is the last one in the list of current clusters
+                    for (int k = offset; k < clusters.size() - 1; k += numberOfCPUs) {
+                        int slot = activeSlots[k];
+                        setMergedESS(updatedSlot, slot, ess(slotClusters.get(slot), updated));
+                    }
+                    return null;
+                }
+            });
+        }
+    }
+
+    private void run(ArrayList<Callable<Object>> tasks) {
+        if (executor == null) {
+            try {
+                tasks.get(0).call();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
             }
+            return;
+        }
+        try {
+            for (Future<Object> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private double getMergedESS(int slot1, int slot2) {
+        return slot1 > slot2 ? mergedESS[slot1][slot2] : mergedESS[slot2][slot1];
+    }
+
+    private void setMergedESS(int slot1, int slot2, double ess) {
+        if (slot1 > slot2) {
+            mergedESS[slot1][slot2] = ess;
+        } else {
+            mergedESS[slot2][slot1] = ess;
         }
-        return minESS;
+    }
+
+    /**
+     * Returns the minimum increase in ESS of merging two of the current clusters.
+     * 
+     * @param clusters the current clusters, as the merge costs are cached for them only
+     */
+    public double getInitialMinESS(List<HierarchicalCluster<E>> clusters) {
+        if (clusters.size() < 2) {
+            return Double.MAX_VALUE;
+        }
+        int[] positions = findOptimalClusterMerger();
+        return getMergeCostIncrease(activeSlots[positions[0]], activeSlots[positions[1]]);
     }
 
     public double ess(Cluster<E> cluster) {
@@ -185,98 +286,79 @@ public class WardClustering<E> implements HierarchicalClusteringAlgorithm<E> {
         return e;
     }
 
+    /** Computes the ESS of the cluster that would result from merging the two given clusters. */
+    private double ess(Cluster<E> cluster1, Cluster<E> cluster2) {
+        ArrayList<E> data = new ArrayList<E>(cluster1.size() + cluster2.size());
+        data.addAll(cluster1.getData());
+        data.addAll(cluster2.getData());
+        return ess(new Cluster<E>(data));
+    }
+
+    private double getMergeCostIncrease(int slot1, int slot2) {
+        return getMergedESS(slot1, slot2) - (slotESS[slot1] + slotESS[slot2]);
+    }
+
+    /**
+     * Merges the two clusters with the minimum increase in ESS.
+     * 
+     * @param clusters the current clusters, as the merge costs are cached for them only
+     */
     public HierarchicalCluster<E> clusterStep(List<HierarchicalCluster<E>> clusters) {
-        HierarchicalCluster<E> cMerged = null;
-        // we need to build the cross-product of all elements, i.e. clusters.size()*clusters.size() combinations,
-        // forming a symmetric matrix
-        // we can cut off a bit by just taking one half of the matrix, and cutting the diagonal
-
-        if (numberOfCPUs > 1 && clusters.size() > numberOfCPUs) {
-            // we are taking the hard-way for multi-core clustering. a technically much easier solution would be:
-            // - build a list of all needed combinations of clusters i and j (i.e. one half of the symmetric matrix)
-            // - cut the list in numberOfCPUs pieces, and process each of them, then merge
-            // this is easy to do, but needs a list of ((clusters.size()*clusters.size()/2 - clusters.size()) entries,
-            // potentially a lot of memory
-            //
-            // thus, we calculate indices for starting and ending offsets in the matrix
-            final Indices2D[] indices = getIndices(clusters);
-
-            doneSignal = new CountDownLatch(indices.length); // important: we need to reset this in each iteration!
-            // System.out.println("distributed clustering, count: " + doneSignal.getCount());
-            ArrayList<ClusterThread> threads = new ArrayList<ClusterThread>((int) doneSignal.getCount());
-
-            // create & execute all the threads
-            for (Indices2D indice : indices) {
-                final ClusterThread thread = new ClusterThread(indice);
-                threads.add(thread);
-                e.execute(thread);
-            }
-            try {
-                doneSignal.await(); // wait for all processes to finish
-            } catch (InterruptedException ie) {
-            }
-            // merge the results
-            double minESSIncrease = Double.MAX_VALUE;
-            for (int i = 0; i < threads.size(); i++) {
-                final HierarchicalCluster<E> mergedCluster = threads.get(i).mergedCluster;
-                // System.out.println(mergedCluster);
-                final double increase = mergedCluster.getMergeCostIncrease();
-                if (increase < minESSIncrease) {
-                    cMerged = mergedCluster;
-                    minESSIncrease = increase;
-                }
-            }
-        } else {
-            // System.out.println("normal clustering");
-            cMerged = findOptiomalClusterMerger(clusters);
-        }
+        int[] positions = findOptimalClusterMerger();
+        int leftSlot = activeSlots[positions[0]];
+        int rightSlot = activeSlots[positions[1]];
+        HierarchicalCluster<E> cMerged = new HierarchicalCluster<E>(slotClusters.get(leftSlot),
+                slotClusters.get(rightSlot));
+        cMerged.setMergeCost(getMergedESS(leftSlot, rightSlot));
         if (debug) {
             System.out.println("\nMerging clusters with size " + cMerged.getLeftNode().size() + " & "
                     + cMerged.getRightNode().size() + ", ESS: " + cMerged.getMergeCostIncrease());
         }
-        clusters.remove(cMerged.getLeftNode());
-        clusters.remove(cMerged.getRightNode());
+        clusters.remove(positions[1]);
+        clusters.remove(positions[0]);
         clusters.add(cMerged);
+        // keep the slots in the same order as the clusters
+        System.arraycopy(activeSlots, positions[0] + 1, activeSlots, positions[0], positions[1] - positions[0] - 1);
+        System.arraycopy(activeSlots, positions[1] + 1, activeSlots, positions[1] - 1, clusters.size()
+                - positions[1]);
+        activeSlots[clusters.size() - 1] = leftSlot;
+        slotClusters.set(leftSlot, cMerged);
+        slotClusters.set(rightSlot, null);
+        slotESS[leftSlot] = cMerged.getMergeCost();
+        updatedSlot = leftSlot;
+        run(rowUpdateTasks);
+
         clusterLevels[clusters.size() - 1] = new ArrayList<HierarchicalCluster<E>>(clusters);
         clusterLevelMergeCosts[clusters.size() - 1] = cMerged.getMergeCost();
         return cMerged;
     }
 
-    private HierarchicalCluster<E> findOptiomalClusterMerger(List<HierarchicalCluster<E>> clusters) {
-        return findOptiomalClusterMerger(clusters, 0, 0 + 1, clusters.size() - 1, clusters.size() - 1);
-    }
-
-    private HierarchicalCluster<E> findOptiomalClusterMerger(List<HierarchicalCluster<E>> clusters, int startX,
-            int startY, int endX, int endY) {
+    /** Returns the positions in {@link #clusters} of the two clusters with the minimum increase in ESS. */
+    private int[] findOptimalClusterMerger() {
         double minESSIncrease = Double.MAX_VALUE;
-        HierarchicalCluster<E> cMerged = null;
-        // System.out.println("find best cluster in " + startX + ", " + startY + ", " + endX + ", " + endY);
-        for (int i = startX; i <= endX; i++) {
-            for (int j = i == startX ? startY : i + 1; j <= (i == endX ? endY : clusters.size() - 1); j++) {
-                // System.out.println(i + ", " + j);
-                HierarchicalCluster<E> c1 = clusters.get(i);
-                HierarchicalCluster<E> c2 = clusters.get(j);
-                HierarchicalCluster<E> cnew = new HierarchicalCluster<E>(c1, c2);
-                cnew.setMergeCost(ess(cnew));
-                c1.setMergeCost(ess(c1));
-                c2.setMergeCost(ess(c2));
-
-                double increase = cnew.getMergeCostIncrease();
+        int[] positions = new int[2];
+        int size = clusters.size();
+        for (int i = 0; i < size; i++) {
+            int slot1 = activeSlots[i];
+            double ess1 = slotESS[slot1];
+            double[] row = mergedESS[slot1];
+            for (int j = i + 1; j < size; j++) {
+                int slot2 = activeSlots[j];
+                double increase = (slot1 > slot2 ? row[slot2] : mergedESS[slot2][slot1]) - (ess1 + slotESS[slot2]);
                 if (increase < minESSIncrease) {
                     minESSIncrease = increase;
-                    cMerged = cnew;
+                    positions[0] = i;
+                    positions[1] = j;
                     // shortcut, stop if we have already a minimal ESS
                     // FIXME: maybe if there are more elements with the same ESS, they should all be merged in the same
                     // step?
-                    if (minESSIncrease == startX) {
-                        System.out.println("\nBreaking calculation, minESSIncrease is 0");
-                        i = endX;
-                        break;
+                    if (minESSIncrease == 0) {
+                        return positions;
                     }
                 }
             }
         }
-        return cMerged;
+        return positions;
     }
 
     /** Returns the clustering at a certain level indicated by the merge cost for that level */
@@ -336,70 +418,13 @@ public class WardClustering<E> implements HierarchicalClusteringAlgorithm<E> {
     public void setNumberOfCPUs(int numberOfCPUs) {
         System.out.println("Ward clustering, working with " + numberOfCPUs + " CPUs.");
         this.numberOfCPUs = numberOfCPUs;
-        e = (ThreadPoolExecutor) Executors.newFixedThreadPool(numberOfCPUs);
-        doneSignal = new CountDownLatch(numberOfCPUs);
-        // System.out.println("Set donesignal: " + doneSignal.getCount() + ", executor thread: " + e.getCorePoolSize());
-    }
-
-    /** find matrix indices for starting & ending the symmetrical matrix indices */
-    private Indices2D[] getIndices(List<HierarchicalCluster<E>> clusters) {
-        // the number of elements in the matrix is 1+2+3...n
-        final int size = clusters.size();
-        int elementCount = (int) ((size - 1) * size / 2d);
-        int splitSize = (int) Math.ceil(elementCount / (double) numberOfCPUs);
-
-        // there might be cases in which we can't use the last CPU
-        // e.g. we have 36 combinations, and 7 CPUs
-        // ==> the splitsize would be 5.14, ceiling up to 6 (as 5*7 == 35 and thus not covering all combinations)
-        // but then, already 6 splits (6*6) is covering all combinations, thus we don't need the last split!
-        int splits = (numberOfCPUs - 1) * splitSize == elementCount ? numberOfCPUs - 1 : numberOfCPUs;
-
-        Indices2D[] indices = new Indices2D[splits];
-        // System.out.println("\nclusters:" + clusters.size() + ", elementCount: " + elementCount + ", splitsize:" +
-        // splitSize);
-        int index = 0;
-        for (int i = 0; i < size; i++) {
-            for (int j = i + 1; j < size; j++) {
-                final int indicesIndex = index / splitSize;
-                // System.out.println("size: " + size + ", (index + 1) / splitSize: " + indicesIndex);
-                // System.out.println(index + " => " + i + "/" + j);
-                if (index % splitSize == 0) { // start index
-                    indices[indicesIndex] = new Indices2D(i, j, 0, 0);
-                    // System.out.println("set start for split " + indicesIndex);
-                }
-                if ((index + 1) % splitSize == 0 || index + 1 == elementCount) { // end index
-                    indices[indicesIndex].setEnd(i, j);
-                    // System.out.println("set end for split " + indicesIndex);
-                }
-                index++;
-            }
+        if (executor != null) {
+            executor.shutdown();
         }
-        // System.out.println("\nclusters:" + clusters.size() + ", elementCount: " + elementCount + ", splitsize:" +
-        // splitSize + " => "
-        // + Arrays.toString(indices));
-
-        return indices;
+        executor = numberOfCPUs > 1 ? Executors.newFixedThreadPool(numberOfCPUs) : null;
     }
 
     public List<HierarchicalCluster<E>> getClusters() {
         return clusters;
     }
-
-    class ClusterThread implements Runnable {
-
-        private HierarchicalCluster<E> mergedCluster;
-
-        private Indices2D coords;
-
-        public ClusterThread(Indices2D coords) {
-            this.coords = coords;
-        }
-
-        @Override
-        public void run() {
-            mergedCluster = findOptiomalClusterMerger(clusters, coords.startX, coords.startY, coords.endX, coords.endY);
-            // System.out.println("found cluster for " + coords + " : " + mergedCluster);
-            doneSignal.countDown();
-        }
-    }
 }
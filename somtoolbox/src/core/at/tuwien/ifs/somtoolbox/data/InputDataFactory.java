@@ -52,6 +52,10 @@ public class InputDataFactory {
                 RandomAccessFileSOMLibInputData.getFormatName());
         inputClasses.put(RandomAccessFileSOMLibInputData.getFormatName(), RandomAccessFileSOMLibInputData.class);
 
+        knownExtensions.put(MemoryMappedSOMLibInputData.getFileNameSuffix(),
+                MemoryMappedSOMLibInputData.getFormatName());
+        inputClasses.put(MemoryMappedSOMLibInputData.getFormatName(), MemoryMappedSOMLibInputData.class);
+
         knownExtensions.put(SimpleMatrixInputData.getFileNameSuffix(), SimpleMatrixInputData.getFormatName());
         inputClasses.put(SimpleMatrixInputData.getFormatName(), SimpleMatrixInputData.class);
 
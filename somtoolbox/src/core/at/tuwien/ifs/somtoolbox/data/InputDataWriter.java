@@ -45,7 +45,7 @@ public class InputDataWriter {
     /** Supported Output File Format Types */
     public static final String[] OUTPUT_FILE_FORMAT_TYPES = { SOMLibSparseInputData.getFormatName(),
             ARFFFormatInputData.getFormatName(), RandomAccessFileSOMLibInputData.getFormatName(),
-            ESOMInputData.getFormatName(), SOMPAKInputData.getFormatName(), "Orange", "CSV" };
+            MemoryMappedSOMLibInputData.getFormatName(), ESOMInputData.getFormatName(), SOMPAKInputData.getFormatName(), "Orange", "CSV" };
 
     /**
      * Writes the data to <a href="http://databionic-esom.sourceforge.net/user.html#File_formats">ESOM lrn/cls
@@ -493,6 +493,10 @@ public class InputDataWriter {
         } else if (outputFormat.equals(RandomAccessFileSOMLibInputData.getFormatName())) {
             logger.info("Writing Random Access Binary Data Format.");
             RandomAccessFileSOMLibInputData.write(data, fName);
+        } else if (outputFormat.equals(MemoryMappedSOMLibInputData.getFormatName())) {
+            logger.info("Writing Memory Mapped Binary Data Format.");
+            MemoryMappedSOMLibInputData.write(data, StringUtils.appendExtension(fName,
+                    MemoryMappedSOMLibInputData.getFileNameSuffix()), false);
         } else if (outputFormat.equals(ARFFFormatInputData.getFormatName())) {
             logger.info("Writing ARFF Data Format, skipping instance names: " + skipInstanceNames);
             InputDataWriter.writeAsWekaARFF(data, fName, !skipInstanceNames, skipInputsWithoutClass);
@@ -41,6 +41,12 @@ public class InputDatum {
 
     private int nonZeros;
 
+    /** The indices of the non-zero values in ascending order, if the datum is stored sparse; otherwise null. */
+    private int[] sparseIndices;
+
+    /** The non-zero values, if the datum is stored sparse; otherwise null. */
+    private double[] sparseValues;
+
     /**
      * Constructs a new InputDatum.
      * 
@@ -78,6 +84,39 @@ public class InputDatum {
         this.nonZeros = nonZeros;
     }
 
+    /**
+     * Constructs a new sparse InputDatum, holding only the non-zero values. The dense vector is created only if
+     * {@link #getVector()} is called; distance computations should rather use {@link #getSparseIndices()} and
+     * {@link #getSparseValues()}.
+     * 
+     * @param label The label of the input datum. Basically this should be a sort of unique id.
+     * @param dim The dimensionality of the vector.
+     * @param sparseIndices The indices of the non-zero values, in ascending order. The array is not copied.
+     * @param sparseValues The non-zero values. The array is not copied.
+     */
+    public InputDatum(String label, int dim, int[] sparseIndices, double[] sparseValues) {
+        this.label = label;
+        this.dim = dim;
+        this.sparseIndices = sparseIndices;
+        this.sparseValues = sparseValues;
+        this.nonZeros = sparseIndices.length;
+    }
+
+    private InputDatum(String label, int dim, DoubleMatrix1D vector) {
+        this.label = label;
+        this.dim = dim;
+        this.vector = vector;
+        this.nonZeros = -1;
+    }
+
+    /**
+     * Creates a new InputDatum holding the given vector, which is not copied; for input data that already created a
+     * new vector for the datum.
+     */
+    static InputDatum wrap(String label, DoubleMatrix1D vector) {
+        return new InputDatum(label, vector.size(), vector);
+    }
+
     /**
      * Returns the label of the InputDatum.
      * 
@@ -93,9 +132,40 @@ public class InputDatum {
      * @return the vector of the InputDatum.
      */
     public DoubleMatrix1D getVector() {
+        if (vector == null) { // sparse datum, create the dense vector on first request
+            DoubleMatrix1D dense = new DenseDoubleMatrix1D(dim);
+            for (int i = 0; i < sparseIndices.length; i++) {
+                dense.setQuick(sparseIndices[i], sparseValues[i]);
+            }
+            vector = dense;
+        }
         return vector;
     }
 
+    /**
+     * Returns whether this datum is stored sparse, i.e. whether {@link #getSparseIndices()} and
+     * {@link #getSparseValues()} are available.
+     */
+    public boolean isSparse() {
+        return sparseIndices != null;
+    }
+
+    /**
+     * Returns the indices of the non-zero values in ascending order, or <code>null</code> if the datum is not stored
+     * sparse. The array is shared with the input data, and must not be modified.
+     */
+    public int[] getSparseIndices() {
+        return sparseIndices;
+    }
+
+    /**
+     * Returns the non-zero values, matching {@link #getSparseIndices()}, or <code>null</code> if the datum is not
+     * stored sparse. The array is shared with the input data, and must not be modified.
+     */
+    public double[] getSparseValues() {
+        return sparseValues;
+    }
+
     /**
      * Returns the dimensionality of the vector.
      * 
@@ -172,6 +242,7 @@ public class InputDatum {
 
     void calculateFeatureDensity() {
         nonZeros = 0;
+        DoubleMatrix1D vector = getVector();
         for (int i = 0; i < vector.size(); i++) {
             if (vector.getQuick(i) != 0) {
                 nonZeros++;
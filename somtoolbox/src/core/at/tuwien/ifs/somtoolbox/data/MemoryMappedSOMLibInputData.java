@@ -0,0 +1,424 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import cern.colt.matrix.impl.DenseDoubleMatrix1D;
+
+import at.tuwien.ifs.somtoolbox.layers.metrics.DistanceMetric;
+import at.tuwien.ifs.somtoolbox.layers.metrics.MetricException;
+
+/**
+ * Reads SOMLib input from a binary file that is mapped into memory, via {@link FileChannel#map}. Contrary to
+ * {@link RandomAccessFileSOMLibInputData}, reading a vector does not need any system calls, but just copies the values
+ * from the mapped file, i.e. from the operating system's page cache. Data sets larger than the heap can thus be used
+ * for training at almost the speed of in-memory data. Files larger than 2GB are mapped in several segments, each
+ * holding a whole number of vectors.<br/>
+ * The file consists of
+ * <ul>
+ * <li>a header of {@value #HEADER_SIZE} bytes, holding the number of vectors, the dimensionality, the size of a value,
+ * and the offsets of the sections below,</li>
+ * <li>the vectors, stored row by row, either as 64 bit or as 32 bit floating point values,</li>
+ * <li>the mean vector, as 64 bit floating point values,</li>
+ * <li>the label index, i.e. the start offset of each label (and the end offset of the last label) in the label
+ * section,</li>
+ * <li>the labels, UTF-8 encoded.</li>
+ * </ul>
+ * All values are stored in little endian byte order. Such files are created with a {@link Writer}, e.g. by
+ * {@link #write(InputData, String, boolean)}, or from an input vector file by
+ * {@link at.tuwien.ifs.somtoolbox.apps.helper.VectorFileToMemoryMappedFileConverter}.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class MemoryMappedSOMLibInputData extends AbstractSOMLibSparseInputData {
+
+    private static final int MAGIC_NUMBER = 0x534F4D4D; // "SOMM"
+
+    private static final int FORMAT_VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+
+    private static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private static final Charset LABEL_CHARSET = Charset.forName("UTF-8");
+
+    /** The maximum size of a single mapped segment of the vectors section. */
+    private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+    private final boolean singlePrecision;
+
+    private int vectorsPerSegment;
+
+    /** The mapped segments of the vectors section, if the values are stored in double precision. */
+    private DoubleBuffer[] doubleSegments;
+
+    /** The mapped segments of the vectors section, if the values are stored in single precision. */
+    private FloatBuffer[] floatSegments;
+
+    public MemoryMappedSOMLibInputData(String fileName) throws IOException {
+        this(SOMLibSparseInputData.DEFAULT_NORMALISED, new Random(SOMLibSparseInputData.DEFAULT_RANDOM_SEED), null,
+                null, fileName);
+    }
+
+    public MemoryMappedSOMLibInputData(boolean norm, Random rand, TemplateVector tv, SOMLibClassInformation clsInfo,
+            String fileName) throws IOException {
+        super(norm, rand);
+        this.templateVector = tv;
+        this.classInfo = clsInfo;
+
+        RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(BYTE_ORDER);
+            if (header.getInt() != MAGIC_NUMBER) {
+                throw new IOException("File " + fileName + " is not a memory mapped input data file.");
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported version " + version + " of memory mapped input data file "
+                        + fileName + ", expected version " + FORMAT_VERSION + ".");
+            }
+            numVectors = header.getInt();
+            dim = header.getInt();
+            int valueSize = header.getInt();
+            header.getInt(); // reserved
+            long vectorsOffset = header.getLong();
+            long meanOffset = header.getLong();
+            long labelIndexOffset = header.getLong();
+            long labelsOffset = header.getLong();
+            long fileLength = header.getLong();
+            if (fileLength != channel.size()) {
+                throw new IOException("Memory mapped input data file " + fileName + " corrupt: header says "
+                        + fileLength + " bytes, but file has " + channel.size() + " bytes.");
+            }
+            singlePrecision = valueSize == Float.SIZE / 8;
+
+            // map the vectors, in segments of whole vectors
+            long vectorSize = (long) dim * valueSize;
+            vectorsPerSegment = (int) Math.max(1, Math.min(numVectors, MAX_SEGMENT_SIZE / Math.max(1, vectorSize)));
+            int segments = numVectors == 0 ? 0 : (numVectors - 1) / vectorsPerSegment + 1;
+            if (singlePrecision) {
+                floatSegments = new FloatBuffer[segments];
+            } else {
+                doubleSegments = new DoubleBuffer[segments];
+            }
+            for (int s = 0; s < segments; s++) {
+                int vectors = Math.min(vectorsPerSegment, numVectors - s * vectorsPerSegment);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, vectorsOffset + s
+                        * vectorsPerSegment * vectorSize, vectors * vectorSize);
+                segment.order(BYTE_ORDER);
+                if (singlePrecision) {
+                    floatSegments[s] = segment.asFloatBuffer();
+                } else {
+                    doubleSegments[s] = segment.asDoubleBuffer();
+                }
+            }
+
+            double[] mean = new double[dim];
+            channel.map(FileChannel.MapMode.READ_ONLY, meanOffset, (long) dim * Double.SIZE / 8).order(BYTE_ORDER).asDoubleBuffer().get(
+                    mean);
+            meanVector = new DenseDoubleMatrix1D(mean);
+
+            // read the labels via the label index
+            LongBuffer labelIndex = channel.map(FileChannel.MapMode.READ_ONLY, labelIndexOffset,
+                    (long) (numVectors + 1) * Long.SIZE / 8).order(BYTE_ORDER).asLongBuffer();
+            ByteBuffer labels = channel.map(FileChannel.MapMode.READ_ONLY, labelsOffset,
+                    fileLength - labelsOffset);
+            dataNames = new String[numVectors];
+            nameCache = new LinkedHashMap<String, Integer>(numVectors);
+            byte[] labelBytes = new byte[0];
+            for (int i = 0; i < numVectors; i++) {
+                int start = (int) labelIndex.get(i);
+                int length = (int) (labelIndex.get(i + 1) - start);
+                if (labelBytes.length < length) {
+                    labelBytes = new byte[length];
+                }
+                labels.position(start);
+                labels.get(labelBytes, 0, length);
+                dataNames[i] = new String(labelBytes, 0, length, LABEL_CHARSET);
+                nameCache.put(dataNames[i], Integer.valueOf(i));
+            }
+        } finally {
+            // the mapped buffers stay valid after the file is closed
+            file.close();
+        }
+        Logger.getLogger("at.tuwien.ifs.somtoolbox").info(
+                "Mapped " + numVectors + " vectors of dimension " + dim + " from " + fileName + " ("
+                        + (singlePrecision ? "single" : "double") + " precision).");
+    }
+
+    /** Returns whether the values are stored as 32 bit floating point values. */
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
+    @Override
+    public InputDatum getInputDatum(int d) {
+        // fill the vector of the datum directly from the mapped buffer, InputDatum would copy it once more
+        int segment = d / vectorsPerSegment;
+        int position = (d - segment * vectorsPerSegment) * dim;
+        DenseDoubleMatrix1D vector = new DenseDoubleMatrix1D(dim);
+        if (singlePrecision) {
+            FloatBuffer values = floatSegments[segment];
+            for (int i = 0; i < dim; i++) {
+                vector.setQuick(i, values.get(position + i));
+            }
+        } else {
+            DoubleBuffer values = doubleSegments[segment];
+            for (int i = 0; i < dim; i++) {
+                vector.setQuick(i, values.get(position + i));
+            }
+        }
+        return InputDatum.wrap(dataNames[d], vector);
+    }
+
+    @Override
+    public double[] getInputVector(int d) {
+        double[] vector = new double[dim];
+        getInputVector(d, vector);
+        return vector;
+    }
+
+    /**
+     * Copies the vector with the given index to the given array, without allocating any memory, e.g. to re-use one
+     * array for all vectors in a training loop.
+     */
+    public void getInputVector(int d, double[] vector) {
+        int segment = d / vectorsPerSegment;
+        int position = (d - segment * vectorsPerSegment) * dim;
+        if (singlePrecision) {
+            FloatBuffer values = floatSegments[segment];
+            for (int i = 0; i < dim; i++) {
+                vector[i] = values.get(position + i);
+            }
+        } else {
+            // work on a duplicate, as the position of the buffer is shared between threads
+            DoubleBuffer values = doubleSegments[segment].duplicate();
+            values.position(position);
+            values.get(vector, 0, dim);
+        }
+    }
+
+    @Override
+    public double getValue(int x, int y) {
+        int segment = x / vectorsPerSegment;
+        int position = (x - segment * vectorsPerSegment) * dim + y;
+        if (singlePrecision) {
+            return floatSegments[segment].get(position);
+        } else {
+            return doubleSegments[segment].get(position);
+        }
+    }
+
+    @Override
+    public double mqe0(DistanceMetric metric) {
+        if (mqe0 == -1) { // mqe0 for data was not yet calculated
+            mqe0 = 0;
+            try {
+                double[] mean = meanVector.toArray();
+                double[] vector = new double[dim];
+                for (int i = 0; i < numVectors; i++) {
+                    getInputVector(i, vector);
+                    mqe0 += metric.distance(mean, vector);
+                }
+            } catch (MetricException e) {
+                Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(e.getMessage());
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        }
+        return mqe0;
+    }
+
+    @Override
+    public InputData subset(String[] names) {
+        InputDatum[] data = new InputDatum[names.length];
+        for (int i = 0; i < names.length; i++) {
+            data[i] = getInputDatum(names[i]);
+        }
+        return new SOMLibSparseInputData(data, classInfo);
+    }
+
+    /** Writes the given data to a memory mapped input data file. */
+    public static void write(InputData data, String fileName, boolean singlePrecision) throws IOException {
+        Writer writer = new Writer(fileName, data.numVectors(), data.dim(), singlePrecision);
+        for (int i = 0; i < data.numVectors(); i++) {
+            writer.writeVector(data.getInputVector(i));
+        }
+        String[] labels = new String[data.numVectors()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = data.getLabel(i);
+        }
+        writer.close(labels);
+    }
+
+    public static String getFormatName() {
+        return "memoryMapped";
+    }
+
+    public static String getFileNameSuffix() {
+        return ".mvec";
+    }
+
+    /**
+     * Writes a memory mapped input data file sequentially, one value after the other, so that also data that does not
+     * fit into memory can be written. The mean vector is computed from the values as they are stored, i.e. after
+     * rounding to single precision if needed.
+     */
+    public static class Writer {
+        private static final int BUFFER_SIZE = 1 << 20;
+
+        private final RandomAccessFile file;
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(BYTE_ORDER);
+
+        private final int numVectors;
+
+        private final int dim;
+
+        private final boolean singlePrecision;
+
+        private final double[] mean;
+
+        private long valuesWritten = 0;
+
+        public Writer(String fileName, int numVectors, int dim, boolean singlePrecision) throws IOException {
+            if (new File(fileName).exists()) {
+                new File(fileName).delete();
+            }
+            this.file = new RandomAccessFile(fileName, "rw");
+            this.channel = file.getChannel();
+            this.numVectors = numVectors;
+            this.dim = dim;
+            this.singlePrecision = singlePrecision;
+            this.mean = new double[dim];
+            channel.position(HEADER_SIZE); // the header is written on closing
+        }
+
+        /** Writes the next value; the vectors have to be written row by row. */
+        public void writeValue(double value) throws IOException {
+            if (buffer.remaining() < Double.SIZE / 8) {
+                flush();
+            }
+            if (singlePrecision) {
+                float f = (float) value;
+                buffer.putFloat(f);
+                mean[(int) (valuesWritten % dim)] += f;
+            } else {
+                buffer.putDouble(value);
+                mean[(int) (valuesWritten % dim)] += value;
+            }
+            valuesWritten++;
+        }
+
+        public void writeVector(double[] vector) throws IOException {
+            for (int i = 0; i < vector.length; i++) {
+                writeValue(vector[i]);
+            }
+        }
+
+        /** Writes the mean vector, the labels and the header, and closes the file. */
+        public void close(String[] labels) throws IOException {
+            if (valuesWritten != (long) numVectors * dim || labels.length != numVectors) {
+                throw new IOException("Expected " + numVectors + " vectors of dimension " + dim + ", but got "
+                        + valuesWritten + " values and " + labels.length + " labels.");
+            }
+            // align the following sections to 8 bytes
+            while ((channel.position() + buffer.position()) % 8 != 0) {
+                buffer.put((byte) 0);
+            }
+            flush();
+
+            long meanOffset = channel.position();
+            for (int i = 0; i < dim; i++) {
+                if (buffer.remaining() < Double.SIZE / 8) {
+                    flush();
+                }
+                buffer.putDouble(numVectors > 0 ? mean[i] / numVectors : 0);
+            }
+
+            byte[][] labelBytes = new byte[numVectors][];
+            long labelIndexOffset = meanOffset + (long) dim * Double.SIZE / 8;
+            long labelOffset = 0;
+            for (int i = 0; i <= numVectors; i++) {
+                if (buffer.remaining() < Long.SIZE / 8) {
+                    flush();
+                }
+                buffer.putLong(labelOffset);
+                if (i < numVectors) {
+                    labelBytes[i] = labels[i].getBytes(LABEL_CHARSET);
+                    labelOffset += labelBytes[i].length;
+                }
+            }
+            long labelsOffset = labelIndexOffset + (long) (numVectors + 1) * Long.SIZE / 8;
+            for (byte[] label : labelBytes) {
+                for (int written = 0; written < label.length;) {
+                    if (!buffer.hasRemaining()) {
+                        flush();
+                    }
+                    int length = Math.min(buffer.remaining(), label.length - written);
+                    buffer.put(label, written, length);
+                    written += length;
+                }
+            }
+            flush();
+            long fileLength = channel.position();
+
+            buffer.putInt(MAGIC_NUMBER);
+            buffer.putInt(FORMAT_VERSION);
+            buffer.putInt(numVectors);
+            buffer.putInt(dim);
+            buffer.putInt(singlePrecision ? Float.SIZE / 8 : Double.SIZE / 8);
+            buffer.putInt(0); // reserved
+            buffer.putLong(HEADER_SIZE);
+            buffer.putLong(meanOffset);
+            buffer.putLong(labelIndexOffset);
+            buffer.putLong(labelsOffset);
+            buffer.putLong(fileLength);
+            channel.position(0);
+            flush();
+            file.close();
+            Logger.getLogger("at.tuwien.ifs.somtoolbox").info("Wrote memory mapped input data file, length: " + fileLength);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+}
@@ -21,6 +21,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
 import java.util.Random;
 import java.util.logging.Logger;
 
@@ -110,12 +112,16 @@ public class RandomAccessFileSOMLibInputData extends AbstractSOMLibSparseInputDa
     }
 
     private SparseDoubleMatrix1D readVectorFromFile(int d) throws IOException {
-        int offset = getOffset(d);
-        inputFile.seek(offset);
+        byte[] bytes = new byte[dim * BYTES_DOUBLE];
+        // the file pointer is shared, thus seeking and reading must not be interleaved with other threads
+        synchronized (inputFile) {
+            inputFile.seek(getOffset(d));
+            inputFile.readFully(bytes);
+        }
+        DoubleBuffer values = ByteBuffer.wrap(bytes).asDoubleBuffer();
         SparseDoubleMatrix1D vec = new SparseDoubleMatrix1D(dim);
         for (int i = 0; i < dim; i++) {
-            double readDouble = inputFile.readDouble();
-            vec.setQuick(i, readDouble);
+            vec.setQuick(i, values.get(i));
         }
         return vec;
     }
@@ -163,8 +169,10 @@ public class RandomAccessFileSOMLibInputData extends AbstractSOMLibSparseInputDa
     @Override
     public double getValue(int x, int y) {
         try {
-            inputFile.seek(getOffset(x, y));
-            return inputFile.readDouble();
+            synchronized (inputFile) {
+                inputFile.seek(getOffset(x, y));
+                return inputFile.readDouble();
+            }
         } catch (IOException e) {
             Logger.getLogger("at.tuwien.ifs.somtoolbox").severe("");
             System.exit(-1);
@@ -20,13 +20,21 @@ package at.tuwien.ifs.somtoolbox.data;
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Hashtable;
 import java.util.LinkedHashMap;
 import java.util.Random;
 import java.util.logging.Logger;
 
+import cern.colt.GenericSorting;
+import cern.colt.Swapper;
+import cern.colt.function.IntComparator;
+import cern.colt.function.IntIntDoubleFunction;
+import cern.colt.list.DoubleArrayList;
+import cern.colt.list.IntArrayList;
 import cern.colt.matrix.DoubleMatrix1D;
 import cern.colt.matrix.DoubleMatrix2D;
 import cern.colt.matrix.impl.DenseDoubleMatrix1D;
@@ -70,10 +78,20 @@ public class SOMLibSparseInputData extends AbstractSOMLibSparseInputData {
     protected boolean sparse;
 
     /**
-     * The actual data. Each row in the matrix represents one vector.
+     * The actual data. Each row in the matrix represents one vector. Sparse data is only stored in a matrix while it is
+     * read; once {@link #sparseRowIndices} exist, the matrix is dropped.
      */
     protected DoubleMatrix2D data = null;
 
+    /**
+     * For sparse data, the column indices of the non-zero values of each row, in ascending order; created when parsing
+     * the input vector file, or by {@link #initSparseRows()} from a sparse {@link #data} matrix.
+     */
+    private volatile int[][] sparseRowIndices;
+
+    /** For sparse data, the non-zero values of each row, matching {@link #sparseRowIndices}. */
+    private double[][] sparseRowValues;
+
     private int ydim = 1;
 
     /** Constructor intended for generated synthetic data. */
@@ -115,6 +133,9 @@ public class SOMLibSparseInputData extends AbstractSOMLibSparseInputData {
             nameCache.put(dataNames[i], new Integer(i));
         }
         meanVector.assign(Functions.div(numVectors)); // calculating mean vector
+        if (data instanceof SparseDoubleMatrix2D) {
+            initSparseRows();
+        }
 
         this.rand = rand;
         this.templateVector = tv;
@@ -198,16 +219,118 @@ public class SOMLibSparseInputData extends AbstractSOMLibSparseInputData {
 
     @Override
     public InputDatum getInputDatum(int index) {
+        if (hasSparseRows()) {
+            return new InputDatum(dataNames[index], dim, sparseRowIndices[index], sparseRowValues[index]);
+        }
         return new InputDatum(dataNames[index], data.viewRow(index), nonZeros[index]);
     }
 
     @Override
     public double[] getInputVector(int d) {
+        if (hasSparseRows()) {
+            double[] vector = new double[dim];
+            int[] indices = sparseRowIndices[d];
+            double[] values = sparseRowValues[d];
+            for (int i = 0; i < indices.length; i++) {
+                vector[indices[i]] = values[i];
+            }
+            return vector;
+        }
         return data.viewRow(d).toArray();
     }
 
+    /**
+     * Checks whether the data is stored as sparse rows. Sparse data filled into the matrix by a sub-class is converted
+     * to sparse rows on first access.
+     */
+    private boolean hasSparseRows() {
+        if (sparseRowIndices == null && !(data instanceof DenseDoubleMatrix2D)) {
+            initSparseRows();
+        }
+        return sparseRowIndices != null;
+    }
+
+    /**
+     * Copies the non-zero values of the sparse matrix to one array of indices and values per row, which allows
+     * {@link InputDatum}s to be created without densifying the rows, and distances to be computed only on the non-zero
+     * values. The matrix is dropped afterwards, the rows are the only copy of the data.
+     */
+    private void initSparseRows() {
+        if (sparseRowIndices != null) {
+            return;
+        }
+        synchronized (this) {
+            if (sparseRowIndices != null || !(data instanceof SparseDoubleMatrix2D)) {
+                return;
+            }
+            final IntArrayList rows = new IntArrayList();
+            final IntArrayList columns = new IntArrayList();
+            final DoubleArrayList values = new DoubleArrayList();
+            // iterates only over the stored values, as opposed to DoubleMatrix2D.getNonZeros
+            data.forEachNonZero(new IntIntDoubleFunction() {
+                @Override
+                public double apply(int row, int column, double value) {
+                    rows.add(row);
+                    columns.add(column);
+                    values.add(value);
+                    return value;
+                }
+            });
+
+            int[] rowCounts = new int[numVectors];
+            for (int i = 0; i < rows.size(); i++) {
+                rowCounts[rows.getQuick(i)]++;
+            }
+            int[][] indices = new int[numVectors][];
+            double[][] rowValues = new double[numVectors][];
+            for (int row = 0; row < numVectors; row++) {
+                indices[row] = new int[rowCounts[row]];
+                rowValues[row] = new double[rowCounts[row]];
+            }
+            int[] filled = new int[numVectors];
+            for (int i = 0; i < rows.size(); i++) {
+                int row = rows.getQuick(i);
+                indices[row][filled[row]] = columns.getQuick(i);
+                rowValues[row][filled[row]] = values.getQuick(i);
+                filled[row]++;
+            }
+
+            // the values come in the order of the hash map, sort them by column
+            for (int row = 0; row < numVectors; row++) {
+                final int[] rowIndices = indices[row];
+                final double[] rowValue = rowValues[row];
+                GenericSorting.quickSort(0, rowIndices.length, new IntComparator() {
+                    @Override
+                    public int compare(int a, int b) {
+                        return rowIndices[a] < rowIndices[b] ? -1 : rowIndices[a] == rowIndices[b] ? 0 : 1;
+                    }
+                }, new Swapper() {
+                    @Override
+                    public void swap(int a, int b) {
+                        int index = rowIndices[a];
+                        rowIndices[a] = rowIndices[b];
+                        rowIndices[b] = index;
+                        double value = rowValue[a];
+                        rowValue[a] = rowValue[b];
+                        rowValue[b] = value;
+                    }
+                });
+            }
+            sparseRowValues = rowValues;
+            sparseRowIndices = indices;
+            data = null;
+        }
+    }
+
     @Override
     public double getValue(int x, int y) {
+        if (hasSparseRows()) {
+            if (y < 0 || y >= dim) {
+                throw new IndexOutOfBoundsException("column: " + y + ", dimension: " + dim);
+            }
+            int i = Arrays.binarySearch(sparseRowIndices[x], y);
+            return i >= 0 ? sparseRowValues[x][i] : 0;
+        }
         return data.get(x, y);
     }
 
@@ -216,8 +339,13 @@ public class SOMLibSparseInputData extends AbstractSOMLibSparseInputData {
         if (mqe0 == -1) { // mqe0 for data was not yet calculated
             mqe0 = 0;
             try {
+                boolean sparseRows = hasSparseRows();
                 for (int i = 0; i < numVectors; i++) {
-                    mqe0 += metric.distance(meanVector, data.viewRow(i));
+                    if (sparseRows) {
+                        mqe0 += metric.distance(meanVector, getInputDatum(i));
+                    } else {
+                        mqe0 += metric.distance(meanVector, data.viewRow(i));
+                    }
                 }
             } catch (MetricException e) {
                 Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(e.getMessage());
@@ -236,6 +364,10 @@ public class SOMLibSparseInputData extends AbstractSOMLibSparseInputData {
      * @param vectorFileName the name of the input vector file.
      */
     protected void readVectorFile(String vectorFileName, boolean sparse) {
+        if (hasDefaultLineProcessing()) {
+            readVectorFileParallel(vectorFileName, sparse);
+            return;
+        }
         BufferedReader br = openFile(vectorFileName);
         String line = null;
         int lineNumber = 0;
@@ -252,44 +384,7 @@ public class SOMLibSparseInputData extends AbstractSOMLibSparseInputData {
                     break;
                 }
 
-                String[] lineElements = line.split(StringUtils.REGEX_SPACE_OR_TAB);
-                if (lineElements.length < 2) {
-                    String msg = "Header in input vector file corrupt in line #" + lineNumber
-                            + ": less than two elements!";
-                    Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(msg);
-                    throw new IOException(msg);
-                }
-                String header = lineElements[0];
-                String content = lineElements[1];
-
-                if (header.equals("$TYPE")) {
-                    // do nothing
-                } else if (header.equals("$DATA_TYPE")) {
-                    // determine type of vector data, if data is audio set sparsity to false
-                    String[] subtypes = content.split("-", 2);
-                    content_type = subtypes[0];
-                    if (subtypes.length > 1) {
-                        content_subtype = subtypes[1];
-                    }
-                    if (content_type.equals("audio")) {
-                        Logger.getLogger("at.tuwien.ifs.somtoolbox").info(
-                                "Content type = audio. Setting sparsity to false.");
-                        sparse = false;
-                    }
-                } else if (header.equals("$DATA_DIM")) {
-                    String[] strDataDim = content.split("x", 2);
-                    featureMatrixRows = Integer.parseInt(strDataDim[0]);
-                    featureMatrixCols = Integer.parseInt(strDataDim[1]);
-
-                } else if (header.equals("$XDIM")) {
-                    numVectors = Integer.parseInt(content);
-                } else if (header.equals("$YDIM")) {
-                    ydim = Integer.parseInt(content);
-                } else if (header.equals("$VEC_DIM") || header.equals("$VECDIM")) {
-                    dim = Integer.parseInt(content);
-                } else {
-                    Logger.getLogger("at.tuwien.ifs.somtoolbox").warning("Unkown Header line '" + line + "', ingoring.");
-                }
+                sparse = processHeaderLine(line, lineNumber, sparse);
             }
 
             numVectors *= ydim;
@@ -349,6 +444,9 @@ public class SOMLibSparseInputData extends AbstractSOMLibSparseInputData {
             } else { // file is sane
                 meanVector.assign(Functions.div(numVectors)); // calculating mean vector
             }
+            if (data instanceof SparseDoubleMatrix2D) {
+                initSparseRows();
+            }
         } catch (Exception e) {
             Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(ERROR_MESSAGE_FILE_FORMAT_CORRUPT);
             throw new IllegalArgumentException(e.getMessage());
@@ -356,6 +454,148 @@ public class SOMLibSparseInputData extends AbstractSOMLibSparseInputData {
         Logger.getLogger("at.tuwien.ifs.somtoolbox").info("Input vector file format seems to be correct. Riding on ...");
     }
 
+    /**
+     * Reads the input vector file like {@link #readVectorFile(String, boolean)}, but parses the vectors in parallel with
+     * a {@link SOMLibVectorFileReader}, directly from the bytes of the file. Can only be used if the vectors are stored
+     * as they are read, i.e. if {@link #hasDefaultLineProcessing()}.
+     */
+    private void readVectorFileParallel(String vectorFileName, boolean sparse) {
+        InputStream in;
+        try {
+            in = FileUtils.getInputStream("Input vector file", vectorFileName);
+        } catch (FileNotFoundException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        SOMLibVectorFileReader reader = new SOMLibVectorFileReader(in);
+        String line = null;
+        int lineNumber = 0;
+
+        try {
+            // PROCESS HEADER with arbitrary number of comment lines & lines starting with $
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.startsWith("#") || line.equals("")) { // ignore comments and empty lines
+                    continue;
+                }
+                if (!line.startsWith("$")) {
+                    reader.unreadLine();
+                    lineNumber--;
+                    break;
+                }
+                sparse = processHeaderLine(line, lineNumber, sparse);
+            }
+
+            numVectors *= ydim;
+
+            // PROCESS REMAINDER OF FILE
+            initDataStructures(sparse);
+            int index = reader.readVectors(this, lineNumber + 1);
+            containsMissingValues = reader.containsMissingValues();
+            if (data instanceof SparseDoubleMatrix2D) {
+                // the reader only created the rows, the matrix stays empty
+                sparseRowValues = reader.getSparseRowValues();
+                sparseRowIndices = reader.getSparseRowIndices();
+                data = null;
+            }
+
+            if (containsMissingValues) {
+                System.out.println("\n\n");
+                Logger.getLogger("at.tuwien.ifs.somtoolbox").warning(
+                        "Input data file contained missing values - be sure to handle them correctly in sub-sequent steps!\n\n");
+            }
+
+            if (index != numVectors) {
+                String errorMessage = "Input vector file corrupt. Incorrect number of vectors: header says "
+                        + numVectors + ", but read " + index + ". Aborting.";
+                Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(errorMessage);
+                throw new IOException(errorMessage);
+            } else { // file is sane
+                meanVector.assign(Functions.div(numVectors)); // calculating mean vector
+            }
+        } catch (Exception e) {
+            Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(ERROR_MESSAGE_FILE_FORMAT_CORRUPT);
+            throw new IllegalArgumentException(e.getMessage());
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+        Logger.getLogger("at.tuwien.ifs.somtoolbox").info("Input vector file format seems to be correct. Riding on ...");
+    }
+
+    /**
+     * Checks whether this class reads the vectors with the default implementation, i.e. whether none of the methods
+     * processing the lines of the input vector file or creating the data structures are overridden by a sub-class.
+     */
+    private boolean hasDefaultLineProcessing() {
+        return !isOverridden("processLine", int.class, String[].class) && !isOverridden("parseDouble", String.class)
+                && !isOverridden("setMatrixValue", int.class, int.class, double.class)
+                && !isOverridden("addInstance", int.class, String.class)
+                && !isOverridden("initDataStructures", boolean.class) && !isOverridden("initMatrix", boolean.class);
+    }
+
+    private boolean isOverridden(String methodName, Class<?>... parameterTypes) {
+        for (Class<?> c = getClass(); c != SOMLibSparseInputData.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(methodName, parameterTypes);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // not declared in this class, check the super-class
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Processes a header line of the input vector file, i.e. a line starting with <code>$</code>.
+     * 
+     * @return the sparsity to use for the data, which is switched off for audio data.
+     */
+    private boolean processHeaderLine(String line, int lineNumber, boolean sparse) throws IOException {
+        String[] lineElements = line.split(StringUtils.REGEX_SPACE_OR_TAB);
+        if (lineElements.length < 2) {
+            String msg = "Header in input vector file corrupt in line #" + lineNumber
+                    + ": less than two elements!";
+            Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(msg);
+            throw new IOException(msg);
+        }
+        String header = lineElements[0];
+        String content = lineElements[1];
+
+        if (header.equals("$TYPE")) {
+            // do nothing
+        } else if (header.equals("$DATA_TYPE")) {
+            // determine type of vector data, if data is audio set sparsity to false
+            String[] subtypes = content.split("-", 2);
+            content_type = subtypes[0];
+            if (subtypes.length > 1) {
+                content_subtype = subtypes[1];
+            }
+            if (content_type.equals("audio")) {
+                Logger.getLogger("at.tuwien.ifs.somtoolbox").info(
+                        "Content type = audio. Setting sparsity to false.");
+                sparse = false;
+            }
+        } else if (header.equals("$DATA_DIM")) {
+            String[] strDataDim = content.split("x", 2);
+            featureMatrixRows = Integer.parseInt(strDataDim[0]);
+            featureMatrixCols = Integer.parseInt(strDataDim[1]);
+
+        } else if (header.equals("$XDIM")) {
+            numVectors = Integer.parseInt(content);
+        } else if (header.equals("$YDIM")) {
+            ydim = Integer.parseInt(content);
+        } else if (header.equals("$VEC_DIM") || header.equals("$VECDIM")) {
+            dim = Integer.parseInt(content);
+        } else {
+            Logger.getLogger("at.tuwien.ifs.somtoolbox").warning("Unkown Header line '" + line + "', ingoring.");
+        }
+        return sparse;
+    }
+
     protected void initDataStructures(boolean sparse) {
         initMatrix(sparse);
         dataNames = new String[numVectors];
@@ -432,7 +672,15 @@ public class SOMLibSparseInputData extends AbstractSOMLibSparseInputData {
         for (int i = 0; i < names.length; i++) {
             try {
                 int index = nameCache.get(names[i]).intValue();
-                newData.viewRow(i).assign(data.viewRow(index));
+                if (hasSparseRows()) {
+                    int[] indices = sparseRowIndices[index];
+                    double[] values = sparseRowValues[index];
+                    for (int j = 0; j < indices.length; j++) {
+                        newData.setQuick(i, indices[j], values[j]);
+                    }
+                } else {
+                    newData.viewRow(i).assign(data.viewRow(index));
+                }
                 nonZerosNew[i] = this.nonZeros[index];
             } catch (NullPointerException e) {
                 return null;
@@ -0,0 +1,529 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+
+import at.tuwien.ifs.somtoolbox.util.StdErrProgressWriter;
+
+/**
+ * Reads a SOMLib input vector file from a byte stream, parsing the vectors in parallel. The body of the file is read in
+ * chunks of complete lines; each chunk is tokenised directly on the bytes, without creating intermediate strings for
+ * the values, and its vectors are written straight into the data matrix. Only the labels are merged in file order, to
+ * fill the name cache and compute the mean vector exactly as {@link SOMLibSparseInputData} does when reading line by
+ * line.<br/>
+ * The header is read line by line via {@link #readLine()}, and interpreted by the caller.
+ *
+ * @author agent
+ * @version $Id$
+ */
+class SOMLibVectorFileReader {
+
+    /** The size of the chunks handed to the parser threads. */
+    private static final int CHUNK_SIZE = 4 << 20;
+
+    /** Powers of ten that are exactly representable as double. */
+    private static final double[] EXACT_POWERS_OF_TEN = new double[23];
+
+    static {
+        EXACT_POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < EXACT_POWERS_OF_TEN.length; i++) {
+            EXACT_POWERS_OF_TEN[i] = EXACT_POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final InputStream in;
+
+    private byte[] buffer = new byte[CHUNK_SIZE];
+
+    private int pos = 0;
+
+    private int limit = 0;
+
+    private boolean eof = false;
+
+    /** The length of the chunk last returned by {@link #nextChunk()}. */
+    private int chunkLength = 0;
+
+    /** The start of the line last returned by {@link #readLine()}. */
+    private int lineStart = 0;
+
+    private boolean containsMissingValues = false;
+
+    private int[][] sparseRowIndices;
+
+    private double[][] sparseRowValues;
+
+    SOMLibVectorFileReader(InputStream in) {
+        this.in = in;
+    }
+
+    /** Reads the next line, without the line terminator, or returns <code>null</code> at the end of the stream. */
+    String readLine() throws IOException {
+        int scanned = pos;
+        while (true) {
+            for (int i = scanned; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    String line = new String(buffer, pos, i - pos);
+                    lineStart = pos;
+                    pos = i + 1;
+                    return line;
+                }
+            }
+            if (eof) {
+                if (pos == limit) {
+                    return null;
+                }
+                String line = new String(buffer, pos, limit - pos);
+                lineStart = pos;
+                pos = limit;
+                return line;
+            }
+            scanned = limit - pos;
+            compact();
+            fill();
+        }
+    }
+
+    /** Pushes back the line last returned by {@link #readLine()}, e.g. the first vector after the header. */
+    void unreadLine() {
+        pos = lineStart;
+    }
+
+    /**
+     * Reads all remaining lines as vectors into the data structures of the given input data, which have to be
+     * initialised already.
+     *
+     * @param firstLineNumber the line number of the first remaining line, for error messages.
+     * @return the number of vectors read.
+     */
+    int readVectors(SOMLibSparseInputData target, int firstLineNumber) throws IOException {
+        final int dim = target.dim;
+        final int numVectors = target.numVectors;
+        final DenseDoubleMatrix2D denseData = target.data instanceof DenseDoubleMatrix2D ? (DenseDoubleMatrix2D) target.data
+                : null;
+        if (denseData == null) {
+            sparseRowIndices = new int[numVectors][];
+            sparseRowValues = new double[numVectors][];
+        }
+        double[] meanVector = new double[dim];
+        StdErrProgressWriter progressWriter = new StdErrProgressWriter(numVectors, "Reading input datum ", 10);
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        LinkedList<Future<ParsedChunk>> pending = new LinkedList<Future<ParsedChunk>>();
+        int rows = 0;
+        int lineNumber = firstLineNumber;
+        try {
+            byte[] chunk;
+            while ((chunk = nextChunk()) != null) {
+                int chunkEnd = chunkLength;
+                // count the lines and vectors of the chunk, to know where its vectors go
+                int chunkLines = 0;
+                int chunkRows = 0;
+                int start = 0;
+                while (start < chunkEnd) {
+                    int end = indexOfLineEnd(chunk, start, chunkEnd);
+                    if (lineLength(chunk, start, end) > 0) {
+                        chunkRows++;
+                    }
+                    chunkLines++;
+                    start = end + 1;
+                }
+                if (rows + chunkRows > numVectors) {
+                    String errorMessage = "Input vector file corrupt. Incorrect number of vectors: header says "
+                            + numVectors + ", but already reading vector " + (numVectors + 1) + ". Aborting.";
+                    Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(errorMessage);
+                    throw new IOException(errorMessage);
+                }
+                pending.add(executor.submit(new ChunkParser(chunk, chunkEnd, rows, chunkRows, lineNumber, dim,
+                        denseData)));
+                rows += chunkRows;
+                lineNumber += chunkLines;
+                while (pending.size() > threads * 2) {
+                    merge(target, getResult(pending.removeFirst()), meanVector, progressWriter);
+                }
+            }
+            while (!pending.isEmpty()) {
+                merge(target, getResult(pending.removeFirst()), meanVector, progressWriter);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        target.meanVector.assign(meanVector);
+        return rows;
+    }
+
+    boolean containsMissingValues() {
+        return containsMissingValues;
+    }
+
+    /** For sparse data, the column indices of the non-zero values of each vector, in ascending order. */
+    int[][] getSparseRowIndices() {
+        return sparseRowIndices;
+    }
+
+    /** For sparse data, the non-zero values of each vector, matching {@link #getSparseRowIndices()}. */
+    double[][] getSparseRowValues() {
+        return sparseRowValues;
+    }
+
+    /**
+     * Adds the labels of the parsed chunk to the input data, in file order, and the vectors to the mean vector. For
+     * sparse data, the vectors are only stored as the rows of {@link #getSparseRowIndices()} and
+     * {@link #getSparseRowValues()}, which the input data keeps instead of a sparse matrix.
+     */
+    private void merge(SOMLibSparseInputData target, ParsedChunk chunk, double[] meanVector,
+            StdErrProgressWriter progressWriter) {
+        containsMissingValues |= chunk.containsMissingValues;
+        for (int row = 0; row < chunk.labels.length; row++) {
+            int index = chunk.firstRow + row;
+            if (chunk.indices != null) {
+                int[] indices = chunk.indices[row];
+                double[] values = chunk.values[row];
+                for (int i = 0; i < indices.length; i++) {
+                    meanVector[indices[i]] += values[i];
+                }
+                sparseRowIndices[index] = indices;
+                sparseRowValues[index] = values;
+            } else {
+                for (int ve = 0; ve < meanVector.length; ve++) {
+                    meanVector[ve] += target.data.getQuick(index, ve);
+                }
+            }
+            target.nonZeros[index] = chunk.nonZeros[row];
+            // avoid heading or trailing spaces, as in SOMLibSparseInputData#addInstance
+            target.dataNames[index] = chunk.labels[row].trim();
+            // like the header lines, the first vector line is trimmed when read line by line
+            target.nameCache.put(index == 0 ? chunk.labels[row].trim() : chunk.labels[row], Integer.valueOf(index));
+            progressWriter.progress();
+        }
+    }
+
+    private static ParsedChunk getResult(Future<ParsedChunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while reading input vector file", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Returns the next chunk of complete lines, or <code>null</code> at the end of the stream. The chunk fills the
+     * returned array up to {@link #chunkLength}; the remainder of the buffer is moved to a new buffer, as the chunk is
+     * handed to a parser thread.
+     */
+    private byte[] nextChunk() throws IOException {
+        while (true) {
+            fill();
+            if (pos == limit) {
+                return null;
+            }
+            int end = limit;
+            if (!eof) {
+                while (end > pos && buffer[end - 1] != '\n') {
+                    end--;
+                }
+                if (end == pos) { // no complete line in the buffer
+                    compact();
+                    continue;
+                }
+            }
+            byte[] chunk = buffer;
+            if (pos > 0) {
+                chunk = new byte[end - pos];
+                System.arraycopy(buffer, pos, chunk, 0, end - pos);
+            }
+            chunkLength = end - pos;
+            int remaining = limit - end;
+            byte[] next = new byte[Math.max(CHUNK_SIZE, remaining * 2)];
+            System.arraycopy(buffer, end, next, 0, remaining);
+            buffer = next;
+            pos = 0;
+            limit = remaining;
+            return chunk;
+        }
+    }
+
+    /** Moves the unread part of the buffer to its beginning, growing the buffer if it is full. */
+    private void compact() {
+        int remaining = limit - pos;
+        byte[] target = remaining * 2 > buffer.length ? new byte[buffer.length * 2] : buffer;
+        System.arraycopy(buffer, pos, target, 0, remaining);
+        buffer = target;
+        lineStart -= pos;
+        pos = 0;
+        limit = remaining;
+    }
+
+    /** Reads from the stream until the buffer is full, or the stream ends. */
+    private void fill() throws IOException {
+        while (limit < buffer.length && !eof) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                eof = true;
+            } else {
+                limit += read;
+            }
+        }
+    }
+
+    private static int indexOfLineEnd(byte[] bytes, int start, int end) {
+        while (start < end && bytes[start] != '\n') {
+            start++;
+        }
+        return start;
+    }
+
+    /** Returns the length of the line, without a trailing carriage return. */
+    private static int lineLength(byte[] bytes, int start, int end) {
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        return end - start;
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * Parses a decimal number. Numbers with at most 15 significant digits and a decimal exponent within the range of
+     * exactly representable powers of ten are computed by a single multiplication or division, which is exact, i.e.
+     * gives the same result as {@link Double#parseDouble(String)}. All other numbers are handed to
+     * {@link Double#parseDouble(String)}.
+     */
+    static double parseDouble(byte[] bytes, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        for (; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+            mantissa = mantissa * 10 + bytes[i] - '0';
+            anyDigit = true;
+            if (mantissa != 0) {
+                digits++;
+            }
+        }
+        if (i < end && bytes[i] == '.') {
+            for (i++; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                mantissa = mantissa * 10 + bytes[i] - '0';
+                anyDigit = true;
+                if (mantissa != 0) {
+                    digits++;
+                }
+                exponent--;
+            }
+        }
+        if (anyDigit && i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = bytes[i] == '-';
+                i++;
+            }
+            int exponentValue = 0;
+            boolean anyExponentDigit = false;
+            for (; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                if (exponentValue < 10000) {
+                    exponentValue = exponentValue * 10 + bytes[i] - '0';
+                }
+                anyExponentDigit = true;
+            }
+            if (!anyExponentDigit) {
+                return Double.parseDouble(new String(bytes, start, end - start));
+            }
+            exponent += negativeExponent ? -exponentValue : exponentValue;
+        }
+        if (i != end || !anyDigit || digits > 15) {
+            return Double.parseDouble(new String(bytes, start, end - start));
+        }
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (exponent == 0) {
+            value = mantissa;
+        } else if (exponent > 0 && exponent < EXACT_POWERS_OF_TEN.length) {
+            value = mantissa * EXACT_POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < EXACT_POWERS_OF_TEN.length) {
+            value = mantissa / EXACT_POWERS_OF_TEN[-exponent];
+        } else {
+            return Double.parseDouble(new String(bytes, start, end - start));
+        }
+        return negative ? -value : value;
+    }
+
+    /** The vectors of a chunk, as parsed by a {@link ChunkParser}. */
+    private static class ParsedChunk {
+        int firstRow;
+
+        String[] labels;
+
+        int[] nonZeros;
+
+        /** The non-zero indices and values per vector for sparse data, <code>null</code> for dense data. */
+        int[][] indices;
+
+        double[][] values;
+
+        boolean containsMissingValues = false;
+    }
+
+    /**
+     * Parses the lines of a chunk. Dense vectors are written to the data matrix directly, as the chunks write to
+     * disjoint rows; sparse vectors are returned as index and value arrays.
+     */
+    private static class ChunkParser implements Callable<ParsedChunk> {
+
+        private final byte[] bytes;
+
+        private final int end;
+
+        private final int firstLineNumber;
+
+        private final int dim;
+
+        private final DenseDoubleMatrix2D denseData;
+
+        private final ParsedChunk result = new ParsedChunk();
+
+        private int[] rowIndices;
+
+        private double[] rowValues;
+
+        ChunkParser(byte[] bytes, int end, int firstRow, int rows, int firstLineNumber, int dim,
+                DenseDoubleMatrix2D denseData) {
+            this.bytes = bytes;
+            this.end = end;
+            this.firstLineNumber = firstLineNumber;
+            this.dim = dim;
+            this.denseData = denseData;
+            result.firstRow = firstRow;
+            result.labels = new String[rows];
+            result.nonZeros = new int[rows];
+            if (denseData == null) {
+                result.indices = new int[rows][];
+                result.values = new double[rows][];
+                rowIndices = new int[dim];
+                rowValues = new double[dim];
+            }
+        }
+
+        @Override
+        public ParsedChunk call() throws IOException {
+            int row = 0;
+            int lineNumber = firstLineNumber;
+            int start = 0;
+            while (start < end) {
+                int lineEnd = indexOfLineEnd(bytes, start, end);
+                int length = lineLength(bytes, start, lineEnd);
+                if (length > 0) {
+                    parseLine(start, start + length, row, lineNumber);
+                    row++;
+                }
+                lineNumber++;
+                start = lineEnd + 1;
+            }
+            return result;
+        }
+
+        private void parseLine(int start, int end, int row, int lineNumber) throws IOException {
+            int index = result.firstRow + row;
+            int pos = start;
+            int nonZeros = 0;
+            for (int ve = 0; ve < dim; ve++) {
+                while (pos < end && isSeparator(bytes[pos])) {
+                    pos++;
+                }
+                if (pos == end) {
+                    throw dimensionMismatch(index, ve - 1);
+                }
+                int tokenStart = pos;
+                while (pos < end && !isSeparator(bytes[pos])) {
+                    pos++;
+                }
+                double value;
+                if (pos - tokenStart == 1 && bytes[tokenStart] == '?') {
+                    result.containsMissingValues = true;
+                    value = InputData.MISSING_VALUE;
+                } else {
+                    try {
+                        value = SOMLibVectorFileReader.parseDouble(bytes, tokenStart, pos);
+                    } catch (NumberFormatException e) {
+                        String msg = SOMLibSparseInputData.INPUT_VECTOR_FILE_FORMAT_CORRUPT_MESSAGE + (index + 1)
+                                + " (line #" + lineNumber + "): " + e.getMessage() + ". Aborting.";
+                        Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(msg);
+                        throw new IOException(msg);
+                    }
+                }
+                if (denseData != null) {
+                    denseData.setQuick(index, ve, value);
+                    if (value != 0.0d) {
+                        nonZeros++;
+                    }
+                } else if (value != 0.0d) {
+                    rowIndices[nonZeros] = ve;
+                    rowValues[nonZeros] = value;
+                    nonZeros++;
+                }
+            }
+            if (pos == end) { // no separator before the label
+                throw dimensionMismatch(index, dim - 1);
+            }
+            while (pos < end && isSeparator(bytes[pos])) {
+                pos++;
+            }
+            result.labels[row] = new String(bytes, pos, end - pos);
+            result.nonZeros[row] = nonZeros;
+            if (denseData == null) {
+                result.indices[row] = Arrays.copyOf(rowIndices, nonZeros);
+                result.values[row] = Arrays.copyOf(rowValues, nonZeros);
+            }
+        }
+
+        private IOException dimensionMismatch(int index, int found) {
+            String msg = SOMLibSparseInputData.INPUT_VECTOR_FILE_FORMAT_CORRUPT_MESSAGE + (index + 1)
+                    + ": dimension specified is " + dim + ", found " + found + ". Aborting.";
+            Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(msg);
+            return new IOException(msg);
+        }
+    }
+
+}
@@ -17,9 +17,18 @@
  */
 package at.tuwien.ifs.somtoolbox.data.distance;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import com.martiansoftware.jsap.FlaggedOption;
@@ -53,6 +62,8 @@ import at.tuwien.ifs.somtoolbox.util.StringUtils;
  * <li>Orange (http://www.ailab.si/orange/) ASCII, containing the diagonal and the lower-left half</li>
  * <li>Binary, storing the same information as SOMLib ASCII, but in a binary format for random access (can be read by
  * {@link RandomAccessFileInputVectorDistanceMatrix})</li>
+ * <li>Memory mapped, a binary format storing the upper-right half in tiles, optionally in single precision (can be read
+ * by {@link MemoryMappedInputVectorDistanceMatrix})</li>
  * </ul>
  * 
  * @author Rudolf Mayer
@@ -73,7 +84,10 @@ public class DistanceMatrixWriter implements SOMToolboxApp {
 
     private static final String PLAIN = "plain";
 
-    public static String[] OUTPUT_FORMATS = { SOM_LIB, PLAIN, BINARY, ORANGE };
+    /** Tiled binary format, for {@link MemoryMappedInputVectorDistanceMatrix} */
+    private static final String MEMORY_MAPPED = "MemoryMapped";
+
+    public static String[] OUTPUT_FORMATS = { SOM_LIB, PLAIN, BINARY, MEMORY_MAPPED, ORANGE };
 
     public static final Type APPLICATION_TYPE = Type.Helper;
 
@@ -84,7 +98,8 @@ public class DistanceMatrixWriter implements SOMToolboxApp {
     public static final Parameter[] OPTIONS = new Parameter[] { OptionFactory.getOptInputVectorFile(true),
             OPT_CLASS_INFORMATION_FILE, OptionFactory.getOptMetric(false), OptionFactory.getOptMetricParams(false),
             OptionFactory.getOptOutputFileName(true),
-            OptionFactory.getOptOutputFormat(false, SOM_LIB, DistanceMatrixWriter.OUTPUT_FORMATS) };
+            OptionFactory.getOptOutputFormat(false, SOM_LIB, DistanceMatrixWriter.OUTPUT_FORMATS),
+            OptionFactory.getSwitchSinglePrecision() };
 
     public static void main(String[] args) throws SOMToolboxException, IOException {
         JSAPResult config = OptionFactory.parseResults(args, OPTIONS);
@@ -113,6 +128,9 @@ public class DistanceMatrixWriter implements SOMToolboxApp {
             writeOrangeFileInputVectorDistanceMatrix(data, outputFileName, metric);
         } else if (outputFormat.equals(PLAIN)) {// full format, no headers
             writePlainFileInputVectorDistanceMatrix(data, outputFileName, metric);
+        } else if (outputFormat.equals(MEMORY_MAPPED)) {
+            writeMemoryMappedInputVectorDistanceMatrix(data, outputFileName, metric,
+                    config.getBoolean("singlePrecision"));
         } else { // binary
             writeRandomAccessFileInputVectorDistanceMatrix(data, outputFileName, metric);
         }
@@ -278,4 +296,155 @@ public class DistanceMatrixWriter implements SOMToolboxApp {
         file.writeChars(metric.getClass().getCanonicalName().trim());
         file.close();
     }
+
+    /**
+     * Write input distance matrix to a binary file for {@link MemoryMappedInputVectorDistanceMatrix}, computing
+     * distances on the fly, using the {@link MemoryMappedInputVectorDistanceMatrix#DEFAULT_TILE_SIZE default tile
+     * size}.
+     */
+    public static void writeMemoryMappedInputVectorDistanceMatrix(InputData data, String fileName,
+            DistanceMetric metric, boolean singlePrecision) throws IOException, MetricException {
+        writeMemoryMappedInputVectorDistanceMatrix(data, fileName, metric, singlePrecision,
+                MemoryMappedInputVectorDistanceMatrix.DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Write input distance matrix to a binary file for {@link MemoryMappedInputVectorDistanceMatrix}, computing
+     * distances on the fly. The rows of tiles are computed in parallel, one thread per CPU; each tile is written to its
+     * final position in the file as soon as it is computed.
+     * 
+     * @param singlePrecision whether to store the distances as 32 bit floating point values.
+     * @param tileSize the number of vectors per block, i.e. the width and height of a tile.
+     */
+    public static void writeMemoryMappedInputVectorDistanceMatrix(InputData data, String fileName,
+            DistanceMetric metric, boolean singlePrecision, int tileSize) throws IOException, MetricException {
+        final int numVec = data.numVectors();
+        final int blocks = MemoryMappedInputVectorDistanceMatrix.getBlockCount(numVec, tileSize);
+        final int valueSize = singlePrecision ? Float.SIZE / 8 : Double.SIZE / 8;
+        final long tileBytes = MemoryMappedInputVectorDistanceMatrix.getTileBytes(tileSize, valueSize);
+        Logger.getLogger("at.tuwien.ifs.somtoolbox").info(
+                "Storing input distance matrix with metric " + metric + " to memory mapped file " + fileName);
+
+        if (new File(fileName).exists()) {
+            new File(fileName).delete();
+        }
+        RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+        FileChannel channel = file.getChannel();
+        ByteBuffer header = ByteBuffer.allocate(MemoryMappedInputVectorDistanceMatrix.HEADER_SIZE).order(
+                MemoryMappedInputVectorDistanceMatrix.BYTE_ORDER);
+        header.putInt(MemoryMappedInputVectorDistanceMatrix.MAGIC_NUMBER);
+        header.putInt(MemoryMappedInputVectorDistanceMatrix.FORMAT_VERSION);
+        header.putInt(numVec);
+        header.putInt(tileSize);
+        header.putInt(valueSize);
+        header.rewind();
+        writeFully(channel, header, 0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            ArrayList<Future<Object>> tileRows = new ArrayList<Future<Object>>(blocks);
+            for (int i = 0; i < blocks; i++) {
+                tileRows.add(executor.submit(new TileRowWriter(data, metric, channel, i, blocks, tileSize,
+                        singlePrecision, tileBytes)));
+            }
+            StdErrProgressWriter progress = new StdErrProgressWriter(blocks, "Calculating distances for block ", 1);
+            for (Future<Object> tileRow : tileRows) {
+                tileRow.get();
+                progress.progress();
+            }
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while writing distance matrix", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MetricException) {
+                throw (MetricException) e.getCause();
+            } else if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        byte[] metricName = metric.getClass().getCanonicalName().trim().getBytes(
+                MemoryMappedInputVectorDistanceMatrix.METRIC_NAME_CHARSET);
+        writeFully(channel, ByteBuffer.wrap(metricName), MemoryMappedInputVectorDistanceMatrix.getTileOffset(blocks,
+                blocks, blocks, tileBytes));
+        file.close();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /** Computes and writes the tiles of one block of vectors with the blocks of all following vectors. */
+    private static class TileRowWriter implements Callable<Object> {
+        private final InputData data;
+
+        private final DistanceMetric metric;
+
+        private final FileChannel channel;
+
+        private final int block;
+
+        private final int blocks;
+
+        private final int tileSize;
+
+        private final boolean singlePrecision;
+
+        private final long tileBytes;
+
+        TileRowWriter(InputData data, DistanceMetric metric, FileChannel channel, int block, int blocks, int tileSize,
+                boolean singlePrecision, long tileBytes) {
+            this.data = data;
+            this.metric = metric;
+            this.channel = channel;
+            this.block = block;
+            this.blocks = blocks;
+            this.tileSize = tileSize;
+            this.singlePrecision = singlePrecision;
+            this.tileBytes = tileBytes;
+        }
+
+        @Override
+        public Object call() throws IOException, MetricException {
+            double[][] rowVectors = getBlockVectors(block);
+            ByteBuffer tile = ByteBuffer.allocate((int) tileBytes).order(
+                    MemoryMappedInputVectorDistanceMatrix.BYTE_ORDER);
+            for (int j = block; j < blocks; j++) {
+                double[][] columnVectors = j == block ? rowVectors : getBlockVectors(j);
+                tile.clear();
+                for (int r = 0; r < tileSize; r++) {
+                    for (int c = 0; c < tileSize; c++) {
+                        // padding of the last block, and the diagonal, are 0
+                        double distance = 0;
+                        if (rowVectors[r] != null && columnVectors[c] != null
+                                && (j != block || r != c)) {
+                            distance = metric.distance(rowVectors[r], columnVectors[c]);
+                        }
+                        if (singlePrecision) {
+                            tile.putFloat((float) distance);
+                        } else {
+                            tile.putDouble(distance);
+                        }
+                    }
+                }
+                tile.flip();
+                writeFully(channel, tile, MemoryMappedInputVectorDistanceMatrix.getTileOffset(block, j, blocks,
+                        tileBytes));
+            }
+            return null;
+        }
+
+        /** Returns the vectors of the given block, with <code>null</code> for the padding of the last block. */
+        private double[][] getBlockVectors(int b) {
+            double[][] vectors = new double[tileSize][];
+            for (int i = 0; i < tileSize && b * tileSize + i < data.numVectors(); i++) {
+                vectors[i] = data.getInputVector(b * tileSize + i);
+            }
+            return vectors;
+        }
+    }
 }
@@ -165,14 +165,18 @@ public abstract class InputVectorDistanceMatrix {
     }
 
     /**
-     * Factory method that reads and creates an {@link InputVectorDistanceMatrix} from the given file. Depending on the
-     * filename, returns either a {@link RandomAccessFileInputVectorDistanceMatrix} (if the filename ends with '.bin')
-     * or a {@link LeightWeightMemoryInputVectorDistanceMatrix} (all other cases).<br>
+     * Factory method that reads and creates an {@link InputVectorDistanceMatrix} from the given file. Returns a
+     * {@link MemoryMappedInputVectorDistanceMatrix} if the file starts with the magic number of that format. Otherwise,
+     * depending on the filename, returns either a {@link RandomAccessFileInputVectorDistanceMatrix} (if the filename
+     * ends with '.bin') or a {@link LeightWeightMemoryInputVectorDistanceMatrix} (all other cases).<br>
      * TODO: maybe more intelligent checking for file type, possibly trying to read it as binary, and checking the first
      * bytes for a file type or so.
      */
     public static InputVectorDistanceMatrix initFromFile(String fileName) throws IOException, SOMToolboxException {
-        if (fileName.endsWith(".bin") || !FileUtils.fileStartsWith(fileName, "$")) {
+        if (MemoryMappedInputVectorDistanceMatrix.isMemoryMappedFile(fileName)) {
+            Logger.getLogger("at.tuwien.ifs.somtoolbox").info("Opening memory mapped distance matrix file");
+            return new MemoryMappedInputVectorDistanceMatrix(fileName);
+        } else if (fileName.endsWith(".bin") || !FileUtils.fileStartsWith(fileName, "$")) {
             Logger.getLogger("at.tuwien.ifs.somtoolbox").info("Opening binary random access distance matrix file");
             return new RandomAccessFileInputVectorDistanceMatrix(fileName);
         } else {
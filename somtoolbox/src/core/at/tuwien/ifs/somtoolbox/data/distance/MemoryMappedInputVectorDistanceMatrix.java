@@ -0,0 +1,270 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.data.distance;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import at.tuwien.ifs.somtoolbox.SOMToolboxException;
+import at.tuwien.ifs.somtoolbox.layers.metrics.AbstractMetric;
+
+/**
+ * A distance matrix stored in a binary file that is mapped into memory, via {@link FileChannel#map}. Like
+ * {@link RandomAccessFileInputVectorDistanceMatrix}, the matrix is not read into memory, and is thus suited for big
+ * datasets; accessing a value does however not need a system call, but reads directly from the operating system's page
+ * cache.
+ * <p>
+ * The vectors are grouped in blocks of {@link #getTileSize()} vectors, and the upper-right half of the matrix is
+ * stored in square tiles of the distances between two blocks, i.e. for each pair of blocks <code>(i, j)</code> with
+ * <code>i &lt;= j</code>, row by row. The tiles are stored ordered by <code>i</code>, then <code>j</code>:
+ *
+ * <pre>
+ * [(1,1) (1,2) (1,3) (1,4)]
+ * [      (2,2) (2,3) (2,4)]
+ * [            (3,3) (3,4)]
+ * [                  (4,4)]
+ * </pre>
+ *
+ * The distances of one vector to all others, as needed by {@link #getDistances(int)}, are thus found in one row of
+ * tiles, and one column of tiles, i.e. in few consecutive memory pages, rather than spread over the whole file. The
+ * tiles in the diagonal contain both halves of the distances within a block, and tiles are padded to full size for the
+ * last, incomplete block. Each row of tiles is mapped separately, so that also files larger than 2GB can be used.
+ * </p>
+ * <p>
+ * The file starts with a header of {@value #HEADER_SIZE} bytes, holding the number of vectors, the tile size, and the
+ * size of a value, which are stored either as 64 bit or as 32 bit floating point values. The tiles are followed by the
+ * name of the metric used, UTF-8 encoded. All values are stored in little endian byte order. Such files are written by
+ * {@link DistanceMatrixWriter#writeMemoryMappedInputVectorDistanceMatrix}.
+ * </p>
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class MemoryMappedInputVectorDistanceMatrix extends InputVectorDistanceMatrix {
+
+    static final int MAGIC_NUMBER = 0x534F4D44; // "SOMD"
+
+    static final int FORMAT_VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final Charset METRIC_NAME_CHARSET = Charset.forName("UTF-8");
+
+    /** The default number of vectors per block, giving tiles of 32KB in double precision. */
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    private final int tileSize;
+
+    private final int blocks;
+
+    private final boolean singlePrecision;
+
+    private final String metricName;
+
+    /** The mapped rows of tiles, if the values are stored in double precision. */
+    private DoubleBuffer[] doubleTileRows;
+
+    /** The mapped rows of tiles, if the values are stored in single precision. */
+    private FloatBuffer[] floatTileRows;
+
+    public MemoryMappedInputVectorDistanceMatrix(String fileName) throws IOException, SOMToolboxException {
+        RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(BYTE_ORDER);
+            if (header.getInt() != MAGIC_NUMBER) {
+                throw new SOMToolboxException("File " + fileName + " is not a memory mapped distance matrix file.");
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new SOMToolboxException("Unsupported version " + version
+                        + " of memory mapped distance matrix file " + fileName + ", expected version "
+                        + FORMAT_VERSION + ".");
+            }
+            numVectors = header.getInt();
+            tileSize = header.getInt();
+            int valueSize = header.getInt();
+            singlePrecision = valueSize == Float.SIZE / 8;
+            blocks = getBlockCount(numVectors, tileSize);
+
+            long tileBytes = getTileBytes(tileSize, valueSize);
+            if (singlePrecision) {
+                floatTileRows = new FloatBuffer[blocks];
+            } else {
+                doubleTileRows = new DoubleBuffer[blocks];
+            }
+            for (int i = 0; i < blocks; i++) {
+                ByteBuffer tileRow = channel.map(FileChannel.MapMode.READ_ONLY, getTileOffset(i, i, blocks, tileBytes),
+                        (blocks - i) * tileBytes).order(BYTE_ORDER);
+                if (singlePrecision) {
+                    floatTileRows[i] = tileRow.asFloatBuffer();
+                } else {
+                    doubleTileRows[i] = tileRow.asDoubleBuffer();
+                }
+            }
+
+            long metricOffset = getTileOffset(blocks, blocks, blocks, tileBytes);
+            byte[] metricBytes = new byte[(int) (channel.size() - metricOffset)];
+            file.seek(metricOffset);
+            file.readFully(metricBytes);
+            metricName = new String(metricBytes, METRIC_NAME_CHARSET).trim();
+        } finally {
+            // the mapped buffers stay valid after the file is closed
+            file.close();
+        }
+        metric = AbstractMetric.instantiateNice(metricName);
+    }
+
+    /** Checks whether the given file is a memory mapped distance matrix, i.e. starts with the right magic number. */
+    public static boolean isMemoryMappedFile(String fileName) {
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(fileName));
+            try {
+                return Integer.reverseBytes(in.readInt()) == MAGIC_NUMBER;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Returns the number of vectors per block, i.e. the width and height of a tile. */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
+    @Override
+    public double getDistance(int x, int y) {
+        if (x == y) {
+            return 0;
+        }
+        if (x > y) {
+            int tmp = x;
+            x = y;
+            y = tmp;
+        }
+        int blockX = x / tileSize;
+        int blockY = y / tileSize;
+        // position in the row of tiles of block x
+        int position = (blockY - blockX) * tileSize * tileSize + (x - blockX * tileSize) * tileSize + y - blockY
+                * tileSize;
+        if (singlePrecision) {
+            return floatTileRows[blockX].get(position);
+        } else {
+            return doubleTileRows[blockX].get(position);
+        }
+    }
+
+    /**
+     * Reads the distances of input x from one row of tiles, and one column of tiles, which are each stored
+     * consecutively in the file.
+     */
+    @Override
+    public double[] getDistances(int x) {
+        double[] distances = new double[numVectors];
+        int blockX = x / tileSize;
+        int rowInTile = x - blockX * tileSize;
+        // the tiles above the diagonal: the distances to the vectors in the earlier blocks are in the columns
+        for (int blockY = 0; blockY < blockX; blockY++) {
+            int position = (blockX - blockY) * tileSize * tileSize + rowInTile;
+            int y = blockY * tileSize;
+            if (singlePrecision) {
+                FloatBuffer tiles = floatTileRows[blockY];
+                for (int r = 0; r < tileSize; r++, position += tileSize) {
+                    distances[y + r] = tiles.get(position);
+                }
+            } else {
+                DoubleBuffer tiles = doubleTileRows[blockY];
+                for (int r = 0; r < tileSize; r++, position += tileSize) {
+                    distances[y + r] = tiles.get(position);
+                }
+            }
+        }
+        // the diagonal tile and the tiles right of it: the distances are in the rows
+        for (int blockY = blockX; blockY < blocks; blockY++) {
+            readTileRow(blockX, blockY, rowInTile, distances, blockY * tileSize);
+        }
+        return distances;
+    }
+
+    /** Copies the upper-right half of the matrix row by row, reading each row of tiles sequentially. */
+    @Override
+    public double[] getDistancesFlat() {
+        double[] distances = new double[flatArraySize()];
+        double[] row = new double[blocks * tileSize];
+        int index = 0;
+        for (int x = 0; x < numVectors; x++) {
+            int blockX = x / tileSize;
+            for (int blockY = blockX; blockY < blocks; blockY++) {
+                readTileRow(blockX, blockY, x - blockX * tileSize, row, blockY * tileSize);
+            }
+            int count = numVectors - x - 1;
+            System.arraycopy(row, x + 1, distances, index, count);
+            index += count;
+        }
+        return distances;
+    }
+
+    /** Copies one row of the tile of the given blocks to the target array, skipping the padding of the last block. */
+    private void readTileRow(int blockX, int blockY, int rowInTile, double[] target, int targetOffset) {
+        int count = Math.min(tileSize, target.length - targetOffset);
+        int position = (blockY - blockX) * tileSize * tileSize + rowInTile * tileSize;
+        if (singlePrecision) {
+            FloatBuffer tiles = floatTileRows[blockX];
+            for (int i = 0; i < count; i++) {
+                target[targetOffset + i] = tiles.get(position + i);
+            }
+        } else {
+            // work on a duplicate, as the position of the buffer is shared between threads
+            DoubleBuffer tiles = doubleTileRows[blockX].duplicate();
+            tiles.position(position);
+            tiles.get(target, targetOffset, count);
+        }
+    }
+
+    static int getBlockCount(int numVectors, int tileSize) {
+        return (numVectors + tileSize - 1) / tileSize;
+    }
+
+    static long getTileBytes(int tileSize, int valueSize) {
+        return (long) tileSize * tileSize * valueSize;
+    }
+
+    /** Returns the offset of the tile of the given blocks in the file; blocks x &lt;= y. */
+    static long getTileOffset(int blockX, int blockY, int blocks, long tileBytes) {
+        // the rows of tiles before block x have blocks, blocks - 1, ... tiles
+        long tilesBefore = (long) blockX * blocks - (long) blockX * (blockX - 1) / 2;
+        return HEADER_SIZE + (tilesBefore + blockY - blockX) * tileBytes;
+    }
+
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.layers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import at.tuwien.ifs.somtoolbox.data.InputData;
+import at.tuwien.ifs.somtoolbox.data.InputDatum;
+import at.tuwien.ifs.somtoolbox.layers.metrics.DistanceMetric;
+import at.tuwien.ifs.somtoolbox.layers.metrics.MetricException;
+import at.tuwien.ifs.somtoolbox.layers.metrics.SparseDistanceMetric;
+import at.tuwien.ifs.somtoolbox.properties.SOMProperties.BatchSomKernel;
+
+/**
+ * Performs the epochs of Batch-SOM training on a {@link GrowingLayer}. Instead of collecting the input data in lists at
+ * each unit of the neighbourhood, the inputs are summed up per best-matching unit in primitive accumulators, and the new
+ * weight vectors are then computed as neighbourhood-weighted means of these sums. Memory usage is thus
+ * O(units&times;dim), independent of the number of inputs.<br/>
+ * The best-matching units of an epoch are computed in parallel chunks of the input data. The inputs are then summed
+ * up in parallel chunks of units, each thread adding only the inputs mapped to its units, thus all threads share one
+ * set of accumulators without any locking. The weight vector updates are split into chunks of units the same way. With
+ * a single thread, the inputs are summed up right during the winner search, so that each input is read only once.
+ *
+ * @author agent
+ * @version $Id$
+ */
+class BatchSOMUpdater {
+
+    private final GrowingLayer layer;
+
+    private final DistanceMetric metric;
+
+    private final BatchSomKernel kernel;
+
+    private final int dim;
+
+    /** The units of the layer, and their positions, ordered by z, y and x. */
+    private final Unit[] units;
+
+    private final int[] xPos;
+
+    private final int[] yPos;
+
+    private final int[] zPos;
+
+    /** Contiguous copy of the weight vectors for the winner search, if the metric allows it. */
+    private final WeightMatrix weightMatrix;
+
+    /** Whether the winners of dense inputs are searched in {@link #weightMatrix}, i.e. the metric is Euclidean. */
+    private final boolean euclidean;
+
+    /** The metric, if it can compute distances to sparse inputs directly; otherwise null. */
+    private final SparseDistanceMetric sparseMetric;
+
+    /** The dense terms of the sparse metric for the current weights. */
+    private double[] denseTerms;
+
+    /** Whether the inputs of the current epoch are stored sparse, and the sparse metric is used. */
+    private boolean sparseInput;
+
+    /**
+     * The winner of each input in the current epoch. Before the winner search, the winners of the previous epoch, used
+     * as initial bound in the search.
+     */
+    private int[] winners;
+
+    /** Sum of the input vectors mapped to each unit, stored unit-major. */
+    private final double[] sums;
+
+    /** Number of input vectors mapped to each unit. */
+    private final int[] hits;
+
+    /** Whether the inputs are summed up during the winner search, i.e. there is only one thread. */
+    private final boolean singlePass;
+
+    /** Indices of the units that are best-matching unit for at least one input in the current epoch. */
+    private final int[] nonEmptyUnits;
+
+    private int nonEmptyCount;
+
+    /** The neighbourhood kernel of the current epoch, indexed by the squared grid distance. */
+    private double[] kernelValues;
+
+    private InputData data;
+
+    private ExecutorService executor;
+
+    private final ArrayList<Callable<Object>> assignmentTasks = new ArrayList<Callable<Object>>();
+
+    private final ArrayList<Callable<Object>> accumulationTasks = new ArrayList<Callable<Object>>();
+
+    private final ArrayList<Callable<Object>> updateTasks = new ArrayList<Callable<Object>>();
+
+    BatchSOMUpdater(GrowingLayer layer, BatchSomKernel kernel, int threads) {
+        this.layer = layer;
+        this.metric = layer.getMetric();
+        this.kernel = kernel;
+        this.dim = layer.getDim();
+
+        int xSize = layer.getXSize();
+        int ySize = layer.getYSize();
+        int zSize = layer.getZSize();
+        Unit[][][] layerUnits = layer.getUnits();
+        int unitCount = 0;
+        for (int k = 0; k < zSize; k++) {
+            for (int j = 0; j < ySize; j++) {
+                for (int i = 0; i < xSize; i++) {
+                    if (layerUnits[i][j][k] != null) { // e.g. mnemonic SOMs don't have units at all positions
+                        unitCount++;
+                    }
+                }
+            }
+        }
+        units = new Unit[unitCount];
+        xPos = new int[unitCount];
+        yPos = new int[unitCount];
+        zPos = new int[unitCount];
+        int index = 0;
+        for (int k = 0; k < zSize; k++) {
+            for (int j = 0; j < ySize; j++) {
+                for (int i = 0; i < xSize; i++) {
+                    if (layerUnits[i][j][k] != null) {
+                        units[index] = layerUnits[i][j][k];
+                        xPos[index] = i;
+                        yPos[index] = j;
+                        zPos[index] = k;
+                        index++;
+                    }
+                }
+            }
+        }
+
+        euclidean = WeightMatrix.supportsMetric(metric);
+        sparseMetric = metric instanceof SparseDistanceMetric ? (SparseDistanceMetric) metric : null;
+        weightMatrix = euclidean || sparseMetric != null ? new WeightMatrix(units, dim) : null;
+
+        threads = Math.max(1, threads);
+        singlePass = threads == 1;
+        sums = new double[unitCount * dim];
+        hits = new int[unitCount];
+        nonEmptyUnits = new int[unitCount];
+
+        for (int t = 0; t < threads; t++) {
+            final int chunk = t;
+            final int chunkCount = threads;
+            assignmentTasks.add(new Callable<Object>() {
+                @Override
+                public Object call() throws MetricException {
+                    int numVectors = data.numVectors();
+                    assignInputs(numVectors * chunk / chunkCount, numVectors * (chunk + 1) / chunkCount);
+                    return null;
+                }
+            });
+            accumulationTasks.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    accumulateInputs(units.length * chunk / chunkCount, units.length * (chunk + 1) / chunkCount);
+                    return null;
+                }
+            });
+            updateTasks.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    updateWeightVectors(units.length * chunk / chunkCount, units.length * (chunk + 1) / chunkCount);
+                    return null;
+                }
+            });
+        }
+        if (threads > 1) {
+            executor = Executors.newFixedThreadPool(threads);
+            Logger.getLogger("at.tuwien.ifs.somtoolbox").info("Batch-SOM training with " + threads + " threads.");
+        }
+    }
+
+    /**
+     * Trains one epoch, i.e. computes the best-matching units for all inputs, and sets each weight vector to the
+     * neighbourhood-weighted mean of the inputs. Units that have no input within their neighbourhood keep their weight
+     * vector.
+     *
+     * @param data the input data.
+     * @param sigma the width of the Gaussian determining the neighbourhood radius, used for
+     *            {@link BatchSomKernel#gaussian}.
+     * @param neighbourWidth the neighbourhood radius, used for {@link BatchSomKernel#bubble}.
+     */
+    void trainEpoch(InputData data, double sigma, int neighbourWidth) throws MetricException {
+        this.data = data;
+        if (weightMatrix != null) {
+            weightMatrix.refresh();
+        }
+        if (winners == null || winners.length != data.numVectors()) {
+            winners = new int[data.numVectors()];
+            Arrays.fill(winners, -1);
+        }
+        sparseInput = sparseMetric != null && data.numVectors() > 0 && data.getInputDatum(0).isSparse();
+        if (sparseInput) {
+            denseTerms = weightMatrix.getDenseTerms(sparseMetric);
+        }
+        if (singlePass) {
+            Arrays.fill(sums, 0);
+            Arrays.fill(hits, 0);
+        }
+        run(assignmentTasks);
+        if (!singlePass) {
+            run(accumulationTasks);
+        }
+
+        nonEmptyCount = 0;
+        for (int u = 0; u < units.length; u++) {
+            if (hits[u] > 0) {
+                nonEmptyUnits[nonEmptyCount++] = u;
+            }
+        }
+
+        computeKernelValues(sigma, neighbourWidth);
+        run(updateTasks);
+    }
+
+    /** Stops the threads used for training. */
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private void run(ArrayList<Callable<Object>> tasks) throws MetricException {
+        if (executor == null) {
+            try {
+                tasks.get(0).call();
+            } catch (MetricException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return;
+        }
+        try {
+            for (Future<Object> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MetricException) {
+                throw (MetricException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Finds the best-matching units for the inputs in the given range; if there is only one thread, also adds the
+     * inputs to the accumulators of their winners.
+     */
+    private void assignInputs(int start, int end) throws MetricException {
+        for (int d = start; d < end; d++) {
+            if (sparseInput) {
+                // only look at the non-zero values, both for the winner search and the sums
+                InputDatum datum = data.getInputDatum(d);
+                int winner = weightMatrix.getWinnerIndex(datum, sparseMetric, denseTerms);
+                winners[d] = winner;
+                if (singlePass) {
+                    addInput(winner, datum);
+                }
+                continue;
+            }
+            double[] inputVector = data.getInputVector(d);
+            int winner = -1;
+            if (euclidean) {
+                winner = weightMatrix.getWinnerIndex(inputVector, winners[d]);
+            } else {
+                double smallestDistance = Double.MAX_VALUE;
+                for (int u = 0; u < units.length; u++) {
+                    double distance = metric.distance(units[u].getWeightVector(), inputVector);
+                    if (distance < smallestDistance) {
+                        smallestDistance = distance;
+                        winner = u;
+                    }
+                }
+            }
+            winners[d] = winner;
+            if (singlePass) {
+                addInput(winner, inputVector);
+            }
+        }
+    }
+
+    /** Adds the inputs whose winners are in the given range of units to the accumulators of their winners. */
+    private void accumulateInputs(int start, int end) {
+        Arrays.fill(sums, start * dim, end * dim, 0);
+        Arrays.fill(hits, start, end, 0);
+        for (int d = 0; d < winners.length; d++) {
+            int winner = winners[d];
+            if (winner < start || winner >= end) {
+                continue;
+            }
+            if (sparseInput) {
+                addInput(winner, data.getInputDatum(d));
+            } else {
+                addInput(winner, data.getInputVector(d));
+            }
+        }
+    }
+
+    private void addInput(int winner, InputDatum datum) {
+        int[] indices = datum.getSparseIndices();
+        double[] values = datum.getSparseValues();
+        hits[winner]++;
+        int offset = winner * dim;
+        for (int i = 0; i < indices.length; i++) {
+            sums[offset + indices[i]] += values[i];
+        }
+    }
+
+    private void addInput(int winner, double[] inputVector) {
+        hits[winner]++;
+        int offset = winner * dim;
+        for (int ve = 0; ve < dim; ve++) {
+            sums[offset + ve] += inputVector[ve];
+        }
+    }
+
+    private void computeKernelValues(double sigma, int neighbourWidth) {
+        // no grid offset on the layer can be larger than the one between two opposite corners
+        int maxDistanceSq = (layer.getXSize() - 1) * (layer.getXSize() - 1) + (layer.getYSize() - 1)
+                * (layer.getYSize() - 1) + (layer.getZSize() - 1) * (layer.getZSize() - 1);
+        if (kernelValues == null) {
+            kernelValues = new double[maxDistanceSq + 1];
+        }
+        double opt1 = 2 * sigma * sigma;
+        for (int distanceSq = 0; distanceSq < kernelValues.length; distanceSq++) {
+            if (kernel == BatchSomKernel.gaussian) {
+                kernelValues[distanceSq] = Math.exp(-distanceSq / opt1);
+            } else {
+                kernelValues[distanceSq] = distanceSq <= neighbourWidth * neighbourWidth ? 1 : 0;
+            }
+        }
+    }
+
+    /** Computes the new weight vectors of the units in the given range from the accumulated sums of this epoch. */
+    private void updateWeightVectors(int start, int end) {
+        double[] numerator = new double[dim];
+        for (int u = start; u < end; u++) {
+            Arrays.fill(numerator, 0);
+            double denominator = 0;
+            for (int n = 0; n < nonEmptyCount; n++) {
+                int bmu = nonEmptyUnits[n];
+                int distanceSq = (int) layer.getMapDistanceSq(xPos[u], yPos[u], zPos[u], xPos[bmu], yPos[bmu],
+                        zPos[bmu]);
+                double h = kernelValues[distanceSq];
+                if (h == 0) {
+                    continue;
+                }
+                denominator += h * hits[bmu];
+                int offset = bmu * dim;
+                for (int ve = 0; ve < dim; ve++) {
+                    numerator[ve] += h * sums[offset + ve];
+                }
+            }
+            if (denominator > 0) {
+                double[] weightVector = units[u].getWeightVector();
+                for (int ve = 0; ve < dim; ve++) {
+                    weightVector[ve] = numerator[ve] / denominator;
+                }
+            }
+        }
+    }
+}
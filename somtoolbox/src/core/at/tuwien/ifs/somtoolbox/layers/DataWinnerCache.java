@@ -0,0 +1,253 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.layers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import at.tuwien.ifs.somtoolbox.SOMToolboxException;
+import at.tuwien.ifs.somtoolbox.data.InputData;
+import at.tuwien.ifs.somtoolbox.data.InputDatum;
+import at.tuwien.ifs.somtoolbox.input.SOMLibDataWinnerMapping;
+import at.tuwien.ifs.somtoolbox.util.comparables.UnitDistance;
+
+/**
+ * Holds the best-matching units of all inputs of an {@link InputData} set, and their distances, i.e. the same
+ * information as in a data winner mapping file ({@link SOMLibDataWinnerMapping}). The winners are computed once, in
+ * parallel, and obtained from {@link GrowingLayer#getDataWinners(InputData, int)}, so that the quality measures and
+ * visualisations that need the winners of all inputs do not each search the whole map again for every input.
+ * <p>
+ * Changes of the weight vectors are detected by a hash value of all weight vectors, which is stored with the winners,
+ * and compared in {@link #isValid(GrowingLayer, InputData)}.
+ * </p>
+ * 
+ * @author agent
+ * @version $Id$
+ */
+public class DataWinnerCache {
+
+    /** The number of inputs read for each thread before the winners of these inputs are searched. */
+    private static final int INPUTS_PER_THREAD = 256;
+
+    private final InputData data;
+
+    private final int numVectors;
+
+    private final int numWinners;
+
+    /** The winners of all inputs, <code>numWinners</code> consecutive units per input. */
+    private final Unit[] winners;
+
+    /** The distances of the inputs to their winners, in the same order as {@link #winners}. */
+    private final double[] distances;
+
+    private final long weightsHash;
+
+    /** Finds the given number of winners for each input of the data, using the given number of threads. */
+    DataWinnerCache(final GrowingLayer layer, final InputData data, int numWinners, int threads) {
+        this.data = data;
+        this.numVectors = data.numVectors();
+        this.numWinners = Math.min(numWinners, layer.getUnitCount());
+        this.winners = new Unit[numVectors * this.numWinners];
+        this.distances = new double[numVectors * this.numWinners];
+        this.weightsHash = getWeightsHash(layer);
+
+        Logger.getLogger("at.tuwien.ifs.somtoolbox").info(
+                "Getting " + this.numWinners + " winners of " + numVectors + " inputs with " + threads + " threads.");
+        final int threadCount = Math.max(1, Math.min(threads, numVectors));
+        // the inputs are read by this thread only, a block at a time, as not all input data can be read concurrently,
+        // e.g. the data read from a file or a database; only the search for the winners is done in parallel
+        final InputDatum[] block = new InputDatum[Math.min(numVectors, threadCount * INPUTS_PER_THREAD)];
+        ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(threadCount);
+        final int[] blockStart = new int[1];
+        for (int i = 0; i < threadCount; i++) {
+            final int offset = i;
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    for (int b = offset; b < block.length && blockStart[0] + b < numVectors; b += threadCount) {
+                        int d = blockStart[0] + b;
+                        UnitDistance[] winnersAndDistances = layer.getWinnersAndDistances(block[b],
+                                DataWinnerCache.this.numWinners);
+                        for (int w = 0; w < winnersAndDistances.length; w++) {
+                            winners[d * DataWinnerCache.this.numWinners + w] = winnersAndDistances[w].getUnit();
+                            distances[d * DataWinnerCache.this.numWinners + w] = winnersAndDistances[w].getDistance();
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService executor = threadCount > 1 ? Executors.newFixedThreadPool(threadCount) : null;
+        try {
+            for (int start = 0; start < numVectors; start += block.length) {
+                for (int b = 0; b < block.length && start + b < numVectors; b++) {
+                    block[b] = data.getInputDatum(start + b);
+                }
+                // the start of the block is published to the tasks by submitting them
+                blockStart[0] = start;
+                run(executor, tasks);
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Takes the winners from a data winner mapping file, which has to contain all inputs of the data, and is assumed
+     * to be created from the current weights of the layer.
+     */
+    DataWinnerCache(GrowingLayer layer, InputData data, SOMLibDataWinnerMapping mapping) throws SOMToolboxException {
+        this.data = data;
+        this.numVectors = data.numVectors();
+        this.numWinners = mapping.getNumBMUs();
+        this.winners = new Unit[numVectors * numWinners];
+        this.distances = new double[numVectors * numWinners];
+        this.weightsHash = getWeightsHash(layer);
+
+        String[] labels = mapping.getLabels();
+        HashMap<String, Integer> positions = new HashMap<String, Integer>(labels.length * 2);
+        for (int i = 0; i < labels.length; i++) {
+            positions.put(labels[i], i);
+        }
+        for (int d = 0; d < numVectors; d++) {
+            Integer position = positions.get(data.getLabel(d));
+            if (position == null) {
+                throw new SOMToolboxException("Could not find label '" + data.getLabel(d)
+                        + "' in DataWinnerMapping file!");
+            }
+            int[] xPos = mapping.getXPos(position);
+            int[] yPos = mapping.getYPos(position);
+            int[] zPos = mapping.getZPos(position);
+            double[] dists = mapping.getDists(position);
+            for (int w = 0; w < numWinners; w++) {
+                winners[d * numWinners + w] = layer.getUnit(xPos[w], yPos[w], zPos[w]);
+                distances[d * numWinners + w] = dists[w];
+            }
+        }
+    }
+
+    /** Runs the given tasks with the given executor, or in this thread if there is no executor. */
+    private static void run(ExecutorService executor, ArrayList<Callable<Object>> tasks) {
+        if (executor == null) {
+            try {
+                for (Callable<Object> task : tasks) {
+                    task.call();
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return;
+        }
+        try {
+            for (Future<Object> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /** Computes a hash value of the positions and weight vectors of all units of the layer. */
+    static long getWeightsHash(GrowingLayer layer) {
+        long hash = layer.getXSize();
+        hash = 31 * hash + layer.getYSize();
+        hash = 31 * hash + layer.getZSize();
+        for (Unit unit : layer.getAllUnits()) {
+            hash = 31 * hash + (unit != null ? Arrays.hashCode(unit.getWeightVector()) : 0);
+        }
+        return hash;
+    }
+
+    /** Checks whether the winners were computed for the given data, and the current weights of the given layer. */
+    boolean isValid(GrowingLayer layer, InputData data) {
+        return this.data == data && numVectors == data.numVectors() && weightsHash == getWeightsHash(layer);
+    }
+
+    public int getNumVectors() {
+        return numVectors;
+    }
+
+    /** Returns the number of winners stored per input, which might be more than requested. */
+    public int getNumWinners() {
+        return numWinners;
+    }
+
+    /** Returns the best-matching unit of the input with the given index. */
+    public Unit getWinner(int datum) {
+        return winners[datum * numWinners];
+    }
+
+    /** Returns the winner of the given rank, starting with 0 for the best-matching unit. */
+    public Unit getWinner(int datum, int rank) {
+        return winners[datum * numWinners + checkRank(rank)];
+    }
+
+    /** Returns the distance of the input to its winner of the given rank, starting with 0. */
+    public double getDistance(int datum, int rank) {
+        return distances[datum * numWinners + checkRank(rank)];
+    }
+
+    /** Returns the given number of winners of the input, sorted ascending by distance. */
+    public Unit[] getWinners(int datum, int num) {
+        Unit[] res = new Unit[checkNumber(num)];
+        System.arraycopy(winners, datum * numWinners, res, 0, res.length);
+        return res;
+    }
+
+    /**
+     * Returns the given number of winners and distances of the input, sorted ascending by distance, as
+     * {@link GrowingLayer#getWinnersAndDistances(at.tuwien.ifs.somtoolbox.data.InputDatum, int)}.
+     */
+    public UnitDistance[] getWinnersAndDistances(int datum, int num) {
+        UnitDistance[] res = new UnitDistance[checkNumber(num)];
+        for (int w = 0; w < res.length; w++) {
+            res[w] = new UnitDistance(winners[datum * numWinners + w], distances[datum * numWinners + w]);
+        }
+        return res;
+    }
+
+    private int checkRank(int rank) {
+        if (rank >= numWinners) {
+            throw new IllegalArgumentException("Only " + numWinners + " winners per input are stored, requested rank "
+                    + rank + ".");
+        }
+        return rank;
+    }
+
+    private int checkNumber(int num) {
+        if (num > numWinners) {
+            throw new IllegalArgumentException("Only " + numWinners + " winners per input are stored, requested "
+                    + num + ".");
+        }
+        return num;
+    }
+
+}
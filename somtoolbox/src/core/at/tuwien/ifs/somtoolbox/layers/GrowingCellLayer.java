@@ -27,8 +27,6 @@ import java.util.logging.Logger;
 
 import javax.swing.JFrame;
 
-import cern.colt.matrix.DoubleMatrix1D;
-
 import at.tuwien.ifs.somtoolbox.data.InputData;
 import at.tuwien.ifs.somtoolbox.data.InputDatum;
 import at.tuwien.ifs.somtoolbox.layers.metrics.AbstractMetric;
@@ -276,10 +274,8 @@ public class GrowingCellLayer implements Layer {
         if (numWinners > getXSize() * getYSize() * getZSize()) {
             numWinners = getXSize() * getYSize() * getZSize();
         }
-        UnitDistance[] res = new UnitDistance[numWinners];
-        DoubleMatrix1D vec = input.getVector();
-        // FIXME: this algorithm should be optimisable, especially the inserting
-        // part!
+        WinnerHeap winners = new WinnerHeap(numWinners);
+        double[] inputVector = input.getVector().toArray();
         for (int k = 0; k < getZSize(); k++) {
             for (int j = 0; j < getYSize(); j++) {
                 for (int i = 0; i < getXSize(); i++) {
@@ -296,32 +292,16 @@ public class GrowingCellLayer implements Layer {
 
                     double distance = 0;
                     try {
-                        distance = metric.distance(u.getWeightVector(), vec);
+                        distance = metric.distance(u.getWeightVector(), inputVector);
                     } catch (Exception e) {
                         Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(e.getMessage());
                         System.exit(-1);
                     }
-                    int element = 0;
-                    boolean inserted = false;
-                    while (inserted == false && element < numWinners) {
-                        if (res[element] == null || distance < res[element].getDistance()) { // found place to insert
-                            // unit
-                            for (int m = numWinners - 2; m >= element; m--) { // move units with greater distance to
-                                // right
-                                res[m + 1] = res[m];
-                            }
-
-                            res[element] = new UnitDistance(u, distance);
-
-                            inserted = true;
-                        }
-                        element++;
-                    }
-
+                    winners.offer(u, distance);
                 }
             }
         }
-        return res;
+        return winners.getWinnersAndDistances();
     }
 
     public int getDim() {
@@ -25,16 +25,14 @@ import java.util.Collections;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Random;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
 import java.util.logging.Logger;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.ArrayUtils;
 
 import cern.colt.matrix.DoubleFactory3D;
-import cern.colt.matrix.DoubleMatrix1D;
 import cern.colt.matrix.DoubleMatrix2D;
 import cern.colt.matrix.DoubleMatrix3D;
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
@@ -48,14 +46,17 @@ import at.tuwien.ifs.somtoolbox.data.InputDatum;
 import at.tuwien.ifs.somtoolbox.data.SOMLibClassInformation;
 import at.tuwien.ifs.somtoolbox.data.SOMLibTemplateVector;
 import at.tuwien.ifs.somtoolbox.input.InputCorrections;
+import at.tuwien.ifs.somtoolbox.input.SOMLibDataWinnerMapping;
 import at.tuwien.ifs.somtoolbox.input.SOMLibFileFormatException;
 import at.tuwien.ifs.somtoolbox.input.InputCorrections.InputCorrection;
 import at.tuwien.ifs.somtoolbox.layers.Unit.FeatureWeightMode;
 import at.tuwien.ifs.somtoolbox.layers.metrics.AbstractMetric;
 import at.tuwien.ifs.somtoolbox.layers.metrics.AbstractWeightedMetric;
 import at.tuwien.ifs.somtoolbox.layers.metrics.DistanceMetric;
+import at.tuwien.ifs.somtoolbox.layers.metrics.L2Metric;
 import at.tuwien.ifs.somtoolbox.layers.metrics.L2MetricSparse;
 import at.tuwien.ifs.somtoolbox.layers.metrics.MetricException;
+import at.tuwien.ifs.somtoolbox.layers.metrics.SparseDistanceMetric;
 import at.tuwien.ifs.somtoolbox.layers.quality.AbstractQualityMeasure;
 import at.tuwien.ifs.somtoolbox.layers.quality.QualityMeasure;
 import at.tuwien.ifs.somtoolbox.layers.quality.QualityMeasureNotFoundException;
@@ -142,13 +143,25 @@ public class GrowingLayer implements Layer {
 
     private Hashtable<Integer, ArrayList<ComponentRegionCount>> regionAssignmentCache = new Hashtable<Integer, ArrayList<ComponentRegionCount>>();
 
+    /**
+     * The largest number of winners per input that is kept by {@link #getDataWinners(InputData, int)}; more winners,
+     * as e.g. needed by the smoothed data histograms, are computed again on each call, rather than kept for the
+     * lifetime of the layer.
+     */
+    public static final int MAX_CACHED_DATA_WINNERS = 10;
+
+    /** The winners of the inputs of the most recently used data set, see {@link #getDataWinners(InputData, int)}. */
+    private DataWinnerCache dataWinners;
+
     private static int THREAD_COUNT = 1;
 
     // private static final int NO_CPUS = Runtime.getRuntime().availableProcessors();
 
-    private CountDownLatch doneSignal;
+    /** The worker threads used during a multi-threaded training run; <code>null</code> if not training in parallel. */
+    private TrainingWorkerPool workers;
 
-    private ExecutorService e;
+    /** The truncated neighbourhood kernel used during training; <code>null</code> if all units shall be updated. */
+    private TruncatedNeighbourhoodKernel neighbourhoodKernel;
 
     private Cuboid[] ranges = null;
 
@@ -292,7 +305,6 @@ public class GrowingLayer implements Layer {
             System.exit(-1);
         }
         this.threadsUsed = THREAD_COUNT;
-        this.doneSignal = new CountDownLatch(threadsUsed);
 
         initCPURanges();
 
@@ -493,7 +505,6 @@ public class GrowingLayer implements Layer {
         this.metricName = metricName;
         this.dim = dim;
         this.threadsUsed = THREAD_COUNT;
-        this.doneSignal = new CountDownLatch(threadsUsed);
 
         initCPURanges();
 
@@ -636,7 +647,7 @@ public class GrowingLayer implements Layer {
      */
     @Override
     public Unit[] getAllUnits() {
-        Unit[] res = new Unit[xSize * ySize];
+        Unit[] res = new Unit[xSize * ySize * zSize];
         int cnt = 0;
         for (int k = 0; k < zSize; k++) {
             for (int j = 0; j < ySize; j++) {
@@ -649,6 +660,26 @@ public class GrowingLayer implements Layer {
         return res;
     }
 
+    /**
+     * Returns a copy of the weight vectors of all units, stored contiguously ordered by z, y and x coordinate. Positions
+     * without a unit, as in mnemonic SOMs, are kept as <code>null</code> units.
+     * 
+     * @return the weight vectors of the layer in a {@link WeightMatrix}.
+     */
+    public WeightMatrix getWeightMatrix() {
+        Unit[] res = new Unit[xSize * ySize * zSize];
+        int cnt = 0;
+        for (int k = 0; k < zSize; k++) {
+            for (int j = 0; j < ySize; j++) {
+                for (int i = 0; i < xSize; i++) {
+                    res[cnt] = units[i][j][k];
+                    cnt++;
+                }
+            }
+        }
+        return new WeightMatrix(res, dim);
+    }
+
     public ArrayList<GrowingSOM> getAllSubMaps() {
         ArrayList<GrowingSOM> maps = new ArrayList<GrowingSOM>();
         for (int k = 0; k < zSize; k++) {
@@ -1300,14 +1331,28 @@ public class GrowingLayer implements Layer {
      * @return the winner unit.
      */
     public Unit getWinner(InputDatum input, DistanceMetric metric) {
+        double[] inputVector = input.getVector().toArray();
+        if (workers != null && workers.isOwner()) {
+            return workers.getWinner(inputVector, metric);
+        }
         Unit winner = null;
         double smallestDistance = Double.MAX_VALUE;
-        double[] inputVector = input.getVector().toArray();
+        // compare squared Euclidean distances, abandoning each unit once it can't be closer than the current winner
+        boolean earlyAbandon = L2Metric.isEuclidean(metric) && virtualLayer == null;
         for (int k = 0; k < zSize; k++) {
             for (int j = 0; j < ySize; j++) {
                 for (int i = 0; i < xSize; i++) {
 
                     double distance = 0;
+                    if (earlyAbandon) {
+                        distance = L2Metric.squaredDistance(units[i][j][k].getWeightVector(), 0, inputVector,
+                                smallestDistance);
+                        if (distance < smallestDistance) {
+                            smallestDistance = distance;
+                            winner = units[i][j][k];
+                        }
+                        continue;
+                    }
                     try {
                         distance = metric.distance(units[i][j][k].getWeightVector(), inputVector);
                         // For adaptive coordinate calculation: store distance from the unit to the winner
@@ -1434,43 +1479,25 @@ public class GrowingLayer implements Layer {
         if (num > xSize * ySize * zSize) {
             num = xSize * ySize * zSize;
         }
-        Unit[] res = new Unit[num];
-        double[] dists = new double[num];
-        for (int i = 0; i < num; i++) {
-            res[i] = null;
-            dists[i] = Double.MAX_VALUE;
-        }
-
-        DoubleMatrix1D vec = input.getVector();
+        WinnerHeap winners = new WinnerHeap(num);
+        double[] inputVector = input.getVector().toArray();
         for (int k = 0; k < zSize; k++) {
             for (int j = 0; j < ySize; j++) {
                 for (int i = 0; i < xSize; i++) {
                     double distance = 0;
                     try {
-                        distance = metric.distance(units[i][j][k].getWeightVector(), vec);
+                        distance = metric.distance(units[i][j][k].getWeightVector(), inputVector);
                     } catch (MetricException e) {
                         Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(e.getMessage());
                         System.exit(-1);
                     }
-                    int element = 0;
-                    boolean inserted = false;
-                    while (inserted == false && element < num) {
-                        if (distance < dists[element]) { // found place to insert unit
-                            for (int m = num - 2; m >= element; m--) { // move units with greater distance to right
-                                res[m + 1] = res[m];
-                                dists[m + 1] = dists[m];
-                            }
-                            res[element] = units[i][j][k];
-                            dists[element] = distance;
-                            inserted = true;
-                        }
-                        element++;
+                    if (distance < Double.MAX_VALUE) {
+                        winners.offer(units[i][j][k], distance);
                     }
-
                 }
             }
         }
-        return res;
+        return winners.getWinners();
     }
 
     public Unit[] getWinners(InputDatum input, int num) {
@@ -1491,37 +1518,55 @@ public class GrowingLayer implements Layer {
         if (num > xSize * ySize * zSize) {
             num = xSize * ySize * zSize;
         }
-        UnitDistance[] res = new UnitDistance[num];
-        DoubleMatrix1D vec = input.getVector();
-        // FIXME: this algorithm should be optimisable, especially the inserting part!
+        WinnerHeap winners = new WinnerHeap(num);
+        double[] inputVector = input.getVector().toArray();
         for (int k = 0; k < zSize; k++) {
             for (int j = 0; j < ySize; j++) {
                 for (int i = 0; i < xSize; i++) {
                     double distance = 0;
                     try {
-                        distance = metric.distance(units[i][j][k].getWeightVector(), vec);
+                        distance = metric.distance(units[i][j][k].getWeightVector(), inputVector);
                     } catch (MetricException e) {
                         Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(e.getMessage());
                         System.exit(-1);
                     }
-                    int element = 0;
-                    boolean inserted = false;
-                    while (inserted == false && element < num) {
-                        if (res[element] == null || distance < res[element].getDistance()) { // found place to insert
-                            // unit
-                            for (int m = num - 2; m >= element; m--) { // move units with greater distance to right
-                                res[m + 1] = res[m];
-                            }
-                            res[element] = new UnitDistance(units[i][j][k], distance);
-                            inserted = true;
-                        }
-                        element++;
-                    }
-
+                    winners.offer(units[i][j][k], distance);
                 }
             }
         }
-        return res;
+        return winners.getWinnersAndDistances();
+    }
+
+    /**
+     * Returns the given number of best-matching units and their distances for all inputs of the given data. The winners
+     * are computed in parallel; up to {@link #MAX_CACHED_DATA_WINNERS} winners per input are kept until the winners of a
+     * different data set, or more winners per input are requested, or the weights of the units change.
+     * 
+     * @param data the input data for which the best-matching units will be searched.
+     * @param num the number of best-matching units per input.
+     * @return the winners of all inputs, holding at least <code>num</code> winners per input, or all units of the map.
+     */
+    public synchronized DataWinnerCache getDataWinners(InputData data, int num) {
+        num = Math.min(num, getUnitCount());
+        if (dataWinners != null && dataWinners.getNumWinners() >= num && dataWinners.isValid(this, data)) {
+            return dataWinners;
+        }
+        DataWinnerCache winners = new DataWinnerCache(this, data, num, Runtime.getRuntime().availableProcessors());
+        if (num <= MAX_CACHED_DATA_WINNERS) {
+            dataWinners = winners;
+        }
+        return winners;
+    }
+
+    /**
+     * Takes the best-matching units of all inputs of the given data from a data winner mapping file, which has to be
+     * created from the current weights of the layer, to be returned by {@link #getDataWinners(InputData, int)}.
+     * 
+     * @throws SOMToolboxException if an input is not contained in the mapping, or a winner is not on the layer.
+     */
+    public synchronized void setDataWinners(InputData data, SOMLibDataWinnerMapping mapping)
+            throws SOMToolboxException {
+        dataWinners = new DataWinnerCache(this, data, mapping);
     }
 
     @Override
@@ -1704,9 +1749,33 @@ public class GrowingLayer implements Layer {
         Unit winner = null;
         int numVectors = data.numVectors();
         StdErrProgressWriter progressWriter = new StdErrProgressWriter(numVectors, "Mapping datum ", 50);
+        // without parallel workers, search the winners in one contiguous copy of the weights; for sparse inputs, the
+        // metric might only need to look at the non-zero values, which is faster also with parallel workers
+        boolean sparseMetric = metric instanceof SparseDistanceMetric && virtualLayer == null;
+        boolean euclidean = workers == null && virtualLayer == null && WeightMatrix.supportsMetric(metric);
+        WeightMatrix weightMatrix = null;
+        double[] denseTerms = null;
+        if (euclidean || sparseMetric) {
+            weightMatrix = getWeightMatrix();
+        }
         for (int i = 0; i < numVectors; i++) {
             datum = data.getInputDatum(i);
-            winner = getWinner(datum);
+            if (sparseMetric && datum.isSparse()) {
+                if (denseTerms == null) {
+                    denseTerms = weightMatrix.getDenseTerms((SparseDistanceMetric) metric);
+                }
+                try {
+                    winner = weightMatrix.getUnit(weightMatrix.getWinnerIndex(datum, (SparseDistanceMetric) metric,
+                            denseTerms));
+                } catch (MetricException e) {
+                    Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(e.getMessage());
+                    System.exit(-1);
+                }
+            } else if (euclidean) {
+                winner = weightMatrix.getUnit(weightMatrix.getWinnerIndex(datum.getVector().toArray()));
+            } else {
+                winner = getWinner(datum);
+            }
             winner.addMappedInput(datum, false);
             progressWriter.progress();
         }
@@ -1882,9 +1951,16 @@ public class GrowingLayer implements Layer {
             }
         }
 
-        // init executor thread, if needed
-        if (threadsUsed > 1) {
-            e = Executors.newFixedThreadPool(threadsUsed);
+        // start the worker threads, if needed
+        startTrainingWorkers();
+
+        if (trainingProps.neighbourhoodKernelCutoff() > 0) {
+            neighbourhoodKernel = new TruncatedNeighbourhoodKernel(trainingProps.neighbourhoodKernelCutoff());
+            Logger.getLogger("at.tuwien.ifs.somtoolbox").info(
+                    "Updating only units with a neighbourhood kernel value >= "
+                            + trainingProps.neighbourhoodKernelCutoff());
+        } else {
+            neighbourhoodKernel = null;
         }
 
         boolean reachedQuality = false;
@@ -2009,14 +2085,19 @@ public class GrowingLayer implements Layer {
                     Unit d = getMostDissimilarNeighbor(e);
                     // insert row/column
                     insertRowColumn(e, d, progressWriter);
+                    // the map size changed, thus the slices of the worker threads need to be re-computed
+                    if (workers != null) {
+                        stopTrainingWorkers();
+                        ranges = null;
+                        initCPURanges();
+                        startTrainingWorkers();
+                    }
                 }
             }
         }
 
-        // stop executor thread, if needed
-        if (threadsUsed > 1) {
-            e.shutdown();
-        }
+        // stop the worker threads, if needed
+        stopTrainingWorkers();
 
         this.qualityMeasure = qm;
         return qm;
@@ -2137,6 +2218,11 @@ public class GrowingLayer implements Layer {
         double currentLearnrate = initialLearnrate;
         double currentSigma = initialSigma;
 
+        BatchSOMUpdater batchUpdater = null;
+        if (trainingProps.batchSom()) {
+            batchUpdater = new BatchSOMUpdater(this, trainingProps.batchSomKernel(), threadsUsed);
+        }
+
         for (int i = startIteration; i < numIterations; i++) {
             if (til != null) {
                 if (i % interruptEvery == 0) {
@@ -2147,25 +2233,14 @@ public class GrowingLayer implements Layer {
             if (trainingProps.batchSom()) {
                 try {
                     progressWriter.progress();
-                    for (int j = 0; j < data.numVectors(); j++) {
-                        InputDatum currentInput = data.getInputDatum(j);
-                        Unit winner = getWinner(currentInput);
-                        winner.addBatchSomNeighbour(currentInput);
-                        for (Unit element : getNeighbouringUnits(winner, trainingProps.neighbourWidth())) {
-                            element.addBatchSomNeighbour(currentInput);
-                        }
-                    }
-                    for (int k = 0; k < zSize; k++) {
-                        for (int j = 0; j < ySize; j++) {
-                            for (int l = 0; l < xSize; l++) {
-                                units[l][j][k].getWeightVectorFromBatchSomNeighbourhood();
-                                units[l][j][k].clearBatchSomList();
-                            }
-                        }
-                    }
-                } catch (Exception e) {
+                    batchUpdater.trainEpoch(data, currentSigma, trainingProps.neighbourWidth());
+                } catch (MetricException e) {
                     e.printStackTrace();
                 }
+                currentSigma = initialSigma * Math.exp(-1.0 * i / expParam2); // exponential
+                if (currentSigma < 0.01) {
+                    currentSigma = 0.01;
+                } // TODO: hidden parameter
             } else {
                 // get new input
                 InputDatum currentInput = data.getRandomInputDatum(i, numIterations);
@@ -2190,6 +2265,10 @@ public class GrowingLayer implements Layer {
                 progressWriter.progress();
             }
         }
+
+        if (batchUpdater != null) {
+            batchUpdater.shutdown();
+        }
     }
 
     private boolean specialClassMode(SOMProperties trainingProps) {
@@ -2197,6 +2276,21 @@ public class GrowingLayer implements Layer {
                 && (trainingProps.getSelectedClassMode() == SOMProperties.MODE_EXCEPT || trainingProps.getSelectedClassMode() == SOMProperties.MODE_FAVOUR);
     }
 
+    /** Starts the worker threads for a multi-threaded training run, if more than one slice is available. */
+    private void startTrainingWorkers() {
+        if (threadsUsed > 1 && ranges != null && ranges.length > 1) {
+            workers = new TrainingWorkerPool(ranges);
+        }
+    }
+
+    /** Stops the worker threads of a multi-threaded training run, if they have been started. */
+    private void stopTrainingWorkers() {
+        if (workers != null) {
+            workers.shutdown();
+            workers = null;
+        }
+    }
+
     private void initCPURanges() {
         if (threadsUsed <= 1 || ranges != null || xSize * ySize * zSize < 2) {
             return;
@@ -2378,17 +2472,14 @@ public class GrowingLayer implements Layer {
 
         // UnitUpdateFunction uuf = new UnitUpdateFunction(hci);
 
-        if (threadsUsed == 1) {
-            updateUnitsInArea(winner, learnrate, opt1, inputVector, 0, xSize, 0, ySize, 0, zSize);
+        if (neighbourhoodKernel != null) {
+            neighbourhoodKernel.prepare(this, winner, opt1);
+        }
+
+        if (workers != null && workers.isOwner()) {
+            workers.updateUnits(winner, learnrate, opt1, inputVector);
         } else {
-            doneSignal = new CountDownLatch(threadsUsed);
-            for (Cuboid range : ranges) {
-                e.execute(new UpdaterThread(winner, learnrate, opt1, inputVector, range));
-            }
-            try {
-                doneSignal.await(); // wait for all processes to finish
-            } catch (InterruptedException ie) {
-            }
+            updateUnitsInArea(winner, learnrate, opt1, inputVector, 0, xSize, 0, ySize, 0, zSize);
         }
     }
 
@@ -2399,6 +2490,10 @@ public class GrowingLayer implements Layer {
 
     private void updateUnitsInArea(Unit winner, double learnrate, double opt1, double[] inputVector, int startX,
             int endX, int startY, int endY, int startZ, int endZ) {
+        if (neighbourhoodKernel != null) {
+            updateUnitsInNeighbourhood(learnrate, inputVector, startX, endX, startY, endY, startZ, endZ);
+            return;
+        }
         double[] unitVector = null;
         double hci;
         for (int z = startZ; z < endZ; z++) {
@@ -2426,15 +2521,72 @@ public class GrowingLayer implements Layer {
                     // System.out.println(i+"\t"+j+"\t"+hci);
                     // uuf.hci(hci);
                     // unitVector.assign(inputVector,uuf);
-                    for (int ve = 0; ve < dim; ve++) {
-                        if (!Double.isNaN(unitVector[ve])) { // skip updating of missing values
-                            unitVector[ve] += hci * (inputVector[ve] - unitVector[ve]);
-                        }
+                    updateWeightVector(unitVector, hci, inputVector);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Updates only the units within the given area that are also inside the effective radius of the
+     * {@link #neighbourhoodKernel}, which has to be prepared for the current winner before.
+     */
+    private void updateUnitsInNeighbourhood(double learnrate, double[] inputVector, int startX, int endX, int startY,
+            int endY, int startZ, int endZ) {
+        final TruncatedNeighbourhoodKernel kernel = neighbourhoodKernel;
+        for (int iz = 0; iz < kernel.zCount; iz++) {
+            int z = kernel.zPositions[iz];
+            if (z < startZ || z >= endZ) {
+                continue;
+            }
+            for (int iy = 0; iy < kernel.yCount; iy++) {
+                int y = kernel.yPositions[iy];
+                int offsetSqYZ = kernel.zOffsetsSq[iz] + kernel.yOffsetsSq[iy];
+                if (y < startY || y >= endY || offsetSqYZ > kernel.maxOffsetSq) {
+                    continue;
+                }
+                for (int ix = 0; ix < kernel.xCount; ix++) {
+                    int x = kernel.xPositions[ix];
+                    int offsetSq = offsetSqYZ + kernel.xOffsetsSq[ix];
+                    if (x < startX || x >= endX || offsetSq > kernel.maxOffsetSq) {
+                        continue;
                     }
+                    updateWeightVector(units[x][y][z].getWeightVector(), learnrate * kernel.table[offsetSq],
+                            inputVector);
                 }
             }
         }
+    }
+
+    private void updateWeightVector(double[] unitVector, double hci, double[] inputVector) {
+        for (int ve = 0; ve < dim; ve++) {
+            if (!Double.isNaN(unitVector[ve])) { // skip updating of missing values
+                unitVector[ve] += hci * (inputVector[ve] - unitVector[ve]);
+            }
+        }
+    }
 
+    /**
+     * Computes the grid positions along one axis of the layer that are within the given radius around the position of
+     * the winner, as needed for updating only the units inside the neighbourhood of the winner.
+     * 
+     * @param winnerPos the position of the winner along the axis.
+     * @param size the size of the layer along the axis.
+     * @param radius the neighbourhood radius, in grid units.
+     * @param positions is filled with the grid positions within the radius.
+     * @param offsetsSq is filled with the squared offsets of the grid positions to the winner position.
+     * @return the number of grid positions within the radius.
+     */
+    protected int getNeighbourhoodAxis(int winnerPos, int size, int radius, int[] positions, int[] offsetsSq) {
+        int count = 0;
+        int end = Math.min(winnerPos + radius, size - 1);
+        for (int pos = Math.max(winnerPos - radius, 0); pos <= end; pos++) {
+            positions[count] = pos;
+            offsetsSq[count] = (pos - winnerPos) * (pos - winnerPos);
+            count++;
+        }
+        return count;
     }
 
     /** Calculates and returns the number of units that are not empty, i.e. that have at least one input mapped. */
@@ -2836,29 +2988,215 @@ public class GrowingLayer implements Layer {
         }
     }
 
-    class UpdaterThread implements Runnable {
-        private Unit winner;
+    /**
+     * A pool of worker threads that stay alive for a whole training run. Each worker is pinned to one of the slices of
+     * the map computed by {@link GrowingLayer#initCPURanges()}, the training thread itself processes the first slice.
+     * Both the winner search and the weight vector update are split along the same slices; the phases are synchronised
+     * via two reusable {@link CyclicBarrier}s, thus no tasks or latches are created per training iteration.
+     */
+    class TrainingWorkerPool {
+        private static final int PHASE_WINNER = 0;
 
-        private double learnrate;
+        private static final int PHASE_UPDATE = 1;
+
+        private static final int PHASE_SHUTDOWN = 2;
 
-        private double opt;
+        private final Cuboid[] slices;
+
+        private final CyclicBarrier startBarrier;
+
+        private final CyclicBarrier doneBarrier;
+
+        /** The thread that started the pool, i.e. the training thread; only this thread may dispatch phases. */
+        private final Thread owner;
+
+        // parameters of the current phase; they are published to the workers by passing the start barrier
+        private int phase;
 
         private double[] inputVector;
 
-        private Cuboid range;
+        private DistanceMetric winnerMetric;
+
+        private Unit winner;
 
-        @Override
-        public void run() {
-            updateUnitsInArea(winner, learnrate, opt, inputVector, range);
-            doneSignal.countDown();
+        private double learnrate;
+
+        private double opt1;
+
+        // the results of the winner search, one per slice
+        private final Unit[] sliceWinners;
+
+        private final double[] sliceDistances;
+
+        /** The first error thrown by a phase, by any thread; it is rethrown by the owner once all threads are done. */
+        private volatile Throwable error;
+
+        TrainingWorkerPool(Cuboid[] slices) {
+            this.slices = slices;
+            this.owner = Thread.currentThread();
+            this.startBarrier = new CyclicBarrier(slices.length);
+            this.doneBarrier = new CyclicBarrier(slices.length);
+            this.sliceWinners = new Unit[slices.length];
+            this.sliceDistances = new double[slices.length];
+            for (int i = 1; i < slices.length; i++) {
+                final int slice = i;
+                Thread worker = new Thread("GrowingLayer-Worker-" + i) {
+                    @Override
+                    public void run() {
+                        while (await(startBarrier) && phase != PHASE_SHUTDOWN) {
+                            runPhaseSafely(slice);
+                            if (!await(doneBarrier)) {
+                                return;
+                            }
+                        }
+                    }
+                };
+                worker.setDaemon(true);
+                worker.start();
+            }
+            Logger.getLogger("at.tuwien.ifs.somtoolbox.GrowingLayer").info(
+                    "Started " + (slices.length - 1) + " worker threads for training.");
+        }
+
+        boolean isOwner() {
+            return Thread.currentThread() == owner;
+        }
+
+        /** Finds the winner for the given input vector, searching all slices in parallel. */
+        Unit getWinner(double[] inputVector, DistanceMetric metric) {
+            this.inputVector = inputVector;
+            this.winnerMetric = metric;
+            dispatch(PHASE_WINNER);
+            Unit winner = null;
+            double smallestDistance = Double.MAX_VALUE;
+            for (int i = 0; i < slices.length; i++) {
+                // on equal distances, keep the unit that the sequential search would have found first
+                if (sliceWinners[i] != null
+                        && (sliceDistances[i] < smallestDistance || sliceDistances[i] == smallestDistance
+                                && isBefore(sliceWinners[i], winner))) {
+                    smallestDistance = sliceDistances[i];
+                    winner = sliceWinners[i];
+                }
+                sliceWinners[i] = null;
+            }
+            return winner;
         }
 
-        public UpdaterThread(Unit winner, double learnrate, double opt, double[] inputVector, Cuboid range) {
+        /** Updates the weight vectors of all units, each slice being updated by its own thread. */
+        void updateUnits(Unit winner, double learnrate, double opt1, double[] inputVector) {
             this.winner = winner;
             this.learnrate = learnrate;
-            this.opt = opt;
+            this.opt1 = opt1;
             this.inputVector = inputVector;
-            this.range = range;
+            dispatch(PHASE_UPDATE);
+        }
+
+        /** Terminates all worker threads. */
+        void shutdown() {
+            phase = PHASE_SHUTDOWN;
+            await(startBarrier);
+        }
+
+        private void dispatch(int phase) {
+            this.phase = phase;
+            if (!await(startBarrier)) {
+                Logger.getLogger("at.tuwien.ifs.somtoolbox").severe("Training worker threads died. Aborting.");
+                System.exit(-1);
+            }
+            runPhaseSafely(0);
+            await(doneBarrier);
+            if (error != null) {
+                // all workers wait for the next phase again, thus the pool can be shut down
+                Throwable t = error;
+                shutdown();
+                workers = null;
+                if (t instanceof RuntimeException) {
+                    throw (RuntimeException) t;
+                } else if (t instanceof Error) {
+                    throw (Error) t;
+                } else {
+                    throw new RuntimeException(t);
+                }
+            }
+        }
+
+        /**
+         * Runs the current phase on the given slice, keeping an error instead of throwing it, so that the thread still
+         * reaches the done barrier, and the other threads do not wait for it forever.
+         */
+        private void runPhaseSafely(int slice) {
+            try {
+                runPhase(slice);
+            } catch (Throwable t) {
+                if (error == null) {
+                    error = t;
+                }
+            }
+        }
+
+        private void runPhase(int slice) {
+            Cuboid range = slices[slice];
+            if (phase == PHASE_UPDATE) {
+                updateUnitsInArea(winner, learnrate, opt1, inputVector, range);
+            } else if (phase == PHASE_WINNER) {
+                Unit sliceWinner = null;
+                double smallestDistance = Double.MAX_VALUE;
+                boolean earlyAbandon = L2Metric.isEuclidean(winnerMetric) && virtualLayer == null;
+                for (int k = range.getStartZ(); k < range.getEndZ(); k++) {
+                    for (int j = range.getStartY(); j < range.getEndY(); j++) {
+                        for (int i = range.getStartX(); i < range.getEndX(); i++) {
+                            double distance = 0;
+                            if (earlyAbandon) {
+                                distance = L2Metric.squaredDistance(units[i][j][k].getWeightVector(), 0,
+                                        inputVector, smallestDistance);
+                                if (distance < smallestDistance) {
+                                    smallestDistance = distance;
+                                    sliceWinner = units[i][j][k];
+                                }
+                                continue;
+                            }
+                            try {
+                                distance = winnerMetric.distance(units[i][j][k].getWeightVector(), inputVector);
+                                if (virtualLayer != null) {
+                                    virtualLayer.setDistanceToWinner(i, j, distance);
+                                }
+                            } catch (MetricException e) {
+                                Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(e.getMessage());
+                                System.exit(-1);
+                            }
+                            if (distance < smallestDistance) {
+                                smallestDistance = distance;
+                                sliceWinner = units[i][j][k];
+                            }
+                        }
+                    }
+                }
+                sliceWinners[slice] = sliceWinner;
+                sliceDistances[slice] = smallestDistance;
+            }
+        }
+
+        private boolean isBefore(Unit u1, Unit u2) {
+            if (u2 == null) {
+                return true;
+            } else if (u1.getZPos() != u2.getZPos()) {
+                return u1.getZPos() < u2.getZPos();
+            } else if (u1.getYPos() != u2.getYPos()) {
+                return u1.getYPos() < u2.getYPos();
+            } else {
+                return u1.getXPos() < u2.getXPos();
+            }
+        }
+
+        private boolean await(CyclicBarrier barrier) {
+            try {
+                barrier.await();
+                return true;
+            } catch (InterruptedException e) {
+                return false;
+            } catch (BrokenBarrierException e) {
+                return false;
+            }
         }
     }
 
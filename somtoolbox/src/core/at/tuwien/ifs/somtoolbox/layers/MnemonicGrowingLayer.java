@@ -20,8 +20,6 @@ package at.tuwien.ifs.somtoolbox.layers;
 import java.util.ArrayList;
 import java.util.logging.Logger;
 
-import cern.colt.matrix.DoubleMatrix1D;
-
 import at.tuwien.ifs.somtoolbox.SOMToolboxException;
 import at.tuwien.ifs.somtoolbox.data.InputDatum;
 import at.tuwien.ifs.somtoolbox.layers.metrics.MetricException;
@@ -227,39 +225,25 @@ public class MnemonicGrowingLayer extends GrowingLayer {
         if (num > maxNum) {
             num = maxNum;
         }
-        UnitDistance[] res = new UnitDistance[num];
-        DoubleMatrix1D vec = input.getVector();
+        WinnerHeap winners = new WinnerHeap(num);
+        double[] inputVector = input.getVector().toArray();
         for (int k = 0; k < zSize; k++) {
             for (int j = 0; j < ySize; j++) {
                 for (int i = 0; i < xSize; i++) {
                     if (units[i][j][k] != null) {
                         double distance = 0;
                         try {
-                            distance = metric.distance(units[i][j][k].getWeightVector(), vec);
+                            distance = metric.distance(units[i][j][k].getWeightVector(), inputVector);
                         } catch (MetricException e) {
                             Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(e.getMessage());
                             System.exit(-1);
                         }
-                        int element = 0;
-                        boolean inserted = false;
-                        while (inserted == false && element < num) {
-                            if (res[element] == null || distance < res[element].getDistance()) { // found place to
-                                // insert unit
-                                for (int m = num - 2; m >= element; m--) { // move units with greater distance to
-                                    // right
-                                    res[m + 1] = res[m];
-                                }
-                                res[element] = new UnitDistance(units[i][j][k], distance);
-                                inserted = true;
-                            }
-                            element++;
-                        }
+                        winners.offer(units[i][j][k], distance);
                     }
-
                 }
             }
         }
-        return res;
+        return winners.getWinnersAndDistances();
     }
 
     @Override
@@ -102,6 +102,27 @@ public class ToroidLayer extends GrowingLayer {
         return distX * distX + distY * distY + distZ * distZ;
     }
 
+    /** Neighbourhood positions wrap around the edges of the layer. */
+    @Override
+    protected int getNeighbourhoodAxis(int winnerPos, int size, int radius, int[] positions, int[] offsetsSq) {
+        int count = 0;
+        if (2 * radius + 1 >= size) { // the neighbourhood covers the whole axis
+            for (int pos = 0; pos < size; pos++) {
+                int dist = Math.min(Math.abs(pos - winnerPos), size - Math.abs(pos - winnerPos));
+                positions[count] = pos;
+                offsetsSq[count] = dist * dist;
+                count++;
+            }
+        } else {
+            for (int offset = -radius; offset <= radius; offset++) {
+                positions[count] = (winnerPos + offset + size) % size;
+                offsetsSq[count] = offset * offset;
+                count++;
+            }
+        }
+        return count;
+    }
+
     /** On a toroid map each unit has a neighbour */
     @Override
     public boolean hasNeighbours(int x, int y) throws LayerAccessException {
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.layers;
+
+/**
+ * A Gaussian neighbourhood kernel that is truncated at a given cut-off value, i.e. units for which the neighbourhood
+ * function is below the cut-off are not updated at all. The kernel values are stored in a table indexed by the squared
+ * grid offset to the winner, which is only re-computed when sigma changes. Only the grid positions within the
+ * effective radius are visited; they are computed per axis by
+ * {@link GrowingLayer#getNeighbourhoodAxis(int, int, int, int[], int[])}. The cost of an update step thus depends on
+ * sigma rather than on the size of the map.
+ *
+ * @author agent
+ * @version $Id$
+ */
+class TruncatedNeighbourhoodKernel {
+
+    private final double cutoff;
+
+    /** The value of 2 * sigma^2 the kernel table was computed for. */
+    private double opt1 = -1;
+
+    /** The size of the layer the kernel table was computed for, as largest squared grid offset. */
+    private int maxGridOffsetSq = -1;
+
+    /** The kernel values exp(-offsetSq / opt1), indexed by the squared grid offset. */
+    double[] table = new double[0];
+
+    /** The largest squared grid offset that is still within the neighbourhood. */
+    int maxOffsetSq;
+
+    int[] xPositions = new int[0];
+
+    int[] xOffsetsSq = new int[0];
+
+    int xCount;
+
+    int[] yPositions = new int[0];
+
+    int[] yOffsetsSq = new int[0];
+
+    int yCount;
+
+    int[] zPositions = new int[0];
+
+    int[] zOffsetsSq = new int[0];
+
+    int zCount;
+
+    /**
+     * @param cutoff the minimum value of the neighbourhood function for a unit to be updated, must be in (0, 1).
+     */
+    TruncatedNeighbourhoodKernel(double cutoff) {
+        if (cutoff <= 0 || cutoff >= 1) {
+            throw new IllegalArgumentException("Neighbourhood kernel cut-off needs to be in (0, 1), found " + cutoff);
+        }
+        this.cutoff = cutoff;
+    }
+
+    /**
+     * Prepares the kernel for an update step around the given winner, i.e. re-computes the kernel table if sigma
+     * changed, and determines the grid positions within the effective radius along each axis of the layer.
+     */
+    void prepare(GrowingLayer layer, Unit winner, double opt1) {
+        // no grid offset on the layer can be larger than the one between two opposite corners
+        int maxGridOffsetSq = (layer.getXSize() - 1) * (layer.getXSize() - 1) + (layer.getYSize() - 1)
+                * (layer.getYSize() - 1) + (layer.getZSize() - 1) * (layer.getZSize() - 1);
+        if (opt1 != this.opt1 || maxGridOffsetSq != this.maxGridOffsetSq) {
+            this.opt1 = opt1;
+            this.maxGridOffsetSq = maxGridOffsetSq;
+            maxOffsetSq = (int) Math.min(Math.floor(opt1 * Math.log(1 / cutoff)), maxGridOffsetSq);
+            if (table.length < maxOffsetSq + 1) {
+                table = new double[maxOffsetSq + 1];
+            }
+            for (int offsetSq = 0; offsetSq <= maxOffsetSq; offsetSq++) {
+                table[offsetSq] = Math.exp(-offsetSq / opt1);
+            }
+        }
+        int radius = (int) Math.floor(Math.sqrt(maxOffsetSq));
+
+        if (xPositions.length < layer.getXSize()) {
+            xPositions = new int[layer.getXSize()];
+            xOffsetsSq = new int[layer.getXSize()];
+        }
+        if (yPositions.length < layer.getYSize()) {
+            yPositions = new int[layer.getYSize()];
+            yOffsetsSq = new int[layer.getYSize()];
+        }
+        if (zPositions.length < layer.getZSize()) {
+            zPositions = new int[layer.getZSize()];
+            zOffsetsSq = new int[layer.getZSize()];
+        }
+        xCount = layer.getNeighbourhoodAxis(winner.getXPos(), layer.getXSize(), radius, xPositions, xOffsetsSq);
+        yCount = layer.getNeighbourhoodAxis(winner.getYPos(), layer.getYSize(), radius, yPositions, yOffsetsSq);
+        zCount = layer.getNeighbourhoodAxis(winner.getZPos(), layer.getZSize(), radius, zPositions, zOffsetsSq);
+    }
+
+}
@@ -17,7 +17,6 @@
  */
 package at.tuwien.ifs.somtoolbox.layers;
 
-import java.util.ArrayList;
 import java.util.Random;
 import java.util.logging.Logger;
 
@@ -101,8 +100,6 @@ public class Unit extends InputContainer {
 
     private int zPos = -1;
 
-    private ArrayList<InputDatum> batchSomNeighbourhood;
-
     /**
      * Constructs a <code>Unit</code> on <code>Layer</code> specified by argument <code>layer</code> at position
      * <code>x</code>/<code>y</code> with a given weight vector <code>vec</code>.
@@ -133,8 +130,6 @@ public class Unit extends InputContainer {
         zPos = z;
         weightVector = vec;
         dim = vec.length;
-        // FIXME: don't initialise this here - if we don't use the batchmode, we just waste memory...
-        batchSomNeighbourhood = new ArrayList<InputDatum>();
     }
 
     /**
@@ -182,7 +177,6 @@ public class Unit extends InputContainer {
         yPos = y;
         zPos = z;
         dim = d;
-        batchSomNeighbourhood = new ArrayList<InputDatum>();
         weightVector = new double[dim];
         if (initialisationMode == INIT_RANDOM) {
             for (int i = 0; i < dim; i++) {
@@ -584,26 +578,6 @@ public class Unit extends InputContainer {
         updatePosition(x, y, 0);
     }
 
-    public void addBatchSomNeighbour(InputDatum d) {
-        batchSomNeighbourhood.add(d);
-    }
-
-    public void clearBatchSomList() {
-        batchSomNeighbourhood.clear();
-    }
-
-    public void getWeightVectorFromBatchSomNeighbourhood() {
-        double meanValue;
-        for (int i = 0; i < weightVector.length; i++) {
-            meanValue = 0;
-            for (int j = 0; j < batchSomNeighbourhood.size(); j++) {
-                meanValue += batchSomNeighbourhood.get(j).getVector().get(i);
-            }
-            meanValue = meanValue / batchSomNeighbourhood.size();
-            weightVector[i] = meanValue;
-        }
-    }
-
     @Override
     public String toString() {
         return "Unit[" + printCoordinates() + "]";
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.layers;
+
+import at.tuwien.ifs.somtoolbox.data.InputDatum;
+import at.tuwien.ifs.somtoolbox.layers.metrics.DistanceMetric;
+import at.tuwien.ifs.somtoolbox.layers.metrics.L2Metric;
+import at.tuwien.ifs.somtoolbox.layers.metrics.MetricException;
+import at.tuwien.ifs.somtoolbox.layers.metrics.SparseDistanceMetric;
+
+/**
+ * The weight vectors of a set of units, stored unit-major in one contiguous array, i.e. the weights of the unit with
+ * index <code>u</code> are found at <code>[u * dim, (u + 1) * dim)</code>. Operations that have to look at all weight
+ * vectors many times, e.g. finding the winners for a whole data set, can thus stream linearly through memory, instead
+ * of following the references to the single weight vectors of the units.<br/>
+ * The matrix is a copy of the weight vectors at the time of its creation, or the last call to {@link #refresh()}; it
+ * does not see modifications of the weight vectors made later on.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class WeightMatrix {
+
+    private final Unit[] units;
+
+    private final int dim;
+
+    private final double[] weights;
+
+    /**
+     * Creates a new matrix holding the weight vectors of the given units; <code>null</code> units (e.g. from a mnemonic
+     * SOM) are allowed, and never returned as winner.
+     */
+    public WeightMatrix(Unit[] units, int dim) {
+        this.units = units;
+        this.dim = dim;
+        this.weights = new double[units.length * dim];
+        refresh();
+    }
+
+    /** Copies the current weight vectors of the units into the matrix. */
+    public void refresh() {
+        for (int u = 0; u < units.length; u++) {
+            if (units[u] != null) {
+                System.arraycopy(units[u].getWeightVector(), 0, weights, u * dim, dim);
+            }
+        }
+    }
+
+    /** Returns the contiguous array of all weight vectors. */
+    public double[] getWeights() {
+        return weights;
+    }
+
+    public int getDim() {
+        return dim;
+    }
+
+    public int getUnitCount() {
+        return units.length;
+    }
+
+    public Unit getUnit(int index) {
+        return units[index];
+    }
+
+    /** Returns the offset of the weight vector of the unit with the given index in {@link #getWeights()}. */
+    public int getOffset(int index) {
+        return index * dim;
+    }
+
+    /**
+     * Checks whether winners for the given metric can be computed directly on the matrix with
+     * {@link #getWinnerIndex(double[])}, i.e. whether the metric is the Euclidean distance.
+     */
+    public static boolean supportsMetric(DistanceMetric metric) {
+        return L2Metric.isEuclidean(metric);
+    }
+
+    /**
+     * Returns the index of the unit with the smallest Euclidean distance to the given input vector, or -1 if there are
+     * no units. Ties are resolved in favour of the unit with the lower index, as in
+     * {@link GrowingLayer#getWinner(at.tuwien.ifs.somtoolbox.data.InputDatum)}.
+     */
+    public int getWinnerIndex(double[] inputVector) {
+        return getWinnerIndex(inputVector, -1);
+    }
+
+    /**
+     * Returns the index of the unit with the smallest Euclidean distance to the given input vector, like
+     * {@link #getWinnerIndex(double[])}. The distance to the given candidate, e.g. the winner of the previous
+     * iteration, is used as initial bound, so that all units further away can be abandoned early.
+     * 
+     * @param candidate the index of a likely winner, or -1 if there is none.
+     */
+    public int getWinnerIndex(double[] inputVector, int candidate) {
+        int winner = -1;
+        double smallestDistance = Double.MAX_VALUE;
+        if (candidate >= 0 && units[candidate] != null) {
+            winner = candidate;
+            smallestDistance = L2Metric.squaredDistance(weights, candidate * dim, inputVector, Double.MAX_VALUE);
+        }
+        for (int u = 0; u < units.length; u++) {
+            if (units[u] == null || u == candidate) {
+                continue;
+            }
+            double distance = L2Metric.squaredDistance(weights, u * dim, inputVector, smallestDistance);
+            // on equal distances, the unit with the lower index wins, also if the candidate was found first
+            if (distance < smallestDistance || distance == smallestDistance && u < winner) {
+                smallestDistance = distance;
+                winner = u;
+            }
+        }
+        return winner;
+    }
+
+    /**
+     * Computes the {@link SparseDistanceMetric#denseTerm(double[], int, int)} of each weight vector, to be used with
+     * {@link #getWinnerIndex(InputDatum, SparseDistanceMetric, double[])} until the matrix is refreshed.
+     */
+    public double[] getDenseTerms(SparseDistanceMetric metric) {
+        double[] denseTerms = new double[units.length];
+        for (int u = 0; u < units.length; u++) {
+            if (units[u] != null) {
+                denseTerms[u] = metric.denseTerm(weights, u * dim, dim);
+            }
+        }
+        return denseTerms;
+    }
+
+    /**
+     * Returns the index of the unit closest to the given sparse input datum, looking only at the non-zero values of
+     * the datum. Ties are resolved as in {@link #getWinnerIndex(double[])}.
+     *
+     * @param denseTerms the dense terms of the weight vectors, as computed by
+     *            {@link #getDenseTerms(SparseDistanceMetric)}.
+     */
+    public int getWinnerIndex(InputDatum datum, SparseDistanceMetric metric, double[] denseTerms)
+            throws MetricException {
+        int[] indices = datum.getSparseIndices();
+        double[] values = datum.getSparseValues();
+        int winner = -1;
+        double smallestDistance = Double.MAX_VALUE;
+        for (int u = 0; u < units.length; u++) {
+            if (units[u] == null) {
+                continue;
+            }
+            double distance = metric.distance(weights, u * dim, denseTerms[u], indices, values);
+            if (distance < smallestDistance) {
+                smallestDistance = distance;
+                winner = u;
+            }
+        }
+        return winner;
+    }
+
+}
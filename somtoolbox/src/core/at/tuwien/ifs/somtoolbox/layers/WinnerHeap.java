@@ -0,0 +1,130 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.layers;
+
+import at.tuwien.ifs.somtoolbox.util.comparables.UnitDistance;
+
+/**
+ * Selects the given number of units with the smallest distances to an input, as needed for finding several
+ * best-matching units. The selected units are kept in a bounded max-heap, with the farthest selected unit at the root,
+ * so that each unit of the map is compared to that unit only, and inserted in O(log k) time, rather than shifting a
+ * sorted array.<br/>
+ * Of units with equal distances, the ones offered first are preferred, i.e. the result is the same as when sorting all
+ * units stably by their distance.
+ * 
+ * @author agent
+ * @version $Id$
+ */
+final class WinnerHeap {
+
+    private final double[] distances;
+
+    /** The number of units offered before each selected unit, to prefer the earlier units of equal distance. */
+    private final int[] order;
+
+    private final Unit[] units;
+
+    private int size = 0;
+
+    private int offered = 0;
+
+    WinnerHeap(int capacity) {
+        distances = new double[capacity];
+        order = new int[capacity];
+        units = new Unit[capacity];
+    }
+
+    /** Offers the next unit, which is selected if it is closer than the farthest unit selected so far. */
+    void offer(Unit unit, double distance) {
+        int position = offered++;
+        if (size < units.length) {
+            // sift the new unit up from the end of the heap
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!isFarther(distance, position, distances[parent], order[parent])) {
+                    break;
+                }
+                set(i, units[parent], distances[parent], order[parent]);
+                i = parent;
+            }
+            set(i, unit, distance, position);
+        } else if (size > 0 && distance < distances[0]) {
+            // the unit replaces the farthest one; equal distances were offered earlier, and are kept
+            siftDown(unit, distance, position, size);
+        }
+    }
+
+    /** Places the given unit at the root, and sifts it down within the first <code>end</code> positions. */
+    private void siftDown(Unit unit, double distance, int position, int end) {
+        int i = 0;
+        int child;
+        while ((child = 2 * i + 1) < end) {
+            if (child + 1 < end && isFarther(distances[child + 1], order[child + 1], distances[child], order[child])) {
+                child++;
+            }
+            if (!isFarther(distances[child], order[child], distance, position)) {
+                break;
+            }
+            set(i, units[child], distances[child], order[child]);
+            i = child;
+        }
+        set(i, unit, distance, position);
+    }
+
+    private static boolean isFarther(double distance1, int order1, double distance2, int order2) {
+        return distance1 > distance2 || distance1 == distance2 && order1 > order2;
+    }
+
+    private void set(int i, Unit unit, double distance, int position) {
+        units[i] = unit;
+        distances[i] = distance;
+        order[i] = position;
+    }
+
+    /** Sorts the selected units ascending by distance; afterwards, no more units must be offered. */
+    private void sort() {
+        for (int end = size - 1; end > 0; end--) {
+            Unit unit = units[end];
+            double distance = distances[end];
+            int position = order[end];
+            set(end, units[0], distances[0], order[0]);
+            siftDown(unit, distance, position, end);
+        }
+    }
+
+    /**
+     * Returns the selected units sorted ascending by distance. If fewer units than the capacity of the heap were
+     * offered, the remaining elements are <code>null</code>.
+     */
+    Unit[] getWinners() {
+        sort();
+        return units.clone();
+    }
+
+    /** Returns the selected units and their distances sorted ascending by distance, as {@link #getWinners()}. */
+    UnitDistance[] getWinnersAndDistances() {
+        sort();
+        UnitDistance[] res = new UnitDistance[units.length];
+        for (int i = 0; i < size; i++) {
+            res[i] = new UnitDistance(units[i], distances[i]);
+        }
+        return res;
+    }
+
+}
@@ -26,7 +26,7 @@ import cern.jet.math.Functions;
  * @author Rudolf Mayer
  * @version $Id: CosineMetric.java 3358 2010-02-11 14:35:07Z mayer $
  */
-public class CosineMetric extends AbstractMetric {
+public class CosineMetric extends AbstractMetric implements SparseDistanceMetric {
 
     @Override
     public double distance(double[] vector1, double[] vector2) throws MetricException {
@@ -43,6 +43,27 @@ public class CosineMetric extends AbstractMetric {
         return v1Xv2 / (normV1 * normV2);
     }
 
+    /** The length of the dense vector. */
+    @Override
+    public double denseTerm(double[] vector, int offset, int dim) {
+        double norm = 0;
+        for (int ve = offset; ve < offset + dim; ve++) {
+            norm += vector[ve] * vector[ve];
+        }
+        return Math.sqrt(norm);
+    }
+
+    @Override
+    public double distance(double[] vector, int offset, double denseTerm, int[] indices, double[] values) {
+        double v1Xv2 = 0;
+        double normV2 = 0;
+        for (int i = 0; i < indices.length; i++) {
+            v1Xv2 += vector[offset + indices[i]] * values[i];
+            normV2 += values[i] * values[i];
+        }
+        return v1Xv2 / (denseTerm * Math.sqrt(normV2));
+    }
+
     @Override
     public double distance(DoubleMatrix1D vector1, DoubleMatrix1D vector2) throws MetricException {
         double v1Xv2 = vector1.zDotProduct(vector2);
@@ -27,7 +27,7 @@ import cern.jet.math.Functions;
  * @author Michael Dittenbach
  * @version $Id: L1Metric.java 3583 2010-05-21 10:07:41Z mayer $
  */
-public class L1Metric extends AbstractMetric implements DistanceMetric {
+public class L1Metric extends AbstractMetric implements SparseDistanceMetric {
 
     /** @see at.tuwien.ifs.somtoolbox.layers.metrics.DistanceMetric#distance(double[], double[]) */
     @Override
@@ -40,6 +40,26 @@ public class L1Metric extends AbstractMetric implements DistanceMetric {
         return dist;
     }
 
+    /** The sum of the absolute values of the dense vector. */
+    @Override
+    public double denseTerm(double[] vector, int offset, int dim) {
+        double sum = 0;
+        for (int ve = offset; ve < offset + dim; ve++) {
+            sum += Math.abs(vector[ve]);
+        }
+        return sum;
+    }
+
+    @Override
+    public double distance(double[] vector, int offset, double denseTerm, int[] indices, double[] values) {
+        double dist = denseTerm;
+        for (int i = 0; i < indices.length; i++) {
+            double w = vector[offset + indices[i]];
+            dist += Math.abs(w - values[i]) - Math.abs(w);
+        }
+        return dist < 0 ? 0 : dist; // may happen due to rounding errors for (almost) equal vectors
+    }
+
     @Override
     public double distance(DoubleMatrix1D vector1, DoubleMatrix1D vector2) throws MetricException {
         return vector1.aggregate(vector2, Functions.plus, Functions.chain(Functions.abs, Functions.minus));
@@ -26,7 +26,10 @@ import cern.colt.function.DoubleDoubleFunction;
  * @author Michael Dittenbach
  * @version $Id: L2Metric.java 3883 2010-11-02 17:13:23Z frank $
  */
-public class L2Metric extends AbstractMetric implements DistanceMetric {
+public class L2Metric extends AbstractMetric implements SparseDistanceMetric {
+
+    /** Number of components summed up before checking whether the partial distance already exceeds the bound. */
+    private static final int EARLY_ABANDON_BLOCK = 16;
 
     /**
      * @see at.tuwien.ifs.somtoolbox.layers.metrics.DistanceMetric#distance(double[], double[])
@@ -41,6 +44,71 @@ public class L2Metric extends AbstractMetric implements DistanceMetric {
         return Math.sqrt(dist);
     }
 
+    /** The squared length of the dense vector. */
+    @Override
+    public double denseTerm(double[] vector, int offset, int dim) {
+        double length = 0;
+        for (int ve = offset; ve < offset + dim; ve++) {
+            length += vector[ve] * vector[ve];
+        }
+        return length;
+    }
+
+    @Override
+    public double distance(double[] vector, int offset, double denseTerm, int[] indices, double[] values) {
+        return Math.sqrt(squaredDistance(vector, offset, denseTerm, indices, values));
+    }
+
+    /**
+     * Computes the squared Euclidean distance between a dense and a sparse vector as the squared length of the dense
+     * vector, corrected at the non-zero positions of the sparse vector.
+     */
+    protected static double squaredDistance(double[] vector, int offset, double denseTerm, int[] indices,
+            double[] values) {
+        double dist = denseTerm;
+        for (int i = 0; i < indices.length; i++) {
+            double w = vector[offset + indices[i]];
+            double diff = w - values[i];
+            dist += diff * diff - w * w;
+        }
+        return dist < 0 ? 0 : dist; // may happen due to rounding errors for (almost) equal vectors
+    }
+
+    /**
+     * Computes the squared Euclidean distance between <code>vector1[offset1 ... offset1 + vector2.length)</code> and
+     * <code>vector2</code>, abandoning the computation as soon as the partial sum exceeds the given bound. This allows
+     * to reject most candidates in a winner search after a fraction of the dimensions, as the partial sum can only
+     * grow.
+     * 
+     * @return the squared distance, if it is not larger than <code>bound</code>; otherwise, some value larger than
+     *         <code>bound</code>.
+     */
+    public static double squaredDistance(double[] vector1, int offset1, double[] vector2, double bound) {
+        int dim = vector2.length;
+        double dist = 0;
+        int ve = 0;
+        while (ve < dim) {
+            int blockEnd = Math.min(ve + EARLY_ABANDON_BLOCK, dim);
+            for (; ve < blockEnd; ve++) {
+                double diff = vector1[offset1 + ve] - vector2[ve];
+                dist += diff * diff;
+            }
+            if (dist > bound) {
+                return dist;
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Checks whether winner searches with the given metric can use
+     * {@link #squaredDistance(double[], int, double[], double)} instead of the metric, i.e. whether the metric
+     * computes the plain Euclidean distance, or its square.
+     */
+    public static boolean isEuclidean(DistanceMetric metric) {
+        return metric != null && (metric.getClass() == L2Metric.class || metric.getClass() == L2MetricFast.class);
+    }
+
     /**
      * @return the norm of the vector.
      */
@@ -35,6 +35,11 @@ public class L2MetricFast extends L2Metric {
         return dist;
     }
 
+    @Override
+    public double distance(double[] vector, int offset, double denseTerm, int[] indices, double[] values) {
+        return squaredDistance(vector, offset, denseTerm, indices, values);
+    }
+
     @Override
     public String toString() {
         return "L2-Fast";
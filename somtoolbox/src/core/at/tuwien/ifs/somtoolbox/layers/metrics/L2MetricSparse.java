@@ -24,7 +24,7 @@ package at.tuwien.ifs.somtoolbox.layers.metrics;
  * @author Rudolf Mayer
  * @version $Id: L2MetricSparse.java 3583 2010-05-21 10:07:41Z mayer $
  */
-public class L2MetricSparse extends AbstractMetric {
+public class L2MetricSparse extends AbstractMetric implements SparseDistanceMetric {
     private SparcseMetricModes mode;
 
     /** Initialises the metric with {@link DistanceMetric.SparcseMetricModes#FIRST_NON_ZERO}. */
@@ -78,6 +78,65 @@ public class L2MetricSparse extends AbstractMetric {
         }
     }
 
+    /**
+     * For {@link DistanceMetric.SparcseMetricModes#FIRST_NON_ZERO}, the sum of the squared positive values of the dense
+     * vector, or -1 if there are none; not needed for the other modes.
+     */
+    @Override
+    public double denseTerm(double[] vector, int offset, int dim) {
+        if (mode != SparcseMetricModes.FIRST_NON_ZERO) {
+            return 0;
+        }
+        double length = 0;
+        boolean hadMatch = false;
+        for (int ve = offset; ve < offset + dim; ve++) {
+            if (vector[ve] > 0) {
+                length += vector[ve] * vector[ve];
+                hadMatch = true;
+            }
+        }
+        return hadMatch ? length : -1;
+    }
+
+    @Override
+    public double distance(double[] vector, int offset, double denseTerm, int[] indices, double[] values) {
+        double dist = 0;
+        boolean hadMatch = false;
+        if (mode == SparcseMetricModes.BOTH_NON_ZERO) {
+            for (int i = 0; i < indices.length; i++) {
+                double w = vector[offset + indices[i]];
+                if (w > 0 && values[i] > 0) {
+                    dist += (w - values[i]) * (w - values[i]);
+                    hadMatch = true;
+                }
+            }
+        } else if (mode == SparcseMetricModes.FIRST_NON_ZERO) {
+            // all positive values of the dense vector, corrected at the non-zero positions of the sparse one
+            hadMatch = denseTerm >= 0;
+            dist = denseTerm;
+            for (int i = 0; i < indices.length; i++) {
+                double w = vector[offset + indices[i]];
+                if (w > 0) {
+                    dist += (w - values[i]) * (w - values[i]) - w * w;
+                }
+            }
+            dist = Math.max(dist, 0); // may happen due to rounding errors for (almost) equal vectors
+        } else {
+            for (int i = 0; i < indices.length; i++) {
+                if (values[i] > 0) {
+                    double w = vector[offset + indices[i]];
+                    dist += (w - values[i]) * (w - values[i]);
+                    hadMatch = true;
+                }
+            }
+        }
+        if (hadMatch) {
+            return Math.sqrt(dist);
+        } else {
+            return Double.MAX_VALUE;
+        }
+    }
+
     @Override
     public String toString() {
         return "L2-metric sparse";
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.layers.metrics;
+
+/**
+ * A distance metric that can compute the distance between a dense vector (e.g. a weight vector) and a sparse vector
+ * (e.g. an {@link at.tuwien.ifs.somtoolbox.data.InputDatum} of text data) by looking only at the non-zero values of the
+ * sparse vector. The part of the distance that depends only on the dense vector, e.g. its squared length, is computed
+ * separately by {@link #denseTerm(double[], int, int)}, and can thus be cached as long as the dense vector does not
+ * change.<br/>
+ * The dense vector is given as an array and an offset, so that the vectors of a
+ * {@link at.tuwien.ifs.somtoolbox.layers.WeightMatrix} can be used directly. The dense vector is always the first
+ * vector in the sense of {@link #distance(double[], double[])}.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public interface SparseDistanceMetric extends DistanceMetric {
+
+    /**
+     * Computes the part of the distance that depends only on the dense vector.
+     *
+     * @param vector the array holding the dense vector.
+     * @param offset the start of the dense vector in the array.
+     * @param dim the dimensionality of the vector.
+     */
+    public double denseTerm(double[] vector, int offset, int dim);
+
+    /**
+     * Calculates the distance between a dense and a sparse vector; the result equals the one of
+     * {@link #distance(double[], double[])} on the dense form of the sparse vector, apart from rounding.
+     *
+     * @param vector the array holding the dense vector.
+     * @param offset the start of the dense vector in the array.
+     * @param denseTerm the value of {@link #denseTerm(double[], int, int)} for the dense vector.
+     * @param indices the indices of the non-zero values of the sparse vector, in ascending order.
+     * @param values the non-zero values of the sparse vector.
+     * @return the distance between the two vectors.
+     */
+    public double distance(double[] vector, int offset, double denseTerm, int[] indices, double[] values)
+            throws MetricException;
+
+}
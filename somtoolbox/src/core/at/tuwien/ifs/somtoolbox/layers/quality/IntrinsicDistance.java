@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Hashtable;
 
 import at.tuwien.ifs.somtoolbox.data.InputData;
+import at.tuwien.ifs.somtoolbox.layers.DataWinnerCache;
 import at.tuwien.ifs.somtoolbox.layers.GrowingLayer;
 import at.tuwien.ifs.somtoolbox.layers.Layer;
 import at.tuwien.ifs.somtoolbox.layers.LayerAccessException;
@@ -138,11 +139,10 @@ public class IntrinsicDistance extends AbstractQualityMeasure {
         }
 
         _SampleSummand2 = new double[samplecount];
+        DataWinnerCache winners = ((GrowingLayer) layer).getDataWinners(data, 2);
         for (int s = 0; s < samplecount; s++) {
-            Unit[] winners = ((GrowingLayer) layer).getWinners(data.getInputDatum(s), 2);
-
-            Unit bmu = winners[0];
-            Unit sbmu = winners[1];
+            Unit bmu = winners.getWinner(s, 0);
+            Unit sbmu = winners.getWinner(s, 1);
 
             for (int u = 0; u < unitcount; u++) {
                 UnitInfo ui = units.get(V[u]);
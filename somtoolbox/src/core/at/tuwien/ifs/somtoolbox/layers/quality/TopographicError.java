@@ -20,7 +20,7 @@ package at.tuwien.ifs.somtoolbox.layers.quality;
 import java.util.logging.Logger;
 
 import at.tuwien.ifs.somtoolbox.data.InputData;
-import at.tuwien.ifs.somtoolbox.input.SOMLibDataWinnerMapping;
+import at.tuwien.ifs.somtoolbox.layers.DataWinnerCache;
 import at.tuwien.ifs.somtoolbox.layers.GrowingLayer;
 import at.tuwien.ifs.somtoolbox.layers.Layer;
 import at.tuwien.ifs.somtoolbox.layers.Unit;
@@ -28,8 +28,8 @@ import at.tuwien.ifs.somtoolbox.util.ProgressListener;
 import at.tuwien.ifs.somtoolbox.util.ProgressListenerFactory;
 
 /**
- * Implementation of Topographic Error Quality Measure.<br>
- * TODO: can maybe be optimised using data winner mapping file ({@link SOMLibDataWinnerMapping}).
+ * Implementation of Topographic Error Quality Measure. The two best-matching units of the inputs are taken from
+ * {@link GrowingLayer#getDataWinners(InputData, int)}.
  * 
  * @author Gerd Platzgummer
  * @version $Id: TopographicError.java 3883 2010-11-02 17:13:23Z frank $
@@ -70,12 +70,11 @@ public class TopographicError extends AbstractQualityMeasure {
         ProgressListener progress = ProgressListenerFactory.getInstance().createProgressListener(numVectors,
                 "Processing vector ", 10);
 
+        DataWinnerCache winners = ((GrowingLayer) layer).getDataWinners(data, 2);
         for (int d = 0; d < numVectors; d++) {
 
-            Unit[] winners = ((GrowingLayer) layer).getWinners(data.getInputDatum(d), 2);
-
-            Unit bmu = winners[0];
-            Unit sbmu = winners[1];
+            Unit bmu = winners.getWinner(d, 0);
+            Unit sbmu = winners.getWinner(d, 1);
 
             // 4er-Nachbarschaft
             if (Math.abs(bmu.getXPos() - sbmu.getXPos()) == 1 && bmu.getYPos() == sbmu.getYPos()
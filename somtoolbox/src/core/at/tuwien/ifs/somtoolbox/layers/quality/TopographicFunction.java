@@ -20,6 +20,7 @@ package at.tuwien.ifs.somtoolbox.layers.quality;
 import java.util.Vector;
 
 import at.tuwien.ifs.somtoolbox.data.InputData;
+import at.tuwien.ifs.somtoolbox.layers.DataWinnerCache;
 import at.tuwien.ifs.somtoolbox.layers.GrowingLayer;
 import at.tuwien.ifs.somtoolbox.layers.Layer;
 import at.tuwien.ifs.somtoolbox.layers.Unit;
@@ -68,11 +69,10 @@ public class TopographicFunction {
         }
 
         // build adjacency matrix
+        DataWinnerCache winners = ((GrowingLayer) layer).getDataWinners(data, 2);
         for (int s = 0; s < data.numVectors(); s++) {
-            Unit[] winners = ((GrowingLayer) layer).getWinners(data.getInputDatum(s), 2);
-
-            Unit bmu = winners[0];
-            Unit sbmu = winners[1];
+            Unit bmu = winners.getWinner(s, 0);
+            Unit sbmu = winners.getWinner(s, 1);
 
             int xposn = xsize * bmu.getYPos() + bmu.getXPos();
             int yposn = xsize * sbmu.getYPos() + sbmu.getXPos();
@@ -17,16 +17,33 @@
  */
 package at.tuwien.ifs.somtoolbox.layers.quality;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import at.tuwien.ifs.somtoolbox.data.InputData;
+import at.tuwien.ifs.somtoolbox.data.InputDatum;
+import at.tuwien.ifs.somtoolbox.layers.DataWinnerCache;
 import at.tuwien.ifs.somtoolbox.layers.GrowingLayer;
 import at.tuwien.ifs.somtoolbox.layers.Layer;
-import at.tuwien.ifs.somtoolbox.layers.Unit;
 import at.tuwien.ifs.somtoolbox.layers.metrics.DistanceMetric;
+import at.tuwien.ifs.somtoolbox.layers.metrics.MetricException;
+import at.tuwien.ifs.somtoolbox.layers.metrics.SparseDistanceMetric;
 
 /**
  * Implematation of Trustworthiness and Neighborhood preservation Quality Measures
+ * <p>
+ * The ranks of the samples are computed row by row, i.e. for one sample at a time, in parallel on all available
+ * processors. For each row, the distances in input and output space are sorted, and the rank of a neighbour is found
+ * by binary search in the sorted distances. Thus, no matrix of all ranks is kept, and both measures are computed in
+ * O(n^2 log n) time, and O(n) memory per thread. Only the sample of the current row is held as a dense vector; the
+ * distances to the other samples are computed from the representation of the data, e.g. on the non-zero values only
+ * for sparse data.
+ * </p>
  * 
  * @author Gerd Platzgummer
  * @version $Id: Trustworthiness_NeighborhoodPreservation.java 3883 2010-11-02 17:13:23Z frank $
@@ -35,11 +52,10 @@ public class Trustworthiness_NeighborhoodPreservation extends AbstractQualityMea
 
     DistanceMetric metric = null;
 
-    double _K = 0.0;
-
-    DistanceTag[][] inputDistances = null;
+    /** The metric, if it can compute distances to sparse inputs directly; <code>null</code> otherwise. */
+    private SparseDistanceMetric sparseMetric = null;
 
-    DistanceTag[][] outputDistances = null;
+    double _K = 0.0;
 
     double[][] twUnitValues = null;
 
@@ -53,9 +69,14 @@ public class Trustworthiness_NeighborhoodPreservation extends AbstractQualityMea
 
     double npK = -1;
 
+    private int numberOfCPUs = Runtime.getRuntime().availableProcessors();
+
     public Trustworthiness_NeighborhoodPreservation(Layer layer, InputData data) {
         super(layer, data);
         metric = layer.getMetric();
+        if (metric instanceof SparseDistanceMetric) {
+            sparseMetric = (SparseDistanceMetric) metric;
+        }
 
         int xSize = layer.getXSize();
         int ySize = layer.getYSize();
@@ -64,199 +85,203 @@ public class Trustworthiness_NeighborhoodPreservation extends AbstractQualityMea
 
     }
 
-    private void calculateTW() {
-        int samplecount = data.numVectors();
-        int xSize = layer.getXSize();
-        int ySize = layer.getYSize();
-
-        double[] samplevalues = new double[samplecount]; // errror value per Sample
-        for (int j = 0; j < samplecount; j++) {
-            samplevalues[j] = 0.0;
-            for (int n = 0; n < samplecount && outputDistances[j][n].getMinRank() <= _K; n++) {
-                int tag = outputDistances[j][n].getTag();
-                for (int m = 0; m < samplecount; m++) {
-                    if (inputDistances[j][m].getTag() == tag) {
-                        if (inputDistances[j][m].getMinRank() > _K) {
-                            samplevalues[j] += inputDistances[j][m].getRank() - _K;
-                        }
-                    }
-                }
-            }
-        }
-
-        // compute Map-value
-        twMapValue = 0.0;
-        for (int i = 0; i < samplecount; i++) {
-            twMapValue += samplevalues[i];
-        }
-        twMapValue = 1 - 2 / (samplecount * _K * (2 * samplecount - 3 * _K - 1)) * twMapValue;
-
-        // reset Unit- values
-        for (int x = 0; x < xSize; x++) {
-            for (int y = 0; y < ySize; y++) {
-                twUnitValues[x][y] = 0.0;
-            }
-        }
-
-        // compute Unit-values
-        for (int i = 0; i < samplecount; i++) {
-            Unit bmu = ((GrowingLayer) layer).getWinners(data.getInputDatum(i), 1)[0];
-            twUnitValues[bmu.getXPos()][bmu.getYPos()] += samplevalues[i];
-        }
-
-        twK = _K;
-        // cleanup
-        inputDistances = null;
-        outputDistances = null;
+    /** Sets the number of threads used to compute the ranks; defaults to the number of available processors. */
+    public void setNumberOfCPUs(int numberOfCPUs) {
+        this.numberOfCPUs = Math.max(1, numberOfCPUs);
     }
 
-    private void calculateNP() {
-        int samplecount = data.numVectors();
+    /** Computes both trustworthiness and neighbourhood preservation for the current {@link #_K}. */
+    private void calculate() {
+        final int samplecount = data.numVectors();
         int xSize = layer.getXSize();
         int ySize = layer.getYSize();
+        final int threads = Math.max(1, Math.min(numberOfCPUs, samplecount));
+
+        final int[] bmuX = new int[samplecount];
+        final int[] bmuY = new int[samplecount];
+        DataWinnerCache winners = ((GrowingLayer) layer).getDataWinners(data, 1);
+        for (int s = 0; s < samplecount; s++) {
+            bmuX[s] = winners.getWinner(s).getXPos();
+            bmuY[s] = winners.getWinner(s).getYPos();
+        }
 
-        double[] samplevalues = new double[samplecount]; // errror value per Sample
-        for (int j = 0; j < samplecount; j++) {
-            samplevalues[j] = 0.0;
-            for (int n = 0; n < samplecount && inputDistances[j][n].getMinRank() <= _K; n++) {
-                int tag = inputDistances[j][n].getTag();
-                for (int m = 0; m < samplecount; m++) {
-                    if (outputDistances[j][m].getTag() == tag) {
-                        if (outputDistances[j][m].getMinRank() > _K) {
-                            samplevalues[j] += outputDistances[j][m].getRank() - _K;
+        // the inputs are read once, by this thread only, as not all input data can be read concurrently, e.g. the data
+        // read from a file; for data held in memory, the inputs share the arrays of the data
+        final InputDatum[] inputs = new InputDatum[samplecount];
+        for (int s = 0; s < samplecount; s++) {
+            inputs[s] = data.getInputDatum(s);
+        }
+        final int dim = data.dim();
+
+        final double[] twSamplevalues = new double[samplecount]; // errror value per Sample
+        final double[] npSamplevalues = new double[samplecount];
+        ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(threads);
+        for (int i = 0; i < threads; i++) {
+            final int offset = i;
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() throws MetricException {
+                    double[] inputDistances = new double[samplecount];
+                    double[] outputDistances = new double[samplecount];
+                    double[] sortedInputDistances = new double[samplecount];
+                    double[] sortedOutputDistances = new double[samplecount];
+                    double[] vector = new double[dim];
+                    double[] otherVector = new double[dim];
+                    for (int s = offset; s < samplecount; s += threads) {
+                        // only the vector of the current sample is kept dense, the others stay in the form of the data
+                        toDenseVector(inputs[s], vector);
+                        double denseTerm = sparseMetric != null ? sparseMetric.denseTerm(vector, 0, vector.length) : 0;
+                        for (int t = 0; t < samplecount; t++) {
+                            if (s == t) {
+                                // the sample itself always has the last rank
+                                inputDistances[t] = Double.MAX_VALUE;
+                                outputDistances[t] = Double.MAX_VALUE;
+                            } else {
+                                inputDistances[t] = getInputDistance(vector, denseTerm, inputs[t], otherVector);
+                                outputDistances[t] = Math.sqrt((bmuX[s] - bmuX[t]) * (bmuX[s] - bmuX[t])
+                                        + (bmuY[s] - bmuY[t]) * (bmuY[s] - bmuY[t]));
+                            }
+                        }
+                        System.arraycopy(inputDistances, 0, sortedInputDistances, 0, samplecount);
+                        System.arraycopy(outputDistances, 0, sortedOutputDistances, 0, samplecount);
+                        Arrays.sort(sortedInputDistances);
+                        Arrays.sort(sortedOutputDistances);
+
+                        // a sample is among the K nearest neighbours if its smallest rank is <= K, i.e. if its distance
+                        // is not larger than the K-th smallest distance
+                        double inputThreshold = getKthDistance(sortedInputDistances);
+                        double outputThreshold = getKthDistance(sortedOutputDistances);
+                        for (int t = 0; t < samplecount; t++) {
+                            boolean inputNeighbour = inputDistances[t] <= inputThreshold;
+                            boolean outputNeighbour = outputDistances[t] <= outputThreshold;
+                            if (outputNeighbour && !inputNeighbour) {
+                                twSamplevalues[s] += getRank(sortedInputDistances, inputDistances[t]) - _K;
+                            } else if (inputNeighbour && !outputNeighbour) {
+                                npSamplevalues[s] += getRank(sortedOutputDistances, outputDistances[t]) - _K;
+                            }
                         }
                     }
+                    return null;
                 }
-            }
+            });
         }
+        run(tasks, threads);
 
         // compute Map-values
+        twMapValue = 0.0;
         npMapValue = 0.0;
         for (int i = 0; i < samplecount; i++) {
-            npMapValue += samplevalues[i];
+            twMapValue += twSamplevalues[i];
+            npMapValue += npSamplevalues[i];
         }
+        twMapValue = 1 - 2 / (samplecount * _K * (2 * samplecount - 3 * _K - 1)) * twMapValue;
         npMapValue = 1 - 2 / (samplecount * _K * (2 * samplecount - 3 * _K - 1)) * npMapValue;
 
-        // reset Unit-values
+        // compute Unit-values
         for (int x = 0; x < xSize; x++) {
             for (int y = 0; y < ySize; y++) {
+                twUnitValues[x][y] = 0.0;
                 npUnitValues[x][y] = 0.0;
             }
         }
-
-        // compute Unit-values
         for (int i = 0; i < samplecount; i++) {
-            Unit bmu = ((GrowingLayer) layer).getWinners(data.getInputDatum(i), 1)[0];
-            npUnitValues[bmu.getXPos()][bmu.getYPos()] += samplevalues[i];
+            twUnitValues[bmuX[i]][bmuY[i]] += twSamplevalues[i];
+            npUnitValues[bmuX[i]][bmuY[i]] += npSamplevalues[i];
         }
 
+        twK = _K;
         npK = _K;
-        // cleanup
-        inputDistances = null;
-        outputDistances = null;
     }
 
-    private void rankingInputSpace() { // This computes the ranking (order) in the Input Space for each value
-        int samplecount = data.numVectors();
-
-        inputDistances = new DistanceTag[samplecount][samplecount];
-        try {
-            DistanceTagComparator comparator = new DistanceTagComparator();
-            for (int s = 0; s < samplecount; s++) {
-                double[] svec = data.getInputDatum(s).getVector().toArray();
-
-                for (int t = 0; t < samplecount; t++) {
-                    if (s == t) {
-                        inputDistances[s][t] = new DistanceTag(t, Double.MAX_VALUE);
-                    } else {
-                        inputDistances[s][t] = new DistanceTag(t, metric.distance(svec,
-                                data.getInputDatum(t).getVector().toArray()));
-                    }
-                }
-                Arrays.sort(inputDistances[s], comparator);
-                // QuickSort.sort(inputDistances[s], comparator);
-
-                Rank(inputDistances, s, samplecount);
+    /**
+     * Computes the distance between the given dense vector and the given sample, using only the non-zero values of the
+     * sample if it is stored sparse.
+     * 
+     * @param otherVector a vector of the dimensionality of the data, to which the sample is copied if the metric needs
+     *            it dense.
+     */
+    private double getInputDistance(double[] vector, double denseTerm, InputDatum datum, double[] otherVector)
+            throws MetricException {
+        if (!datum.isSparse()) {
+            return metric.distance(vector, datum.getVector());
+        } else if (sparseMetric != null) {
+            return sparseMetric.distance(vector, 0, denseTerm, datum.getSparseIndices(), datum.getSparseValues());
+        }
+        // not InputDatum.getVector(), which would keep a dense copy of every sample
+        toDenseVector(datum, otherVector);
+        return metric.distance(vector, otherVector);
+    }
 
-                /*
-                 * System.out.print(s + ": "); for (int t = 0; t < samplecount; t++) System.out.print(_InputDistances[s][t].getDistance() + " ");
-                 * System.out.println();
-                 */
+    /** Copies the vector of the given datum to the given array. */
+    private static void toDenseVector(InputDatum datum, double[] vector) {
+        if (datum.isSparse()) {
+            Arrays.fill(vector, 0);
+            int[] indices = datum.getSparseIndices();
+            double[] values = datum.getSparseValues();
+            for (int i = 0; i < indices.length; i++) {
+                vector[indices[i]] = values[i];
             }
-        } catch (Exception ex) {
-            System.out.println("EXCEPTION: " + ex.getMessage());
+        } else {
+            datum.getVector().toArray(vector);
         }
-
     }
 
-    private void rankingOutputSpace() { // This computes the ranking (order) in the Output Space for each value
-        int samplecount = data.numVectors();
-
-        outputDistances = new DistanceTag[samplecount][samplecount];
-        try {
-            DistanceTagComparator comparator = new DistanceTagComparator();
-            for (int s = 0; s < samplecount; s++) {
-                Unit s_bmu = ((GrowingLayer) layer).getWinners(data.getInputDatum(s), 1)[0];
-                int s_x = s_bmu.getXPos();
-                int s_y = s_bmu.getYPos();
-
-                for (int t = 0; t < samplecount; t++) {
-                    if (s == t) {
-                        outputDistances[s][t] = new DistanceTag(t, Double.MAX_VALUE);
-                    } else {
-                        Unit t_bmu = ((GrowingLayer) layer).getWinners(data.getInputDatum(t), 1)[0];
-                        double distance = Math.sqrt((s_x - t_bmu.getXPos()) * (s_x - t_bmu.getXPos())
-                                + (s_y - t_bmu.getYPos()) * (s_y - t_bmu.getYPos()));
-                        outputDistances[s][t] = new DistanceTag(t, distance);
-                    }
-                }
-
-                Arrays.sort(outputDistances[s], comparator);
-                // QuickSort.sort(outputDistances[s], comparator);
-
-                Rank(outputDistances, s, samplecount);
+    /** Returns the distance of the K-th nearest neighbour, or infinity if there are no more than K samples. */
+    private double getKthDistance(double[] sortedDistances) {
+        if (_K < 1) {
+            return Double.NEGATIVE_INFINITY;
+        } else if (_K >= sortedDistances.length) {
+            return Double.POSITIVE_INFINITY;
+        } else {
+            return sortedDistances[(int) _K - 1];
+        }
+    }
 
-                // System.out.print(s + ": ");
-                // for (int t = 0; t < samplecount; t++)
-                // System.out.print(outputDistances[s][t].getRank() + " ");
-                // System.out.println();
+    /**
+     * Returns the rank of the given distance in the sorted distances, starting with 1; equal distances get the mean of
+     * their ranks.
+     */
+    private static double getRank(double[] sortedDistances, double distance) {
+        int first = lowerBound(sortedDistances, distance);
+        int count = lowerBound(sortedDistances, Math.nextUp(distance)) - first;
+        return first + 1 + (count - 1) / 2.0;
+    }
 
+    /** Returns the index of the first value that is not smaller than the given value. */
+    private static int lowerBound(double[] sortedValues, double value) {
+        int low = 0;
+        int high = sortedValues.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedValues[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
             }
-        } catch (Exception ex) {
-            System.out.println("EXCEPTION: " + ex.getMessage());
         }
-
+        return low;
     }
 
-    private void Rank(DistanceTag[][] distances, int s, int samplecount) {
-        int sittingbull = 0;
-        double sbdistance = distances[s][0].getDistance();
-        // distances[s][0].setMinRank(1);
-        int countequal = 0;
-        int ranksum = 0;
-        int currank = 0;
-        int minrank = 1;
-        for (int roadrunner = 1; roadrunner < samplecount; roadrunner++) {
-            currank++;
-            countequal++;
-            ranksum += currank;
-            distances[s][roadrunner].setRank(currank);
-            if (distances[s][roadrunner].getDistance() != sbdistance) {
-                while (sittingbull < roadrunner) {
-                    distances[s][sittingbull].setRank((double) ranksum / (double) countequal);
-                    distances[s][sittingbull].setMinRank(minrank);
-                    sittingbull++;
-                }
-                minrank = currank + 1;
-                ranksum = 0;
-                countequal = 0;
-                sbdistance = distances[s][roadrunner].getDistance();
+    private void run(ArrayList<Callable<Object>> tasks, int threads) {
+        if (threads == 1) {
+            try {
+                tasks.get(0).call();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
             }
-            if (roadrunner == samplecount - 1) // letzter Wert ist immer das aktuelle Sample s
-            {
-                distances[s][roadrunner].setRank(samplecount);
-                distances[s][roadrunner].setMinRank(samplecount);
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Object> future : executor.invokeAll(tasks)) {
+                future.get();
             }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdown();
         }
     }
 
@@ -272,9 +297,7 @@ public class Trustworthiness_NeighborhoodPreservation extends AbstractQualityMea
             // zur�ckgeben, sonst Neuberechnung
             if (twK != k) {
                 _K = k;
-                rankingInputSpace();
-                rankingOutputSpace();
-                calculateTW();
+                calculate();
             }
             return twMapValue;
         }
@@ -285,9 +308,7 @@ public class Trustworthiness_NeighborhoodPreservation extends AbstractQualityMea
             // zur�ckgeben, sonst Neuberechnung
             if (npK != k) {
                 _K = k;
-                rankingInputSpace();
-                rankingOutputSpace();
-                calculateNP();
+                calculate();
             }
             return npMapValue;
         } else {
@@ -308,9 +329,7 @@ public class Trustworthiness_NeighborhoodPreservation extends AbstractQualityMea
             // zur�ckgeben, sonst Neuberechnung
             if (twK != k) {
                 _K = k;
-                rankingInputSpace();
-                rankingOutputSpace();
-                calculateTW();
+                calculate();
             }
             return twUnitValues;
         }
@@ -321,9 +340,7 @@ public class Trustworthiness_NeighborhoodPreservation extends AbstractQualityMea
             // zur�ckgeben, sonst Neuberechnung
             if (npK != k) {
                 _K = k;
-                rankingInputSpace();
-                rankingOutputSpace();
-                calculateNP();
+                calculate();
             }
             return npUnitValues;
         }
@@ -337,68 +354,4 @@ public class Trustworthiness_NeighborhoodPreservation extends AbstractQualityMea
 
     /** *********************************************************************************************************** */
 
-    public class DistanceTag {
-        int _Tag;
-
-        double _Distance = 0.0;
-
-        double _Rank = 0.0;
-
-        int _MinRank = 0;
-
-        public DistanceTag(int tag) {
-            _Tag = tag;
-        }
-
-        public DistanceTag(int tag, double distance) {
-            _Tag = tag;
-            _Distance = distance;
-        }
-
-        public int getTag() {
-            return _Tag;
-        }
-
-        public double getDistance() {
-            return _Distance;
-        }
-
-        public void setDistance(double d) {
-            _Distance = d;
-        }
-
-        public double getRank() {
-            return _Rank;
-        }
-
-        public void setRank(double r) {
-            _Rank = r;
-        }
-
-        public int getMinRank() {
-            return _MinRank;
-        }
-
-        public void setMinRank(int m) {
-            _MinRank = m;
-        }
-    }
-
-    public class DistanceTagComparator implements java.util.Comparator<DistanceTag> {
-        public DistanceTagComparator() {
-        }
-
-        @Override
-        public int compare(DistanceTag t1, DistanceTag t2) {
-            double diff = t1.getDistance() - t2.getDistance();
-            if (diff > 0.0) {
-                return 1;
-            } else if (diff < 0.0) {
-                return -1;
-            } else {
-                return 0;
-            }
-        }
-    }
-
 }
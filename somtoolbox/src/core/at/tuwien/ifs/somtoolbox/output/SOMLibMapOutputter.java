@@ -121,27 +121,20 @@ public class SOMLibMapOutputter {
                 gsom.getLayer().getGridLayout(), gsom.getLayer().getGridTopology(), vecDim, idString, extraHeaders);
         int numUnits = xDim * yDim * zDim;
         StdErrProgressWriter progressWriter = new StdErrProgressWriter(numUnits, "Writing weight vector of unit ");
-        // int unitsSoFar = 0;
+        Unit[][][] units = gsom.getLayer().getUnits();
         for (int k = 0; k < zDim; k++) {
             for (int j = 0; j < yDim; j++) {
                 for (int i = 0; i < xDim; i++) {
-                    progressWriter.progress(); // "Writing weight vector of unit " + i + "/" + j + "/" + k + ", ",
-                    // ++unitsSoFar);
-                    Unit u = null;
-                    try {
-                        u = gsom.getLayer().getUnit(i, j, k);
-                    } catch (LayerAccessException e) {
-                        Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(e.getMessage());
-                        System.exit(-1);
-                    }
+                    progressWriter.progress();
+                    Unit u = units[i][j][k];
                     // adapted to menmonic (sparse) SOMs
                     if (u != null) {
                         if (u.getMappedSOM() != null) {
                             writeWeightVectorFile(u.getMappedSOM(), fDir, fName, gzipped);
                         }
+                        double[] weightVector = u.getWeightVector();
                         for (int ve = 0; ve < vecDim; ve++) {
-                            // bw.write(form.format(u.weightVector()[ve])+" ");
-                            bw.write(u.getWeightVector()[ve] + " ");
+                            bw.write(weightVector[ve] + " ");
                         }
                     } else {
                         bw.write("null ");
@@ -53,6 +53,14 @@ public class SOMProperties extends Properties {
 
     public static final String propertiesFileNameSuffix = ".prop";
 
+    /** The neighbourhood kernel used in Batch-SOM training. */
+    public enum BatchSomKernel {
+        /** All units within the neighbour_width around the winner are weighted equally. */
+        bubble,
+        /** Gaussian kernel, with the same sigma decay as in the incremental training. */
+        gaussian
+    }
+
     public class DatumToUnitMapping {
         public String label;
 
@@ -69,6 +77,10 @@ public class SOMProperties extends Properties {
 
     private int neighbourWidth = 3;
 
+    private BatchSomKernel batchSomKernel = BatchSomKernel.bubble;
+
+    private double neighbourhoodKernelCutoff = 0;
+
     private double learnrate = 0;
 
     private String metricName = null;
@@ -230,6 +242,7 @@ public class SOMProperties extends Properties {
             this.numCycles = Integer.parseInt(getProperty("numCycles", "0"));
             this.dumpEvery = Integer.parseInt(getProperty("dumpEvery", "-1"));
             this.tau = Double.parseDouble(getProperty("tau", "1"));
+            this.neighbourhoodKernelCutoff = Double.parseDouble(getProperty("neighbourhoodKernelCutoff", "0"));
 
             // parameter for adaptive coordinate visualization
             if (getProperty("adaptiveCoordinatesThreshold") != null) {
@@ -272,6 +285,15 @@ public class SOMProperties extends Properties {
                                 + "', valid options are: " + Arrays.toString(GridTopology.values()));
                 System.exit(-1);
             }
+            try {
+                batchSomKernel = BatchSomKernel.valueOf(getProperty("batch_som_kernel",
+                        BatchSomKernel.bubble.toString()));
+            } catch (Exception e) {
+                Logger.getLogger("at.tuwien.ifs.somtoolbox").severe(
+                        "Illegal value '" + getProperty("batch_som_kernel") + "' for property '" + "batch_som_kernel"
+                                + "', valid options are: " + Arrays.toString(BatchSomKernel.values()));
+                System.exit(-1);
+            }
         } catch (NumberFormatException e) {
             throw new PropertiesException("Illegal numeric value '" + e + "' in properties file.");
         }
@@ -318,6 +340,9 @@ public class SOMProperties extends Properties {
         } else if (tau <= 0 || tau > 1) {
             throw new PropertiesException("Tau less than or equal zero or greater than 1.");
         }
+        if (neighbourhoodKernelCutoff < 0 || neighbourhoodKernelCutoff >= 1) {
+            throw new PropertiesException("neighbourhoodKernelCutoff less than zero or greater than or equal 1.");
+        }
         if (StringUtils.isBlank(metricName)) {
             Logger.getLogger("at.tuwien.ifs.somtoolbox").warning("No metricName given. Defaulting to L2Metric.");
             metricName = DEFAULT_METRIC_NAME;
@@ -398,6 +423,25 @@ public class SOMProperties extends Properties {
         return neighbourWidth;
     }
 
+    /**
+     * Returns the neighbourhood kernel used in Batch-SOM training.
+     * 
+     * @return the batch_som_kernel.
+     */
+    public BatchSomKernel batchSomKernel() {
+        return batchSomKernel;
+    }
+
+    /**
+     * Returns the cut-off value of the Gaussian neighbourhood kernel. Units for which the kernel is below this value are
+     * not updated during training. Default is 0, i.e. all units of the map are updated in each iteration.
+     * 
+     * @return the cut-off value of the neighbourhood kernel.
+     */
+    public double neighbourhoodKernelCutoff() {
+        return neighbourhoodKernelCutoff;
+    }
+
     /**
      * Returns the learnrate.
      * 
@@ -105,7 +105,7 @@ import at.tuwien.ifs.somtoolbox.visualization.Visualizations;
 import at.tuwien.ifs.somtoolbox.visualization.clustering.ClusterNode;
 import at.tuwien.ifs.somtoolbox.visualization.clustering.ClusteringAbortedException;
 import at.tuwien.ifs.somtoolbox.visualization.clustering.ClusteringTree;
-import at.tuwien.ifs.somtoolbox.visualization.clustering.WardsLinkageTreeBuilderAll;
+import at.tuwien.ifs.somtoolbox.visualization.clustering.WardsLinkageTreeBuilderNNChain;
 
 /**
  * @author Sebastian Skritek (0226286, Sebastian.Skritek@gmx.at)
@@ -2004,7 +2004,8 @@ public class TestRunResult {
     public ClusteringTree getClusterTree() {
         if (this.clusterTree == null) {
             MapPNode mapPNode = new MapPNode(null, getGrowingSOM(), getGrowingSOM().getLayer(), state);
-            WardsLinkageTreeBuilderAll clustering = new WardsLinkageTreeBuilderAll();
+            WardsLinkageTreeBuilderNNChain clustering = new WardsLinkageTreeBuilderNNChain();
+            clustering.setDendrogramCache(getWeightFilePath());
             GeneralUnitPNode[][] unitNodes = new GeneralUnitPNode[getSomXSize()][getSomYSize()];
             for (int x = 0; x < unitNodes.length; x++) {
                 for (int y = 0; y < unitNodes[x].length; y++) {
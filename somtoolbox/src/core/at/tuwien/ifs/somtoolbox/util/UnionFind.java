@@ -0,0 +1,98 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.util;
+
+import java.util.Arrays;
+
+/**
+ * A union-find (disjoint-set) structure over the elements <code>0 ... n - 1</code>, with union by size and path
+ * compression, i.e. with almost constant time per operation. Used e.g. to find the connected components when building a
+ * minimum spanning tree or a dendrogram.
+ * 
+ * @author agent
+ * @version $Id$
+ */
+public class UnionFind {
+
+    private final int[] parents;
+
+    private final int[] sizes;
+
+    private int setCount;
+
+    /** Creates the structure with each of the given number of elements in a set of its own. */
+    public UnionFind(int n) {
+        parents = ArrayUtils.getLinearArray(n);
+        sizes = new int[n];
+        Arrays.fill(sizes, 1);
+        setCount = n;
+    }
+
+    /** Returns the representative of the set containing the given element. */
+    public int find(int element) {
+        int root = element;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        // path compression
+        while (parents[element] != root) {
+            int next = parents[element];
+            parents[element] = root;
+            element = next;
+        }
+        return root;
+    }
+
+    /**
+     * Unites the sets containing the two given elements.
+     * 
+     * @return the representative of the united set
+     */
+    public int union(int element1, int element2) {
+        int root1 = find(element1);
+        int root2 = find(element2);
+        if (root1 == root2) {
+            return root1;
+        }
+        if (sizes[root1] < sizes[root2]) {
+            int tmp = root1;
+            root1 = root2;
+            root2 = tmp;
+        }
+        parents[root2] = root1;
+        sizes[root1] += sizes[root2];
+        setCount--;
+        return root1;
+    }
+
+    /** Checks whether the two given elements are in the same set. */
+    public boolean isConnected(int element1, int element2) {
+        return find(element1) == find(element2);
+    }
+
+    /** Returns the number of elements in the set containing the given element. */
+    public int getSize(int element) {
+        return sizes[find(element)];
+    }
+
+    /** Returns the number of disjoint sets. */
+    public int getSetCount() {
+        return setCount;
+    }
+
+}
@@ -26,6 +26,7 @@ import java.awt.image.BufferedImage;
 import at.tuwien.ifs.somtoolbox.SOMToolboxException;
 import at.tuwien.ifs.somtoolbox.data.InputData;
 import at.tuwien.ifs.somtoolbox.data.SOMVisualisationData;
+import at.tuwien.ifs.somtoolbox.layers.DataWinnerCache;
 import at.tuwien.ifs.somtoolbox.layers.Unit;
 import at.tuwien.ifs.somtoolbox.models.GrowingSOM;
 
@@ -86,8 +87,9 @@ public class MappingDistortionVisualizer extends AbstractBackgroundImageVisualiz
 
         g.setColor(Color.RED);
         g.setStroke(new BasicStroke(0.3f));
+        DataWinnerCache dataWinners = gsom.getLayer().getDataWinners(data, 2);
         for (int d = 0; d < data.numVectors(); d++) {
-            Unit[] winners = gsom.getLayer().getWinners(data.getInputDatum(d), 2);
+            Unit[] winners = dataWinners.getWinners(d, 2);
             if (mapDistance(winners[0], winners[1]) > Math.sqrt(2)) {
                 g.draw(new Line2D.Double(winners[0].getXPos() * unitWidth + unitWidth / 2, winners[0].getYPos()
                         * unitHeight + unitHeight / 2, winners[1].getXPos() * unitWidth + unitWidth / 2,
@@ -119,8 +121,9 @@ public class MappingDistortionVisualizer extends AbstractBackgroundImageVisualiz
 
         g.setColor(Color.RED);
         g.setStroke(new BasicStroke(0.3f));
+        DataWinnerCache dataWinners = gsom.getLayer().getDataWinners(data, 3);
         for (int d = 0; d < data.numVectors(); d++) {
-            Unit[] winners = gsom.getLayer().getWinners(data.getInputDatum(d), 3);
+            Unit[] winners = dataWinners.getWinners(d, 3);
             if (mapDistance(winners[0], winners[1]) > mapDistance(winners[0], winners[2])) {
                 g.draw(new Line2D.Double(winners[0].getXPos() * unitWidth + unitWidth / 2, winners[0].getYPos()
                         * unitHeight + unitHeight / 2, winners[1].getXPos() * unitWidth + unitWidth / 2,
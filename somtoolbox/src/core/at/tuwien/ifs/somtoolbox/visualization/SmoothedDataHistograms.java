@@ -41,11 +41,11 @@ import at.tuwien.ifs.somtoolbox.SOMToolboxException;
 import at.tuwien.ifs.somtoolbox.data.InputData;
 import at.tuwien.ifs.somtoolbox.data.SOMVisualisationData;
 import at.tuwien.ifs.somtoolbox.input.SOMLibDataWinnerMapping;
+import at.tuwien.ifs.somtoolbox.layers.DataWinnerCache;
 import at.tuwien.ifs.somtoolbox.layers.Unit;
 import at.tuwien.ifs.somtoolbox.models.GrowingSOM;
 import at.tuwien.ifs.somtoolbox.util.StdErrProgressWriter;
 import at.tuwien.ifs.somtoolbox.util.VectorTools;
-import at.tuwien.ifs.somtoolbox.util.comparables.UnitDistance;
 
 /**
  * This visualizer provides an implementation of the <i>Smoothed Data Histograms</i> in three variants.
@@ -292,7 +292,6 @@ public class SmoothedDataHistograms extends AbstractMatrixVisualizer implements
         // get max number of winners for each datum
 
         int numVectors = 0;
-        Unit[][] winners = null;
         int[][] xPos = null;
         int[][] yPos = null;
         int[][] zPos = null;
@@ -301,7 +300,6 @@ public class SmoothedDataHistograms extends AbstractMatrixVisualizer implements
         if (gsom.getSharedInputObjects().getDataWinnerMapping() != null) { // we have mapping or file
             dataWinnerMapping = gsom.getSharedInputObjects().getDataWinnerMapping();
             numVectors = dataWinnerMapping.getNumVectors();
-            winners = new Unit[numVectors][];
             xPos = new int[numVectors][];
             yPos = new int[numVectors][];
             zPos = new int[numVectors][];
@@ -328,34 +326,25 @@ public class SmoothedDataHistograms extends AbstractMatrixVisualizer implements
             // FIXME: sparsity!!!!!!!!!!!!!!!!!!!!!!!!!!!
             // FIXME: sparsity!!!!!!!!!!!!!!!!!!!!!!!!!!!
             numVectors = data.numVectors();
-            winners = new Unit[numVectors][];
             xPos = new int[numVectors][];
             yPos = new int[numVectors][];
             zPos = new int[numVectors][];
             dists = new double[numVectors][];
-            StdErrProgressWriter progressWriter = new StdErrProgressWriter(numVectors, "Getting winners for datum ", 10);
+            // the layer does not keep that many winners, they are only held here while the histograms are created
+            DataWinnerCache dataWinners = gsom.getLayer().getDataWinners(data, MAX_SMOOTHING_VALUE);
 
             for (int d = 0; d < numVectors; d++) {
-
-                UnitDistance[] winnDist = gsom.getLayer().getWinnersAndDistances(data.getInputDatum(d),
-                        MAX_SMOOTHING_VALUE);
-                winners[d] = new Unit[winnDist.length];
-                dists[d] = new double[winnDist.length];
-                for (int i = 0; i < winnDist.length; i++) {
-                    winners[d][i] = winnDist[i].getUnit();
-                    dists[d][i] = winnDist[i].getDistance();
-                }
-
                 xPos[d] = new int[MAX_SMOOTHING_VALUE];
                 yPos[d] = new int[MAX_SMOOTHING_VALUE];
                 zPos[d] = new int[MAX_SMOOTHING_VALUE];
+                dists[d] = new double[MAX_SMOOTHING_VALUE];
                 for (int w = 0; w < MAX_SMOOTHING_VALUE; w++) {
-                    xPos[d][w] = winners[d][w].getXPos();
-                    yPos[d][w] = winners[d][w].getYPos();
-                    zPos[d][w] = winners[d][w].getZPos();
+                    Unit winner = dataWinners.getWinner(d, w);
+                    xPos[d][w] = winner.getXPos();
+                    yPos[d][w] = winner.getYPos();
+                    zPos[d][w] = winner.getZPos();
+                    dists[d][w] = dataWinners.getDistance(d, w);
                 }
-                progressWriter.progress(d + 1);
-                // TODO: store the generated data winner mapping for sub-sequent use.
             }
         } else { // throw an exception that will later be handled
             throw new SOMToolboxException("You need to specify at least one out of " + neededInputObjects[0] + " or "
@@ -423,7 +412,6 @@ public class SmoothedDataHistograms extends AbstractMatrixVisualizer implements
 
             progressWriter.progress();
         }
-        winners = null;
         Logger.getLogger("at.tuwien.ifs.somtoolbox").info("Initialization of SDH cache finished.");
     }
 
@@ -17,9 +17,6 @@
  */
 package at.tuwien.ifs.somtoolbox.visualization.clustering;
 
-import at.tuwien.ifs.somtoolbox.layers.metrics.L2Metric;
-import at.tuwien.ifs.somtoolbox.util.VectorTools;
-
 /**
  * @author Rudolf Mayer
  * @version $Id: AbstractWardsLinkageTreeBuilder.java 3583 2010-05-21 10:07:41Z mayer $
@@ -39,15 +36,8 @@ public abstract class AbstractWardsLinkageTreeBuilder extends TreeBuilder {
      * @return the 'distance' value
      */
     protected double calcESSincrease(ClusterNode n1, ClusterNode n2) {
-        int length1 = n1.getNodes().length;
-        int length2 = n2.getNodes().length;
-
-        L2Metric l2 = new L2Metric();
-
-        double dist = l2.norm(VectorTools.subtract(n1.getMeanVector(), n2.getMeanVector()));
-        double result = dist * dist / (length1 + length2) * length1 * length2;
-
-        return result;
+        return WardsLinkageDendrogramBuilder.calcESSincrease(n1.getMeanVector(), n1.getSize(), n2.getMeanVector(),
+                n2.getSize());
     }
 
 }
\ No newline at end of file
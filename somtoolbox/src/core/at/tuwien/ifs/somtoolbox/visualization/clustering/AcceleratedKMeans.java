@@ -0,0 +1,647 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.visualization.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import at.tuwien.ifs.somtoolbox.data.InputData;
+import at.tuwien.ifs.somtoolbox.layers.metrics.L2Metric;
+
+/**
+ * A k-means engine for the Euclidean distance, suited for large numbers of vectors and clusters.
+ * <ul>
+ * <li>Seeding by k-means++, i.e. sampling the centroids proportional to the squared distance to the already chosen
+ * ones, or by k-means||, which samples about k candidates in each of a few rounds over the data, and then reduces
+ * them to k centroids by a weighted k-means++. k-means|| needs much fewer passes over the data, which pays off if
+ * reading the vectors is expensive, e.g. from {@link InputData}.</li>
+ * <li>Batch training with Hamerly's algorithm: each vector keeps an upper bound on the distance to its centroid, and
+ * a lower bound on the distance to all other centroids. As long as the upper bound is smaller than the lower bound,
+ * and than half of the distance of the centroid to its closest other centroid, the assignment can't change, and no
+ * distances need to be computed. Unlike Elkan's algorithm, which keeps k lower bounds per vector, this needs O(n)
+ * memory only.</li>
+ * <li>Mini-batch training, which updates the centroids from small random samples of the data, and needs only a final
+ * pass over all vectors to assign them; this is suited for clustering millions of input vectors.</li>
+ * </ul>
+ * The passes over the data are split into chunks that are processed in parallel, each chunk with its own
+ * accumulators, which are summed up after all chunks are finished. The vectors are either given as matrix, or read
+ * one by one from {@link InputData}; as not all input data can be read concurrently, e.g. the data read from a file,
+ * the passes over {@link InputData} are done in the calling thread only.
+ * 
+ * @author agent
+ * @version $Id$
+ */
+public class AcceleratedKMeans {
+
+    /** The number of rounds of k-means|| seeding. */
+    private static final int KMEANS_PARALLEL_ROUNDS = 5;
+
+    private final int k;
+
+    private final int numberOfInstances;
+
+    private final int numberOfAttributes;
+
+    private double[][] data;
+
+    private InputData inputData;
+
+    private double[][] centroids;
+
+    private int[] assignments;
+
+    private int maxIterations = 300;
+
+    private int numberOfCPUs = 1;
+
+    private ExecutorService executor;
+
+    private Random random = new Random(1234567);
+
+    /**
+     * @param k the number of clusters
+     * @param data the vectors to cluster, one per row
+     */
+    public AcceleratedKMeans(int k, double[][] data) {
+        this(k, data.length, data[0].length);
+        this.data = data;
+    }
+
+    /**
+     * @param k the number of clusters
+     * @param inputData the input vectors to cluster
+     */
+    public AcceleratedKMeans(int k, InputData inputData) {
+        this(k, inputData.numVectors(), inputData.dim());
+        this.inputData = inputData;
+    }
+
+    private AcceleratedKMeans(int k, int numberOfInstances, int numberOfAttributes) {
+        if (k < 1 || k > numberOfInstances) {
+            throw new IllegalArgumentException("Can't create " + k + " clusters from " + numberOfInstances
+                    + " vectors!");
+        }
+        this.k = k;
+        this.numberOfInstances = numberOfInstances;
+        this.numberOfAttributes = numberOfAttributes;
+    }
+
+    public void setSeed(long seed) {
+        random = new Random(seed);
+    }
+
+    /** Sets the maximum number of iterations of {@link #train()}. */
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public void setNumberOfCPUs(int numberOfCPUs) {
+        this.numberOfCPUs = Math.max(1, numberOfCPUs);
+        shutdown();
+        executor = this.numberOfCPUs > 1 ? Executors.newFixedThreadPool(this.numberOfCPUs) : null;
+    }
+
+    /** Stops the threads used for training. */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /** Sets the initial centroids; the given values are copied. */
+    public void setCentroids(double[][] initialCentroids) {
+        if (initialCentroids.length != k) {
+            throw new IllegalArgumentException("Expected " + k + " centroids, got " + initialCentroids.length + ".");
+        }
+        centroids = new double[k][];
+        for (int j = 0; j < k; j++) {
+            centroids[j] = initialCentroids[j].clone();
+        }
+        assignments = null;
+    }
+
+    public double[][] getCentroids() {
+        return centroids;
+    }
+
+    /** Returns the index of the centroid each vector is assigned to, after {@link #train()} or {@link #assign()}. */
+    public int[] getAssignments() {
+        return assignments;
+    }
+
+    public int[] getClusterSizes() {
+        int[] sizes = new int[k];
+        for (int assignment : assignments) {
+            sizes[assignment]++;
+        }
+        return sizes;
+    }
+
+    private double[] getVector(int index) {
+        return data != null ? data[index] : inputData.getInputVector(index);
+    }
+
+    /** Chooses the initial centroids by k-means++. */
+    public void seedKMeansPlusPlus() {
+        centroids = new double[k][];
+        centroids[0] = getVector(random.nextInt(numberOfInstances)).clone();
+        final double[] minDistances = new double[numberOfInstances];
+        Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+        for (int j = 1; j < k; j++) {
+            double total = updateMinDistances(minDistances, new double[][] { centroids[j - 1] }, null, 0);
+            centroids[j] = getVector(sample(minDistances, total)).clone();
+        }
+        assignments = null;
+    }
+
+    /**
+     * Chooses the initial centroids by k-means||: in each of {@value #KMEANS_PARALLEL_ROUNDS} rounds, every vector is
+     * taken as candidate with a probability proportional to its squared distance to the closest candidate so far, such
+     * that about k candidates are sampled per round. The candidates are weighted by the number of vectors closest to
+     * them, and reduced to k centroids by a weighted k-means++.
+     */
+    public void seedKMeansParallel() {
+        final ArrayList<double[]> candidates = new ArrayList<double[]>();
+        candidates.add(getVector(random.nextInt(numberOfInstances)).clone());
+        final double[] minDistances = new double[numberOfInstances];
+        Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+        // the closest candidate of each vector, to weight the candidates without another pass over the data
+        final int[] closestCandidates = new int[numberOfInstances];
+        double total = updateMinDistances(minDistances, new double[][] { candidates.get(0) }, closestCandidates, 0);
+        final double oversampling = k;
+        for (int round = 0; round < KMEANS_PARALLEL_ROUNDS && total > 0; round++) {
+            final double roundTotal = total;
+            final int chunks = getChunkCount();
+            final long[] chunkSeeds = new long[chunks];
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                chunkSeeds[chunk] = random.nextLong();
+            }
+            final ArrayList<ArrayList<Integer>> chunkSamples = new ArrayList<ArrayList<Integer>>(chunks);
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                chunkSamples.add(new ArrayList<Integer>());
+            }
+            runChunks(new ChunkProcessor() {
+                @Override
+                public void process(int chunk, int start, int end) {
+                    Random chunkRandom = new Random(chunkSeeds[chunk]);
+                    ArrayList<Integer> samples = chunkSamples.get(chunk);
+                    for (int i = start; i < end; i++) {
+                        if (chunkRandom.nextDouble() * roundTotal < oversampling * minDistances[i]) {
+                            samples.add(i);
+                        }
+                    }
+                }
+            });
+            ArrayList<double[]> sampled = new ArrayList<double[]>();
+            for (ArrayList<Integer> samples : chunkSamples) {
+                for (int index : samples) {
+                    sampled.add(getVector(index).clone());
+                }
+            }
+            total = updateMinDistances(minDistances, sampled.toArray(new double[sampled.size()][]),
+                    closestCandidates, candidates.size());
+            candidates.addAll(sampled);
+        }
+        // fill up with random vectors in the rare case of too few candidates, e.g. for many duplicate vectors
+        if (candidates.size() < k) {
+            ArrayList<double[]> added = new ArrayList<double[]>();
+            while (candidates.size() + added.size() < k) {
+                added.add(getVector(random.nextInt(numberOfInstances)).clone());
+            }
+            updateMinDistances(minDistances, added.toArray(new double[added.size()][]), closestCandidates,
+                    candidates.size());
+            candidates.addAll(added);
+        }
+
+        // weight the candidates by the number of vectors closest to them
+        final double[][] candidateArray = candidates.toArray(new double[candidates.size()][]);
+        double[] weights = new double[candidateArray.length];
+        for (int closestCandidate : closestCandidates) {
+            weights[closestCandidate]++;
+        }
+
+        // weighted k-means++ on the candidates; chosen candidates get a distance of 0, and are thus not chosen again
+        centroids = new double[k][];
+        double[] candidateDistances = new double[candidateArray.length];
+        Arrays.fill(candidateDistances, Double.POSITIVE_INFINITY);
+        int chosen = sample(weights, sum(weights));
+        for (int j = 0; j < k; j++) {
+            centroids[j] = candidateArray[chosen].clone();
+            if (j == k - 1) {
+                break;
+            }
+            double candidateTotal = 0;
+            for (int c = 0; c < candidateArray.length; c++) {
+                double distance = squaredDistance(candidateArray[c], centroids[j], candidateDistances[c]);
+                if (distance < candidateDistances[c]) {
+                    candidateDistances[c] = distance;
+                }
+                candidateTotal += weights[c] * candidateDistances[c];
+            }
+            double[] probabilities = new double[candidateArray.length];
+            for (int c = 0; c < candidateArray.length; c++) {
+                probabilities[c] = weights[c] * candidateDistances[c];
+            }
+            if (candidateTotal > 0) {
+                chosen = sample(probabilities, candidateTotal);
+            } else { // all remaining candidates coincide with centroids
+                chosen = random.nextInt(candidateArray.length);
+            }
+        }
+        assignments = null;
+    }
+
+    /**
+     * Updates the squared distances of each vector to its closest centroid with the given new centroids, in one pass
+     * over the vectors.
+     * 
+     * @param closestCentroids if not <code>null</code>, the index of the closest centroid is updated as well, the new
+     *            centroids being numbered from <code>firstIndex</code>
+     * @return the sum of the updated squared distances
+     */
+    private double updateMinDistances(final double[] minDistances, final double[][] newCentroids,
+            final int[] closestCentroids, final int firstIndex) {
+        final double[] chunkTotals = new double[getChunkCount()];
+        runChunks(new ChunkProcessor() {
+            @Override
+            public void process(int chunk, int start, int end) {
+                double total = 0;
+                for (int i = start; i < end; i++) {
+                    double[] vector = getVector(i);
+                    for (int c = 0; c < newCentroids.length; c++) {
+                        double distance = squaredDistance(vector, newCentroids[c], minDistances[i]);
+                        if (distance < minDistances[i]) {
+                            minDistances[i] = distance;
+                            if (closestCentroids != null) {
+                                closestCentroids[i] = firstIndex + c;
+                            }
+                        }
+                    }
+                    total += minDistances[i];
+                }
+                chunkTotals[chunk] = total;
+            }
+        });
+        return sum(chunkTotals);
+    }
+
+    /** Returns an index chosen with a probability proportional to its weight. */
+    private int sample(double[] weights, double total) {
+        if (total <= 0) {
+            return random.nextInt(weights.length);
+        }
+        double target = random.nextDouble() * total;
+        double cumulated = 0;
+        int last = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] > 0) {
+                cumulated += weights[i];
+                last = i;
+                if (cumulated > target) {
+                    return i;
+                }
+            }
+        }
+        return last; // rounding errors
+    }
+
+    /**
+     * Trains with batch k-means, using Hamerly's bounds to skip the distance computations for vectors that can't
+     * change their cluster, until no vector changes its cluster anymore, or the maximum number of iterations is
+     * reached. Uses k-means++ seeding if no centroids have been set before.
+     * 
+     * @return the number of iterations
+     */
+    public int train() {
+        if (centroids == null) {
+            seedKMeansPlusPlus();
+        }
+        final int chunks = getChunkCount();
+        final int[] assignment = new int[numberOfInstances];
+        final double[] upperBounds = new double[numberOfInstances];
+        final double[] lowerBounds = new double[numberOfInstances];
+        final double[] halfCentroidDistances = new double[k];
+        final double[] movements = new double[k];
+        final double[][] chunkSums = new double[chunks][k * numberOfAttributes];
+        final int[][] chunkCounts = new int[chunks][k];
+        final int[] chunkChanges = new int[chunks];
+
+        // initial assignment, with exact bounds
+        runChunks(new ChunkProcessor() {
+            @Override
+            public void process(int chunk, int start, int end) {
+                double[] sums = chunkSums[chunk];
+                int[] counts = chunkCounts[chunk];
+                for (int i = start; i < end; i++) {
+                    double[] vector = getVector(i);
+                    assignClosestTwo(i, vector, assignment, upperBounds, lowerBounds);
+                    addToSums(vector, assignment[i], sums, counts);
+                }
+            }
+        });
+
+        int iteration = 0;
+        while (iteration < maxIterations) {
+            iteration++;
+            updateCentroids(chunkSums, chunkCounts, movements);
+
+            // the largest and second-largest movement, to update the lower bounds
+            int maxMovementIndex = 0;
+            for (int j = 1; j < k; j++) {
+                if (movements[j] > movements[maxMovementIndex]) {
+                    maxMovementIndex = j;
+                }
+            }
+            double secondMaxMovement = 0;
+            for (int j = 0; j < k; j++) {
+                if (j != maxMovementIndex && movements[j] > secondMaxMovement) {
+                    secondMaxMovement = movements[j];
+                }
+            }
+            final int maxIndex = maxMovementIndex;
+            final double maxMovement = movements[maxMovementIndex];
+            final double secondMovement = secondMaxMovement;
+
+            for (int j = 0; j < k; j++) {
+                double min = Double.POSITIVE_INFINITY;
+                for (int j2 = 0; j2 < k; j2++) {
+                    if (j2 != j) {
+                        min = Math.min(min, squaredDistance(centroids[j], centroids[j2], min));
+                    }
+                }
+                halfCentroidDistances[j] = Math.sqrt(min) / 2;
+            }
+
+            runChunks(new ChunkProcessor() {
+                @Override
+                public void process(int chunk, int start, int end) {
+                    double[] sums = chunkSums[chunk];
+                    int[] counts = chunkCounts[chunk];
+                    Arrays.fill(sums, 0);
+                    Arrays.fill(counts, 0);
+                    int changes = 0;
+                    for (int i = start; i < end; i++) {
+                        int current = assignment[i];
+                        upperBounds[i] += movements[current];
+                        lowerBounds[i] -= current == maxIndex ? secondMovement : maxMovement;
+                        double[] vector = getVector(i);
+                        double bound = Math.max(halfCentroidDistances[current], lowerBounds[i]);
+                        if (upperBounds[i] > bound) {
+                            // tighten the upper bound, and check again
+                            upperBounds[i] = Math.sqrt(squaredDistance(vector, centroids[current],
+                                    Double.POSITIVE_INFINITY));
+                            if (upperBounds[i] > bound) {
+                                assignClosestTwo(i, vector, assignment, upperBounds, lowerBounds);
+                                if (assignment[i] != current) {
+                                    changes++;
+                                }
+                            }
+                        }
+                        addToSums(vector, assignment[i], sums, counts);
+                    }
+                    chunkChanges[chunk] = changes;
+                }
+            });
+            int changes = 0;
+            for (int chunkChange : chunkChanges) {
+                changes += chunkChange;
+            }
+            if (changes == 0) {
+                break;
+            }
+        }
+        // the centroids are the means of the final assignment
+        updateCentroids(chunkSums, chunkCounts, movements);
+        assignments = assignment;
+        return iteration;
+    }
+
+    /**
+     * Assigns vector i to its closest centroid, and sets its upper bound to the distance to that centroid, and its
+     * lower bound to the distance of the second-closest centroid.
+     */
+    private void assignClosestTwo(int i, double[] vector, int[] assignment, double[] upperBounds,
+            double[] lowerBounds) {
+        double best = Double.POSITIVE_INFINITY;
+        double second = Double.POSITIVE_INFINITY;
+        int bestIndex = 0;
+        for (int j = 0; j < k; j++) {
+            double distance = squaredDistance(vector, centroids[j], second);
+            if (distance < best) {
+                second = best;
+                best = distance;
+                bestIndex = j;
+            } else if (distance < second) {
+                second = distance;
+            }
+        }
+        assignment[i] = bestIndex;
+        upperBounds[i] = Math.sqrt(best);
+        lowerBounds[i] = Math.sqrt(second);
+    }
+
+    private void addToSums(double[] vector, int cluster, double[] sums, int[] counts) {
+        int offset = cluster * numberOfAttributes;
+        for (int ve = 0; ve < numberOfAttributes; ve++) {
+            sums[offset + ve] += vector[ve];
+        }
+        counts[cluster]++;
+    }
+
+    /**
+     * Sets the centroids to the means of the accumulated sums of the chunks, and stores how far each centroid moved.
+     * Centroids of empty clusters stay where they are.
+     */
+    private void updateCentroids(double[][] chunkSums, int[][] chunkCounts, double[] movements) {
+        for (int j = 0; j < k; j++) {
+            int count = 0;
+            for (int[] counts : chunkCounts) {
+                count += counts[j];
+            }
+            if (count == 0) {
+                movements[j] = 0;
+                continue;
+            }
+            double[] mean = new double[numberOfAttributes];
+            int offset = j * numberOfAttributes;
+            for (double[] sums : chunkSums) {
+                for (int ve = 0; ve < numberOfAttributes; ve++) {
+                    mean[ve] += sums[offset + ve];
+                }
+            }
+            for (int ve = 0; ve < numberOfAttributes; ve++) {
+                mean[ve] /= count;
+            }
+            movements[j] = Math.sqrt(squaredDistance(mean, centroids[j], Double.POSITIVE_INFINITY));
+            centroids[j] = mean;
+        }
+    }
+
+    /**
+     * Trains with mini-batch k-means: in each iteration, a random sample of vectors is assigned to the closest
+     * centroids, which are then moved towards the vectors with a learning rate decreasing with the number of vectors
+     * the centroid got so far. Finally, all vectors are assigned to their closest centroid. Uses k-means++ seeding if
+     * no centroids have been set before.
+     */
+    public void trainMiniBatch(int batchSize, int iterations) {
+        if (centroids == null) {
+            seedKMeansPlusPlus();
+        }
+        batchSize = Math.min(batchSize, numberOfInstances);
+        final int[] batch = new int[batchSize];
+        final int[] batchAssignment = new int[batchSize];
+        final int[] counts = new int[k];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int b = 0; b < batchSize; b++) {
+                batch[b] = random.nextInt(numberOfInstances);
+            }
+            runChunks(batchSize, new ChunkProcessor() {
+                @Override
+                public void process(int chunk, int start, int end) {
+                    for (int b = start; b < end; b++) {
+                        batchAssignment[b] = getClosest(getVector(batch[b]), centroids);
+                    }
+                }
+            });
+            for (int b = 0; b < batchSize; b++) {
+                int j = batchAssignment[b];
+                counts[j]++;
+                double learningRate = 1.0 / counts[j];
+                double[] centroid = centroids[j];
+                double[] vector = getVector(batch[b]);
+                for (int ve = 0; ve < numberOfAttributes; ve++) {
+                    centroid[ve] += learningRate * (vector[ve] - centroid[ve]);
+                }
+            }
+        }
+        assign();
+    }
+
+    /** Assigns all vectors to their closest centroid. */
+    public int[] assign() {
+        final int[] assignment = new int[numberOfInstances];
+        runChunks(new ChunkProcessor() {
+            @Override
+            public void process(int chunk, int start, int end) {
+                for (int i = start; i < end; i++) {
+                    assignment[i] = getClosest(getVector(i), centroids);
+                }
+            }
+        });
+        assignments = assignment;
+        return assignment;
+    }
+
+    /** Returns the sum of the squared distances of the vectors to their assigned centroid. */
+    public double getSSE() {
+        final double[] chunkTotals = new double[getChunkCount()];
+        runChunks(new ChunkProcessor() {
+            @Override
+            public void process(int chunk, int start, int end) {
+                double total = 0;
+                for (int i = start; i < end; i++) {
+                    total += squaredDistance(getVector(i), centroids[assignments[i]], Double.POSITIVE_INFINITY);
+                }
+                chunkTotals[chunk] = total;
+            }
+        });
+        return sum(chunkTotals);
+    }
+
+    /** Returns the index of the closest centroid; in case of ties, the first one. */
+    private static int getClosest(double[] vector, double[][] centroids) {
+        double best = Double.POSITIVE_INFINITY;
+        int bestIndex = 0;
+        for (int j = 0; j < centroids.length; j++) {
+            double distance = squaredDistance(vector, centroids[j], best);
+            if (distance < best) {
+                best = distance;
+                bestIndex = j;
+            }
+        }
+        return bestIndex;
+    }
+
+    private static double squaredDistance(double[] vector, double[] centroid, double bound) {
+        return L2Metric.squaredDistance(vector, 0, centroid, bound);
+    }
+
+    private static double sum(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /** Processes one chunk of a pass over the vectors. */
+    private interface ChunkProcessor {
+        void process(int chunk, int start, int end);
+    }
+
+    /** Whether the passes over the data are done in parallel, which is only done for the vectors given as matrix. */
+    private boolean isParallel() {
+        return executor != null && data != null;
+    }
+
+    private int getChunkCount() {
+        return isParallel() ? numberOfCPUs : 1;
+    }
+
+    private void runChunks(ChunkProcessor processor) {
+        runChunks(numberOfInstances, processor);
+    }
+
+    /** Splits the range [0, count) into {@link #getChunkCount()} chunks, and processes them in parallel. */
+    private void runChunks(final int count, final ChunkProcessor processor) {
+        final int chunks = getChunkCount();
+        if (!isParallel()) {
+            processor.process(0, 0, count);
+            return;
+        }
+        ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(chunks);
+        for (int t = 0; t < chunks; t++) {
+            final int chunk = t;
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    processor.process(chunk, (int) ((long) count * chunk / chunks),
+                            (int) ((long) count * (chunk + 1) / chunks));
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Object> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+}
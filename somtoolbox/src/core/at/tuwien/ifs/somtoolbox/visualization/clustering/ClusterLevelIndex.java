@@ -0,0 +1,364 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.visualization.clustering;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import at.tuwien.ifs.somtoolbox.apps.viewer.GeneralUnitPNode;
+
+/**
+ * An index over the levels of a {@link ClusteringTree}, answering which clusters are shown at a certain level, and
+ * which cluster a unit belongs to, without walking the tree.
+ * <p>
+ * The clustering into <code>l</code> clusters consists of the nodes with a level &gt;= <code>l</code>, whose ancestors
+ * all have a level &lt; <code>l</code>. The index keeps this cut for the current level as linked list of the nodes, in
+ * the same order as a depth-first traversal of the tree would find them. Moving to the next level replaces the nodes of
+ * that level by their children, moving to the previous level replaces the children by their parent; consecutive levels,
+ * as when dragging the slider in the clustering control, thus cost O(1) each. Each unit points to a slot holding its
+ * current cluster; when a cluster is split, only the units of the smaller child get a new slot, and vice versa when
+ * merging, so that finding the cluster of a unit is O(1).
+ * </p>
+ * <p>
+ * The index needs the levels to increase from the top node towards the leaves, as is the case for all hierarchical
+ * clusterings; {@link #isIndexable(ClusterNode)} checks this.
+ * </p>
+ * 
+ * @author agent
+ * @version $Id$
+ */
+class ClusterLevelIndex {
+
+    /** All nodes of the tree, in depth-first (pre-)order. */
+    private final ClusterNode[] nodes;
+
+    private final int[] levels;
+
+    private final int[] children1;
+
+    private final int[] children2;
+
+    /** The units of all leaves, in depth-first order; the units of each node are thus a consecutive range. */
+    private final GeneralUnitPNode[] units;
+
+    private final int[] unitStart;
+
+    private final int[] unitEnd;
+
+    private final IdentityHashMap<GeneralUnitPNode, Integer> unitPositions;
+
+    /** The nodes of each level (offset by {@link #minLevel}), in depth-first order, stored consecutively. */
+    private final int[] nodesByLevel;
+
+    private final int[] levelOffsets;
+
+    private final int minLevel;
+
+    private final int maxLevel;
+
+    /** The linked list of the nodes in the current cut. */
+    private final int[] next;
+
+    private final int[] previous;
+
+    private int first;
+
+    private int clusterCount;
+
+    /** The level of the current cut. */
+    private int currentLevel;
+
+    /** The slot of the cluster each unit is in. */
+    private final int[] unitSlots;
+
+    /** The node of each slot. */
+    private final int[] slotNodes;
+
+    /** The slot of each node in the current cut. */
+    private final int[] nodeSlots;
+
+    private final int[] freeSlots;
+
+    private int freeSlotCount;
+
+    ClusterLevelIndex(ClusterNode topNode) {
+        // number the nodes in depth-first order
+        ArrayList<ClusterNode> nodeList = new ArrayList<ClusterNode>();
+        ArrayDeque<ClusterNode> stack = new ArrayDeque<ClusterNode>();
+        stack.push(topNode);
+        while (!stack.isEmpty()) {
+            ClusterNode node = stack.pop();
+            nodeList.add(node);
+            if (node.getChild1() != null) {
+                stack.push(node.getChild2());
+                stack.push(node.getChild1());
+            }
+        }
+        nodes = nodeList.toArray(new ClusterNode[nodeList.size()]);
+        int n = nodes.length;
+        IdentityHashMap<ClusterNode, Integer> nodeIndices = new IdentityHashMap<ClusterNode, Integer>(n);
+        for (int i = 0; i < n; i++) {
+            nodeIndices.put(nodes[i], i);
+        }
+
+        levels = new int[n];
+        children1 = new int[n];
+        children2 = new int[n];
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        ArrayList<GeneralUnitPNode> unitList = new ArrayList<GeneralUnitPNode>();
+        for (int i = 0; i < n; i++) {
+            ClusterNode node = nodes[i];
+            levels[i] = node.getLevel();
+            min = Math.min(min, levels[i]);
+            max = Math.max(max, levels[i]);
+            if (node.getChild1() != null) {
+                children1[i] = nodeIndices.get(node.getChild1());
+                children2[i] = nodeIndices.get(node.getChild2());
+            } else {
+                children1[i] = -1;
+                children2[i] = -1;
+                unitList.addAll(Arrays.asList(node.getUnitNodes()));
+            }
+        }
+        minLevel = min;
+        maxLevel = max;
+
+        // the unit ranges, from the leaves upwards; children have higher indices than their parents
+        units = unitList.toArray(new GeneralUnitPNode[unitList.size()]);
+        unitPositions = new IdentityHashMap<GeneralUnitPNode, Integer>(units.length);
+        for (int u = 0; u < units.length; u++) {
+            unitPositions.put(units[u], u);
+        }
+        unitStart = new int[n];
+        unitEnd = new int[n];
+        int position = 0;
+        for (int i = 0; i < n; i++) {
+            if (children1[i] == -1) {
+                unitStart[i] = position;
+                position += nodes[i].getUnitNodes().length;
+                unitEnd[i] = position;
+            }
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            if (children1[i] != -1) {
+                unitStart[i] = unitStart[children1[i]];
+                unitEnd[i] = unitEnd[children2[i]];
+            }
+        }
+
+        // group the nodes by level
+        levelOffsets = new int[max - min + 2];
+        for (int i = 0; i < n; i++) {
+            levelOffsets[levels[i] - min + 1]++;
+        }
+        for (int l = 1; l < levelOffsets.length; l++) {
+            levelOffsets[l] += levelOffsets[l - 1];
+        }
+        nodesByLevel = new int[n];
+        int[] fill = levelOffsets.clone();
+        for (int i = 0; i < n; i++) {
+            nodesByLevel[fill[levels[i] - min]++] = i;
+        }
+
+        // start with the top node as only cluster
+        next = new int[n];
+        previous = new int[n];
+        nodeSlots = new int[n];
+        slotNodes = new int[n];
+        freeSlots = new int[n];
+        for (int slot = n - 1; slot > 0; slot--) {
+            freeSlots[freeSlotCount++] = slot;
+        }
+        unitSlots = new int[units.length];
+        first = 0;
+        next[0] = -1;
+        previous[0] = -1;
+        nodeSlots[0] = 0;
+        slotNodes[0] = 0;
+        clusterCount = 1;
+        currentLevel = levels[0];
+    }
+
+    /**
+     * Checks whether the tree below the given node can be indexed, i.e. whether each node has either two or no
+     * children, and the levels increase from each node to its children.
+     */
+    static boolean isIndexable(ClusterNode topNode) {
+        ArrayDeque<ClusterNode> stack = new ArrayDeque<ClusterNode>();
+        stack.push(topNode);
+        while (!stack.isEmpty()) {
+            ClusterNode node = stack.pop();
+            ClusterNode child1 = node.getChild1();
+            ClusterNode child2 = node.getChild2();
+            if (child1 == null && child2 == null) {
+                continue;
+            }
+            if (child1 == null || child2 == null || child1.getLevel() <= node.getLevel()
+                    || child2.getLevel() <= node.getLevel()) {
+                return false;
+            }
+            stack.push(child2);
+            stack.push(child1);
+        }
+        return true;
+    }
+
+    /** Moves the current cut to the given level, level by level. */
+    private void moveTo(int level) {
+        // below the top node, and below the deepest leaf, nothing changes anymore
+        level = Math.max(levels[0], Math.min(level, maxLevel + 1));
+        while (currentLevel < level) {
+            for (int i = levelOffsets[currentLevel - minLevel]; i < levelOffsets[currentLevel - minLevel + 1]; i++) {
+                split(nodesByLevel[i]);
+            }
+            currentLevel++;
+        }
+        while (currentLevel > level) {
+            currentLevel--;
+            for (int i = levelOffsets[currentLevel - minLevel]; i < levelOffsets[currentLevel - minLevel + 1]; i++) {
+                merge(nodesByLevel[i]);
+            }
+        }
+    }
+
+    /** Replaces the node by its children in the current cut. */
+    private void split(int node) {
+        int child1 = children1[node];
+        int child2 = children2[node];
+        if (child1 == -1) { // leaves stay
+            return;
+        }
+        int nextNode = next[node];
+        replace(node, child1, node);
+        link(child1, child2);
+        link(child2, nextNode);
+        clusterCount++;
+
+        // the bigger child keeps the slot of the node
+        int slot = nodeSlots[node];
+        int newSlot = freeSlots[--freeSlotCount];
+        int bigger = getUnitCount(child1) >= getUnitCount(child2) ? child1 : child2;
+        int smaller = bigger == child1 ? child2 : child1;
+        assignSlot(bigger, slot);
+        assignSlot(smaller, newSlot);
+        Arrays.fill(unitSlots, unitStart[smaller], unitEnd[smaller], newSlot);
+    }
+
+    /** Replaces the children of the node by the node in the current cut. */
+    private void merge(int node) {
+        int child1 = children1[node];
+        int child2 = children2[node];
+        if (child1 == -1) {
+            return;
+        }
+        replace(child1, node, child2);
+        clusterCount--;
+
+        // the node takes the slot of its bigger child
+        int bigger = getUnitCount(child1) >= getUnitCount(child2) ? child1 : child2;
+        int smaller = bigger == child1 ? child2 : child1;
+        int slot = nodeSlots[bigger];
+        freeSlots[freeSlotCount++] = nodeSlots[smaller];
+        assignSlot(node, slot);
+        Arrays.fill(unitSlots, unitStart[smaller], unitEnd[smaller], slot);
+    }
+
+    /** Replaces the nodes from <code>start</code> to <code>end</code> in the current cut by the given node. */
+    private void replace(int start, int node, int end) {
+        int previousNode = previous[start];
+        int nextNode = next[end];
+        if (previousNode == -1) {
+            first = node;
+            previous[node] = -1;
+        } else {
+            link(previousNode, node);
+        }
+        link(node, nextNode);
+    }
+
+    private void link(int node, int nextNode) {
+        next[node] = nextNode;
+        if (nextNode != -1) {
+            previous[nextNode] = node;
+        }
+    }
+
+    private void assignSlot(int node, int slot) {
+        nodeSlots[node] = slot;
+        slotNodes[slot] = node;
+    }
+
+    private int getUnitCount(int node) {
+        return unitEnd[node] - unitStart[node];
+    }
+
+    /** Returns the clusters at the given level, in depth-first order. */
+    synchronized ArrayList<ClusterNode> getNodesAtLevel(int level) {
+        moveTo(level);
+        ArrayList<ClusterNode> clusters = new ArrayList<ClusterNode>(clusterCount);
+        for (int node = first; node != -1; node = next[node]) {
+            clusters.add(nodes[node]);
+        }
+        return clusters;
+    }
+
+    /** Returns the cluster of the given unit at the given level, or <code>null</code> if the unit is not clustered. */
+    synchronized ClusterNode findClusterOf(GeneralUnitPNode unit, int level) {
+        Integer position = unitPositions.get(unit);
+        if (position == null) {
+            return null;
+        }
+        moveTo(level);
+        return nodes[slotNodes[unitSlots[position]]];
+    }
+
+    /** Returns the first node in depth-first order with the given level, or <code>null</code> if there is none. */
+    ClusterNode findNode(int level) {
+        if (level < minLevel || level > maxLevel) {
+            return null;
+        }
+        if (levelOffsets[level - minLevel] == levelOffsets[level - minLevel + 1]) {
+            return null;
+        }
+        return nodes[nodesByLevel[levelOffsets[level - minLevel]]];
+    }
+
+    /**
+     * Returns the index of the cluster each unit is in at the given level, as <code>[x][y]</code> array; the clusters
+     * are numbered in depth-first order, positions without a unit are -1.
+     */
+    synchronized int[][] getClusterAssignment(int level, int xSize, int ySize) {
+        int[][] assignment = new int[xSize][ySize];
+        for (int x = 0; x < xSize; x++) {
+            Arrays.fill(assignment[x], -1);
+        }
+        moveTo(level);
+        int clusterNo = 0;
+        for (int node = first; node != -1; node = next[node]) {
+            for (int u = unitStart[node]; u < unitEnd[node]; u++) {
+                assignment[units[u].getUnit().getXPos()][units[u].getUnit().getYPos()] = clusterNo;
+            }
+            clusterNo++;
+        }
+        return assignment;
+    }
+
+}
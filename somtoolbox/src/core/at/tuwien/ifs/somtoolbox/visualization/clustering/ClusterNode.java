@@ -26,6 +26,7 @@ import edu.umd.cs.piccolo.nodes.PPath;
 import org.apache.commons.lang.ArrayUtils;
 
 import java.awt.*;
+import java.awt.geom.GeneralPath;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.Serializable;
@@ -48,11 +49,15 @@ public class ClusterNode implements Serializable {
     // increment serialVersionUID if class changes so it is incompatible with previous versions (-> [de]serialization )
     private static final long serialVersionUID = 2L;
 
+    /** the units in this cluster; for merged clusters only collected from the children when first needed */
     private GeneralUnitPNode[] unitNodes;
 
+    private int size;
+
     private BorderPNode border = null;
 
-    private ColoredClusterPNode colorNode = new ColoredClusterPNode(this);
+    /** created when the cluster is first painted */
+    private ColoredClusterPNode colorNode = null;
 
     private PNode labelNode = null;
 
@@ -91,29 +96,46 @@ public class ClusterNode implements Serializable {
     private boolean isSelected;
 
     /**
-     * Returns the mean vector of the cluster's weight vectors. Calculates it if it is not set yet.
+     * Returns the mean vector of the cluster's weight vectors. Calculates it if it is not set yet; if the means of both
+     * children are already known, as during the clustering, the mean is computed from them in O(dim), weighted by the
+     * sizes of the children.
      * 
      * @return the mean vector of the cluster's weight vectors
      */
     public double[] getMeanVector() {
-
-        int weightVectorLength = getUnitNodes()[0].getUnit().getWeightVector().length;
         if (mean == null) {
-            mean = new double[weightVectorLength];
-
-            for (int j = 0; j < weightVectorLength; j++) {
-                double sum = 0;
+            if (child1 != null && child2 != null && child1.mean != null && child2.mean != null) {
+                int size1 = child1.getSize();
+                int size2 = child2.getSize();
+                int size = size1 + size2;
+                mean = new double[child1.mean.length];
+                for (int j = 0; j < mean.length; j++) {
+                    mean[j] = (child1.mean[j] * size1 + child2.mean[j] * size2) / size;
+                }
+            } else {
+                int weightVectorLength = getUnitNodes()[0].getUnit().getWeightVector().length;
+                mean = new double[weightVectorLength];
                 for (GeneralUnitPNode unitNode : getUnitNodes()) {
-
-                    sum = sum + unitNode.getUnit().getWeightVector()[j];
+                    double[] weightVector = unitNode.getUnit().getWeightVector();
+                    for (int j = 0; j < weightVectorLength; j++) {
+                        mean[j] += weightVector[j];
+                    }
+                }
+                for (int j = 0; j < weightVectorLength; j++) {
+                    mean[j] /= getUnitNodes().length;
                 }
-
-                mean[j] = sum / getUnitNodes().length;
             }
         }
         return mean;
     }
 
+    /**
+     * Returns the number of units in this cluster.
+     */
+    public int getSize() {
+        return size;
+    }
+
     /**
      * @return the Centroid of the cluster on the map
      */
@@ -153,17 +175,10 @@ public class ClusterNode implements Serializable {
      */
     public ClusterNode(ClusterNode n1, ClusterNode n2, int level) {
         this.level = level;
-        this.setUnitNodes(new GeneralUnitPNode[n1.getNodes().length + n2.getNodes().length]);
-
-        for (int i = 0; i < n1.getNodes().length; i++) {
-            this.getUnitNodes()[i] = n1.getNodes()[i];
-        }
-        for (int i = 0; i < n2.getNodes().length; i++) {
-            this.getUnitNodes()[i + n1.getNodes().length] = n2.getNodes()[i];
-        }
+        this.size = n1.getSize() + n2.getSize();
         this.child1 = n1;
         this.child2 = n2;
-        this.border = makeBorder();
+        // the unit nodes, the border and the colour node are only created when this cluster is displayed
 
         // Adding border as child of the clusternode... makes problems with colored clusters
         // addChild(border);
@@ -185,7 +200,6 @@ public class ClusterNode implements Serializable {
         this.setWidth(Math.max(n1.getX() + n1.getWidth(), n2.getX() + n2.getWidth()) - Math.min(n1.getX(), n2.getX()));
         this.setHeight((Math.max(n1.getY() + n1.getHeight(), n2.getY() + n2.getHeight()) - Math.min(n1.getY(),
                 n2.getY())));
-        this.colorNode.setBounds(this.getX(), this.getY(), this.getWidth(), this.getHeight());
 
         this.numberOfInputs = n1.getNumberOfInputs() + n2.getNumberOfInputs();
     }
@@ -213,9 +227,7 @@ public class ClusterNode implements Serializable {
      * @param level a number >= the number of total units.
      */
     public ClusterNode(GeneralUnitPNode leaf, int level) {
-        setUnitNodes(new GeneralUnitPNode[1]);
-        getUnitNodes()[0] = leaf;
-        border = makeBorder();
+        setUnitNodes(new GeneralUnitPNode[] { leaf });
 
         this.level = level;
 
@@ -223,7 +235,6 @@ public class ClusterNode implements Serializable {
         this.setY(leaf.getY());
         this.setHeight(leaf.getHeight());
         this.setWidth(leaf.getWidth());
-        this.colorNode.setBounds(this.getX(), this.getY(), this.getWidth(), this.getHeight());
 
         writeLabelInfos(leaf);
     }
@@ -406,12 +417,28 @@ public class ClusterNode implements Serializable {
     }
 
     /**
-     * Returns a border for this cluster
+     * Returns a border for this cluster, with all border lines in one path, so that the number of nodes does not depend
+     * on the size of the cluster.
      * 
-     * @return PNode containing the borders as children
+     * @return PNode containing the border as child
      */
     private BorderPNode makeBorder() {
-        ArrayList<Rectangle2D> lines = new ArrayList<Rectangle2D>();
+        GeneralPath path = new GeneralPath();
+        appendBorderLines(path);
+        return createBorderNode(path, getDisplayedBorderColor());
+    }
+
+    /** Returns the colour the border of this cluster is painted in, depending on whether it is selected. */
+    Color getDisplayedBorderColor() {
+        return isSelected ? selectedBorderColor : borderColor;
+    }
+
+    /**
+     * Adds the border lines of this cluster to the given path, i.e. the sides of its units that are not shared with
+     * another unit of the cluster.
+     */
+    void appendBorderLines(GeneralPath path) {
+        LinkedHashSet<Rectangle2D> lines = new LinkedHashSet<Rectangle2D>();
         for (GeneralUnitPNode u : getUnitNodes()) {
             double left = u.getX();
             double right = u.getX() + u.getWidth();
@@ -422,14 +449,19 @@ public class ClusterNode implements Serializable {
             xorBorderLine(lines, left, top, left, bottom); // left line
             xorBorderLine(lines, right, top, right, bottom); // right line
         }
-
-        BorderPNode border = new BorderPNode();
         for (Rectangle2D rect : lines) {
-            PPath line = PPath.createLine((float) rect.getMinX(), (float) rect.getMinY(), (float) rect.getMaxX(),
-                    (float) rect.getMaxY());
-            line.setStrokePaint(isSelected ? selectedBorderColor : borderColor);
-            border.addChild(line);
+            path.moveTo((float) rect.getMinX(), (float) rect.getMinY());
+            path.lineTo((float) rect.getMaxX(), (float) rect.getMaxY());
         }
+    }
+
+    /** Creates a border node painting the lines of the given path in the given colour. */
+    static BorderPNode createBorderNode(GeneralPath path, Color borderColor) {
+        PPath line = new PPath(path);
+        line.setPaint(null);
+        line.setStrokePaint(borderColor);
+        BorderPNode border = new BorderPNode();
+        border.addChild(line);
         return border;
     }
 
@@ -450,11 +482,9 @@ public class ClusterNode implements Serializable {
     }
 
     // add the line to "lines" if it does not exist yet, otherwise remove it (i.e. do the XOR)
-    private static void xorBorderLine(ArrayList<Rectangle2D> lines, double x1, double y1, double x2, double y2) {
+    private static void xorBorderLine(Set<Rectangle2D> lines, double x1, double y1, double x2, double y2) {
         Rectangle2D rect = new Rectangle2D.Double(x1, y1, x2 - x1, y2 - y1);
-        if (lines.contains(rect)) {
-            lines.remove(rect);
-        } else {
+        if (!lines.remove(rect)) {
             lines.add(rect);
         }
     }
@@ -465,10 +495,14 @@ public class ClusterNode implements Serializable {
      * @param newPaint The new color of the cluster
      */
     public void setPaint(Paint newPaint) {
-        colorNode.setPaint(newPaint);
+        getColoredCluster().setPaint(newPaint);
     }
 
     public ColoredClusterPNode getColoredCluster() {
+        if (colorNode == null) {
+            colorNode = new ColoredClusterPNode(this);
+            colorNode.setBounds(this.getX(), this.getY(), this.getWidth(), this.getHeight());
+        }
         return this.colorNode;
     }
 
@@ -544,12 +578,34 @@ public class ClusterNode implements Serializable {
      */
     public void setUnitNodes(GeneralUnitPNode[] unitNodes) {
         this.unitNodes = unitNodes;
+        this.size = unitNodes.length;
     }
 
     /**
+     * Returns the unitNodes, i.e. the unit nodes of the first child followed by those of the second child. For merged
+     * clusters, they are collected from the leafs of the subtree on the first call, without recursion, as the tree can
+     * be very deep.
+     * 
      * @return Returns the unitNodes.
      */
     public GeneralUnitPNode[] getUnitNodes() {
+        if (unitNodes == null) {
+            GeneralUnitPNode[] nodes = new GeneralUnitPNode[size];
+            int index = 0;
+            ArrayDeque<ClusterNode> stack = new ArrayDeque<ClusterNode>();
+            stack.push(this);
+            while (!stack.isEmpty()) {
+                ClusterNode node = stack.pop();
+                if (node.unitNodes != null) {
+                    System.arraycopy(node.unitNodes, 0, nodes, index, node.unitNodes.length);
+                    index += node.unitNodes.length;
+                } else {
+                    stack.push(node.child2);
+                    stack.push(node.child1);
+                }
+            }
+            unitNodes = nodes;
+        }
         return unitNodes;
     }
 
@@ -27,6 +27,7 @@ import edu.umd.cs.piccolo.PNode;
 import edu.umd.cs.piccolo.nodes.PText;
 
 import java.awt.*;
+import java.awt.geom.GeneralPath;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -62,6 +63,12 @@ public class ClusteringTree extends PNode implements Serializable {
     private double minMergeCost = Double.NaN;
     private double maxMergeCost = Double.NaN;
 
+    /** the index of the clusterings at each level; created when first needed, and not serialised */
+    private transient ClusterLevelIndex levelIndex;
+
+    /** whether the tree can't be indexed, e.g. the trees from {@link KMeansTreeBuilder} */
+    private transient boolean notIndexable;
+
     /**
      * Initializes the tree with the given top Node.
      * 
@@ -108,9 +115,28 @@ public class ClusteringTree extends PNode implements Serializable {
     }
 
     public ClusterNode findNode(int lvl) {
+        ClusterLevelIndex index = getLevelIndex();
+        if (index != null) {
+            return index.findNode(lvl);
+        }
         return findNode(topNode, lvl);
     }
 
+    /**
+     * Returns the {@link ClusterLevelIndex} of this tree, or <code>null</code> if the levels of the tree don't allow
+     * indexing; then, the tree is searched recursively.
+     */
+    private ClusterLevelIndex getLevelIndex() {
+        if (levelIndex == null && !notIndexable) {
+            if (ClusterLevelIndex.isIndexable(topNode)) {
+                levelIndex = new ClusterLevelIndex(topNode);
+            } else {
+                notIndexable = true;
+            }
+        }
+        return levelIndex;
+    }
+
     /**
      * @return null if node could not be found
      */
@@ -168,12 +194,11 @@ public class ClusteringTree extends PNode implements Serializable {
 
         clearClusteringElements();
 
-        ArrayList<ClusterNode> clusterStorage = new ArrayList<ClusterNode>();
         ClusterElementsStorage store = new ClusterElementsStorage();
         ArrayList<PNode> allLabels = new ArrayList<PNode>();
 
         // to draw all clusters until level l we must find all children of clusters above "level"
-        getAllChildrenUntil(l - 1, topNode, clusterStorage);
+        ArrayList<ClusterNode> clusterStorage = getNodesAtLevel(l);
 
         if (state.clusterWithLabels > 0) {
             // loop through all ClusterNodes
@@ -242,14 +267,26 @@ public class ClusteringTree extends PNode implements Serializable {
             allLabels = null;
         }
 
-        // move all borders and colors to Arraylists
+        // move all borders and colors to Arraylists. The borders of all clusters of the same colour are painted as one
+        // path, as they all get the same stroke, so the number of nodes does not grow with the number of clusters
         store.clusterBorders = new ArrayList<PNode>();
         ClusterElementsStorage colorStore = new ClusterElementsStorage();
         colorStore.clusterColors = new ArrayList<ColoredClusterPNode>();
+        LinkedHashMap<Color, GeneralPath> borderPaths = new LinkedHashMap<Color, GeneralPath>();
         for (ClusterNode element : clusterStorage) {
-            store.clusterBorders.add(element.getBorder(state.clusterBorderColour));
+            element.setBorderColor(state.clusterBorderColour);
+            Color borderColour = element.getDisplayedBorderColor();
+            GeneralPath borderPath = borderPaths.get(borderColour);
+            if (borderPath == null) {
+                borderPath = new GeneralPath();
+                borderPaths.put(borderColour, borderPath);
+            }
+            element.appendBorderLines(borderPath);
             colorStore.clusterColors.add(element.getColoredCluster());
         }
+        for (Map.Entry<Color, GeneralPath> entry : borderPaths.entrySet()) {
+            store.clusterBorders.add(ClusterNode.createBorderNode(entry.getValue(), entry.getKey()));
+        }
 
         store.clusterLabels = allLabels;
 
@@ -303,6 +340,32 @@ public class ClusteringTree extends PNode implements Serializable {
         return minMergeCost;
     }
 
+    /**
+     * Returns the depth of the tree, i.e. the largest distance of any leaf to the top node, as found in
+     * {@link #getDendrogramDistanceInfo()}. The tree is traversed without recursion, as it can be very deep.
+     */
+    public int getDepth() {
+        int depth = 0;
+        ArrayDeque<ClusterNode> nodes = new ArrayDeque<ClusterNode>();
+        ArrayDeque<Integer> distances = new ArrayDeque<Integer>();
+        nodes.push(topNode);
+        distances.push(0);
+        while (!nodes.isEmpty()) {
+            ClusterNode node = nodes.pop();
+            int distance = distances.pop();
+            depth = Math.max(depth, distance);
+            if (node.getChild1() != null) {
+                nodes.push(node.getChild1());
+                distances.push(distance + 1);
+            }
+            if (node.getChild2() != null) {
+                nodes.push(node.getChild2());
+                distances.push(distance + 1);
+            }
+        }
+        return depth;
+    }
+
     public HashMap<PNode, Integer> getDendrogramDistanceInfo() {
         // Foreach of the notes calculate distance to top note
         distancesToTopNode = new HashMap<PNode, Integer>();
@@ -402,7 +465,10 @@ public class ClusteringTree extends PNode implements Serializable {
 
     /** Find the {@link ClusterNode} that contains the given {@link GeneralUnitPNode} at the given level. */
     public ClusterNode findClusterOf(GeneralUnitPNode unitPNode, int level) {
-        // printTree(topNode, 0);
+        ClusterLevelIndex index = getLevelIndex();
+        if (index != null) {
+            return index.findClusterOf(unitPNode, level);
+        }
         ArrayList<ClusterNode> store = new ArrayList<ClusterNode>();
         getAllChildrenUntil(level - 1, topNode, store);
         for (ClusterNode clusterNode : store) {
@@ -519,6 +585,10 @@ public class ClusteringTree extends PNode implements Serializable {
 
     // Doris
     public int[][] getClusterAssignment(int level, int xSize, int ySize) {
+        ClusterLevelIndex index = getLevelIndex();
+        if (index != null) {
+            return index.getClusterAssignment(level, xSize, ySize);
+        }
 
         int[][] assignment = new int[xSize][ySize];
         for (int a = 0; a < xSize; a++) {
@@ -543,6 +613,10 @@ public class ClusteringTree extends PNode implements Serializable {
     }
 
     public ArrayList<ClusterNode> getNodesAtLevel(int level) {
+        ClusterLevelIndex index = getLevelIndex();
+        if (index != null) {
+            return index.getNodesAtLevel(level);
+        }
         ArrayList<ClusterNode> list = new ArrayList<ClusterNode>();
         getAllChildrenUntil(level - 1, topNode, list);
         return list;
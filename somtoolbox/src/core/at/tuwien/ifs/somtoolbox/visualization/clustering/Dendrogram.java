@@ -0,0 +1,191 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.visualization.clustering;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import at.tuwien.ifs.somtoolbox.util.ArrayUtils;
+import at.tuwien.ifs.somtoolbox.util.UnionFind;
+
+/**
+ * The result of a hierarchical clustering as a compact merge table, independent of any visualisation. The leafs are
+ * identified by the ids <code>0 ... n - 1</code>, the cluster created by merge <code>m</code> by the id
+ * <code>n + m</code>. The merges are ordered from the first (lowest) to the last merge, i.e. merge <code>m</code>
+ * creates the cluster at level <code>n - 1 - m</code> of the {@link ClusteringTree}, and the last merge is the top of
+ * the tree.<br/>
+ * A dendrogram is created by a {@link DendrogramBuilder}; {@link TreeBuilder} turns it into {@link ClusterNode}s for
+ * the viewer.
+ * 
+ * @author agent
+ * @version $Id$
+ */
+public class Dendrogram {
+
+    private final int leafCount;
+
+    private final int[] children1;
+
+    private final int[] children2;
+
+    private final double[] costs;
+
+    private final int[] sizes;
+
+    /**
+     * Creates a dendrogram from the given merge table.
+     * 
+     * @param leafCount the number of leafs.
+     * @param children1 the ids of the first child of each merge.
+     * @param children2 the ids of the second child of each merge.
+     * @param costs the cost of each merge.
+     * @param sizes the number of leafs in the cluster created by each merge.
+     */
+    public Dendrogram(int leafCount, int[] children1, int[] children2, double[] costs, int[] sizes) {
+        this.leafCount = leafCount;
+        this.children1 = children1;
+        this.children2 = children2;
+        this.costs = costs;
+        this.sizes = sizes;
+    }
+
+    /**
+     * Creates a dendrogram from merges that are each identified by two leafs, one from each of the two merged
+     * clusters, as found e.g. by the nearest-neighbour chain algorithm or from a minimum spanning tree. The merges are
+     * ordered by ascending cost; merges of equal cost keep the order they are given in, which thus has to list the
+     * merges creating a cluster before the merge using it.
+     * 
+     * @param leafCount the number of leafs.
+     * @param leafs1 a leaf of the first cluster of each merge.
+     * @param leafs2 a leaf of the second cluster of each merge.
+     * @param costs the cost of each merge.
+     */
+    public static Dendrogram fromLeafMerges(int leafCount, int[] leafs1, int[] leafs2, double[] costs) {
+        return fromLeafMerges(leafCount, leafs1, leafs2, costs, true);
+    }
+
+    /**
+     * Creates a dendrogram from merges that are each identified by two leafs, like
+     * {@link #fromLeafMerges(int, int[], int[], double[])}, optionally keeping the merges in the given order.
+     * 
+     * @param sortByCost whether to order the merges by ascending cost, or keep them in the given order.
+     */
+    public static Dendrogram fromLeafMerges(int leafCount, int[] leafs1, int[] leafs2, final double[] costs,
+            boolean sortByCost) {
+        int mergeCount = costs.length;
+        Integer[] order = new Integer[mergeCount];
+        for (int i = 0; i < mergeCount; i++) {
+            order[i] = i;
+        }
+        if (sortByCost) {
+            // merge sort, i.e. stable
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return Double.compare(costs[o1], costs[o2]);
+                }
+            });
+        }
+
+        // union-find over the leafs, the current cluster id is stored at the representative of each set
+        UnionFind sets = new UnionFind(leafCount);
+        int[] clusterIds = ArrayUtils.getLinearArray(leafCount);
+
+        int[] children1 = new int[mergeCount];
+        int[] children2 = new int[mergeCount];
+        double[] sortedCosts = new double[mergeCount];
+        int[] sizes = new int[mergeCount];
+        for (int m = 0; m < mergeCount; m++) {
+            int merge = order[m];
+            children1[m] = clusterIds[sets.find(leafs1[merge])];
+            children2[m] = clusterIds[sets.find(leafs2[merge])];
+            sortedCosts[m] = costs[merge];
+            sizes[m] = getSize(leafCount, sizes, children1[m]) + getSize(leafCount, sizes, children2[m]);
+            clusterIds[sets.union(leafs1[merge], leafs2[merge])] = leafCount + m;
+        }
+        return new Dendrogram(leafCount, children1, children2, sortedCosts, sizes);
+    }
+
+    private static int getSize(int leafCount, int[] sizes, int id) {
+        return id < leafCount ? 1 : sizes[id - leafCount];
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public int getMergeCount() {
+        return costs.length;
+    }
+
+    /** Returns the id of the first child of the given merge. */
+    public int getChild1(int merge) {
+        return children1[merge];
+    }
+
+    /** Returns the id of the second child of the given merge. */
+    public int getChild2(int merge) {
+        return children2[merge];
+    }
+
+    public double getCost(int merge) {
+        return costs[merge];
+    }
+
+    /** Returns the number of leafs in the cluster with the given id. */
+    public int getSize(int id) {
+        return getSize(leafCount, sizes, id);
+    }
+
+    public boolean isLeaf(int id) {
+        return id < leafCount;
+    }
+
+    /** Returns the level of the cluster created by the given merge in the {@link ClusteringTree}; 1 is the top. */
+    public int getLevel(int merge) {
+        return leafCount - 1 - merge;
+    }
+
+    /**
+     * Assigns each leaf to one of the given number of clusters, obtained by cutting the dendrogram before the last
+     * <code>clusters - 1</code> merges.
+     * 
+     * @return the cluster index <code>0 ... clusters - 1</code> of each leaf
+     */
+    public int[] getClusterAssignment(int clusters) {
+        clusters = Math.max(1, Math.min(clusters, leafCount));
+        int merges = leafCount - clusters;
+        // go down from the last merge below the cut, each merge passes the label of its cluster on to its children
+        int[] labels = new int[leafCount + merges];
+        Arrays.fill(labels, -1);
+        int nextLabel = 0;
+        for (int m = merges - 1; m >= 0; m--) {
+            if (labels[leafCount + m] == -1) {
+                labels[leafCount + m] = nextLabel++;
+            }
+            labels[children1[m]] = labels[leafCount + m];
+            labels[children2[m]] = labels[leafCount + m];
+        }
+        int[] assignment = new int[leafCount];
+        for (int i = 0; i < leafCount; i++) {
+            assignment[i] = labels[i] != -1 ? labels[i] : nextLabel++;
+        }
+        return assignment;
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.visualization.clustering;
+
+import java.util.Arrays;
+
+/**
+ * Base class for hierarchical clustering algorithms that run without any visualisation, e.g. in batch jobs or report
+ * generators. The input are the weight vectors of the units, stored unit-major in one array as in
+ * {@link at.tuwien.ifs.somtoolbox.layers.WeightMatrix}, and the positions of the units on the map grid; the result is
+ * a {@link Dendrogram}. {@link TreeBuilder#createTree(at.tuwien.ifs.somtoolbox.apps.viewer.GeneralUnitPNode[][],
+ * DendrogramBuilder)} uses such a builder to create the {@link ClusteringTree} for the viewer.
+ * 
+ * @author agent
+ * @version $Id$
+ */
+public abstract class DendrogramBuilder {
+
+    /** Is informed about the progress of a clustering, and may abort it. */
+    public interface ProgressHandler {
+        public void progress() throws ClusteringAbortedException;
+    }
+
+    private ProgressHandler progressHandler;
+
+    public void setProgressHandler(ProgressHandler progressHandler) {
+        this.progressHandler = progressHandler;
+    }
+
+    /** Reports one step of progress, to be called at most {@link #getProgressSteps(int)} times. */
+    protected void progress() throws ClusteringAbortedException {
+        if (progressHandler != null) {
+            progressHandler.progress();
+        }
+    }
+
+    /** Returns the number of progress steps the clustering of the given number of units takes. */
+    public int getProgressSteps(int units) {
+        return 2 * units;
+    }
+
+    /**
+     * Clusters the given units.
+     * 
+     * @param weights the weight vectors of the units, the vector of unit <code>i</code> is stored at
+     *            <code>[i * dim, (i + 1) * dim)</code>.
+     * @param dim the dimensionality of the weight vectors.
+     * @param xPositions the horizontal position of each unit on the map.
+     * @param yPositions the vertical position of each unit on the map.
+     * @return the dendrogram, whose leafs are the units in the given order.
+     */
+    public abstract Dendrogram createDendrogram(double[] weights, int dim, int[] xPositions, int[] yPositions)
+            throws ClusteringAbortedException;
+
+    /**
+     * Clusters the given units, each standing for a cluster of the given size, e.g. the number of inputs mapped to
+     * the unit. Builders whose linkage depends on the size of the clusters take the sizes into account; the others,
+     * like this default implementation, ignore them.
+     * 
+     * @param leafSizes the size of each unit, which have to be positive; <code>null</code> for all units having size
+     *            one.
+     * @see #createDendrogram(double[], int, int[], int[])
+     */
+    public Dendrogram createDendrogram(double[] weights, int dim, int[] xPositions, int[] yPositions, int[] leafSizes)
+            throws ClusteringAbortedException {
+        return createDendrogram(weights, dim, xPositions, yPositions);
+    }
+
+    /**
+     * Clusters the given units of the given sizes, with the given edges as their neighbourhood instead of the
+     * adjacency on the map grid, e.g. a grid from which units were removed, and whose remaining units are still
+     * connected through them. Builders that only merge neighbouring clusters use the given edges; the others, like
+     * this default implementation, ignore them.
+     * 
+     * @param neighbourEdges the indices of the two units of each edge, as <code>{ units1, units2 }</code>, see
+     *            {@link #createGridEdges(int[], int[])}.
+     * @see #createDendrogram(double[], int, int[], int[], int[])
+     */
+    public Dendrogram createDendrogram(double[] weights, int dim, int[] xPositions, int[] yPositions,
+            int[] leafSizes, int[][] neighbourEdges) throws ClusteringAbortedException {
+        return createDendrogram(weights, dim, xPositions, yPositions, leafSizes);
+    }
+
+    /**
+     * Creates the edges between all units adjacent on the map grid, i.e. from each unit to its neighbours to the right,
+     * bottom, bottom-right and top-right.
+     * 
+     * @return the indices of the two units of each edge, as <code>{ units1, units2 }</code>
+     */
+    protected static int[][] createGridEdges(int[] xPositions, int[] yPositions) {
+        int n = xPositions.length;
+        int xSize = 0;
+        int ySize = 0;
+        for (int i = 0; i < n; i++) {
+            xSize = Math.max(xSize, xPositions[i] + 1);
+            ySize = Math.max(ySize, yPositions[i] + 1);
+        }
+        int[][] grid = new int[xSize][ySize];
+        for (int[] column : grid) {
+            Arrays.fill(column, -1);
+        }
+        for (int i = 0; i < n; i++) {
+            grid[xPositions[i]][yPositions[i]] = i;
+        }
+
+        int[] units1 = new int[4 * n];
+        int[] units2 = new int[4 * n];
+        int count = 0;
+        int[][] offsets = { { 1, 0 }, { 0, 1 }, { 1, 1 }, { 1, -1 } };
+        for (int i = 0; i < n; i++) {
+            for (int[] offset : offsets) {
+                int x = xPositions[i] + offset[0];
+                int y = yPositions[i] + offset[1];
+                if (x < xSize && y >= 0 && y < ySize && grid[x][y] != -1) {
+                    units1[count] = i;
+                    units2[count] = grid[x][y];
+                    count++;
+                }
+            }
+        }
+        return new int[][] { Arrays.copyOf(units1, count), Arrays.copyOf(units2, count) };
+    }
+
+    public abstract String getClusteringAlgName();
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.visualization.clustering;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Stores {@link Dendrogram}s in binary sidecar files next to the weight vector file of a map, so that the clustering
+ * of a map does not have to be recomputed every time the map is opened.
+ * <p>
+ * The cache file of a map and a linkage method is named after the weight vector file, without the <code>.wgt</code>
+ * and <code>.gz</code> extensions, followed by the name of the linkage method and the extension
+ * {@value #FILE_EXTENSION}, e.g. <code>map.wards-linkage-nearest-neighbour-chain.dendrogram</code> for <code>map.wgt.gz</code>. The file
+ * starts with a magic number, the format version, and an MD5 digest of the weight vectors, the unit positions and the
+ * name of the linkage method, followed by the number of leafs and the merge table, i.e. the two children and the cost
+ * of each merge. A cached dendrogram is only used if the digest matches the current map; otherwise, the file is stale,
+ * and is overwritten with the newly computed dendrogram.
+ * </p>
+ * 
+ * @author agent
+ * @version $Id$
+ */
+public class DendrogramCache {
+
+    static final int MAGIC_NUMBER = 0x534F4D43; // "SOMC"
+
+    static final int FORMAT_VERSION = 1;
+
+    public static final String FILE_EXTENSION = ".dendrogram";
+
+    private static final String DIGEST_ALGORITHM = "MD5";
+
+    private DendrogramCache() {
+    }
+
+    /** Returns the name of the cache file for the given weight vector file and linkage method. */
+    public static String getCacheFileName(String weightVectorFileName, String clusteringAlgName) {
+        String baseName = weightVectorFileName;
+        if (baseName.endsWith(".gz")) {
+            baseName = baseName.substring(0, baseName.length() - ".gz".length());
+        }
+        if (baseName.endsWith(".wgt")) {
+            baseName = baseName.substring(0, baseName.length() - ".wgt".length());
+        }
+        String algName = clusteringAlgName.toLowerCase().replace("'", "").replaceAll("[^a-z0-9]+", "-");
+        algName = algName.replaceAll("^-|-$", "");
+        return baseName + "." + algName + FILE_EXTENSION;
+    }
+
+    /**
+     * Computes the key identifying the clustering of the given leafs with the given linkage method, i.e. a digest of
+     * the weight vectors, the positions, the sizes of the leafs, if given, and the name of the linkage method.
+     */
+    public static byte[] computeKey(double[] weights, int dim, int[] xPositions, int[] yPositions, int[] leafSizes,
+            String clusteringAlgName) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has to support MD5
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+        buffer.putInt(xPositions.length).putInt(dim);
+        for (int i = 0; i < weights.length; i++) {
+            if (buffer.remaining() < 8) {
+                digest.update(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            buffer.putLong(Double.doubleToLongBits(weights[i]));
+        }
+        for (int i = 0; i < xPositions.length; i++) {
+            if (buffer.remaining() < 8) {
+                digest.update(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            buffer.putInt(xPositions[i]).putInt(yPositions[i]);
+        }
+        for (int i = 0; leafSizes != null && i < leafSizes.length; i++) {
+            if (buffer.remaining() < 4) {
+                digest.update(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            buffer.putInt(leafSizes[i]);
+        }
+        digest.update(buffer.array(), 0, buffer.position());
+        try {
+            digest.update(clusteringAlgName.getBytes("UTF-8"));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Reads the dendrogram of the given number of leafs from the given cache file.
+     * 
+     * @return the cached dendrogram, or <code>null</code> if the file does not exist, is stale, i.e. was written for a
+     *         different key, or can not be read.
+     */
+    public static Dendrogram read(String fileName, byte[] key, int leafCount) {
+        File file = new File(fileName);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC_NUMBER || in.readInt() != FORMAT_VERSION) {
+                    return null;
+                }
+                byte[] cachedKey = new byte[in.readUnsignedByte()];
+                in.readFully(cachedKey);
+                if (!Arrays.equals(key, cachedKey) || in.readInt() != leafCount) {
+                    return null;
+                }
+                int mergeCount = Math.max(leafCount - 1, 0);
+                int[] children1 = new int[mergeCount];
+                int[] children2 = new int[mergeCount];
+                double[] costs = new double[mergeCount];
+                int[] sizes = new int[mergeCount];
+                for (int m = 0; m < mergeCount; m++) {
+                    children1[m] = in.readInt();
+                    children2[m] = in.readInt();
+                    costs[m] = in.readDouble();
+                    if (!isValidChild(children1[m], leafCount, m) || !isValidChild(children2[m], leafCount, m)) {
+                        return null;
+                    }
+                    sizes[m] = getSize(children1[m], leafCount, sizes) + getSize(children2[m], leafCount, sizes);
+                }
+                return new Dendrogram(leafCount, children1, children2, costs, sizes);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Logger.getLogger("at.tuwien.ifs.somtoolbox").warning(
+                    "Could not read cached clustering from " + fileName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Writes the given dendrogram with the given key to the given cache file. */
+    public static void write(String fileName, byte[] key, Dendrogram dendrogram) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+        try {
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(FORMAT_VERSION);
+            out.writeByte(key.length);
+            out.write(key);
+            out.writeInt(dendrogram.getLeafCount());
+            for (int m = 0; m < dendrogram.getMergeCount(); m++) {
+                out.writeInt(dendrogram.getChild1(m));
+                out.writeInt(dendrogram.getChild2(m));
+                out.writeDouble(dendrogram.getCost(m));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /** A child of merge m has to be a leaf or the cluster of an earlier merge. */
+    private static boolean isValidChild(int id, int leafCount, int merge) {
+        return id >= 0 && id < leafCount + merge;
+    }
+
+    private static int getSize(int id, int leafCount, int[] sizes) {
+        return id < leafCount ? 1 : sizes[id - leafCount];
+    }
+
+}
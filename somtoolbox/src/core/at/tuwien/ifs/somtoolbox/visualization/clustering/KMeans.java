@@ -41,7 +41,7 @@ import at.tuwien.ifs.somtoolbox.util.VectorTools;
 
 public class KMeans {
     public enum InitType {
-        RANDOM, RANDOM_INSTANCE, LINEAR, LINEAR_INSTANCE, EQUAL_NUMBERS
+        RANDOM, RANDOM_INSTANCE, LINEAR, LINEAR_INSTANCE, EQUAL_NUMBERS, KMEANS_PLUS_PLUS, KMEANS_PARALLEL
     }
 
     protected double[][] data;
@@ -57,6 +57,11 @@ public class KMeans {
 
     protected Cluster[] clusters;
 
+    private DistanceMetric distanceFunction;
+
+    /** The number of instances per CPU from which on training is done in parallel. */
+    private static final int MIN_INSTANCES_PER_CPU = 10000;
+
     // TODO remove this after testing
     private static long RANDOM_SEED = 1234567;
 
@@ -96,6 +101,7 @@ public class KMeans {
         this.instancesInClusters = new Hashtable<Integer, Integer>();
         this.clusters = new Cluster[k];
         this.data = data;
+        this.distanceFunction = distanceFunction;
 
         // initialise a couple of things
         initMinAndMaxValues();
@@ -116,6 +122,12 @@ public class KMeans {
             case EQUAL_NUMBERS:
                 initClustersEqualNumbers(distanceFunction);
                 break;
+            case KMEANS_PLUS_PLUS:
+                initClustersKMeansPlusPlus(distanceFunction, false);
+                break;
+            case KMEANS_PARALLEL:
+                initClustersKMeansPlusPlus(distanceFunction, true);
+                break;
             default:
                 break;
         }
@@ -137,9 +149,15 @@ public class KMeans {
 
     /**
      * Train for as long as instances move between clusters. "Not moving" means that there hasn't been a change in the
-     * last {@link #NUMBER_OF_UPDATE_RANGE} steps ({@value #NUMBER_OF_UPDATE_RANGE}).
+     * last {@link #NUMBER_OF_UPDATE_RANGE} steps ({@value #NUMBER_OF_UPDATE_RANGE}). For the Euclidean distance, the
+     * training is done by {@link AcceleratedKMeans}, until no instance moves anymore.
      */
     public void train() {
+        // more clusters than instances leave some clusters empty, which only the training below handles
+        if (L2Metric.isEuclidean(distanceFunction) && k <= numberOfInstances) {
+            trainAccelerated();
+            return;
+        }
         ArrayList<Boolean> lastUpdates = new ArrayList<Boolean>(NUMBER_OF_UPDATE_RANGE);
         boolean hasUpdatedInLastKRounds = false;
         do {
@@ -157,6 +175,30 @@ public class KMeans {
         removeEmptyClusters();
     }
 
+    /** Trains with {@link AcceleratedKMeans}, starting from the current centroids. */
+    private void trainAccelerated() {
+        AcceleratedKMeans kMeans = new AcceleratedKMeans(k, data);
+        kMeans.setCentroids(getClusterCentroids());
+        kMeans.setNumberOfCPUs(Math.min(Runtime.getRuntime().availableProcessors(), 1 + numberOfInstances
+                / MIN_INSTANCES_PER_CPU));
+        try {
+            int iterations = kMeans.train();
+            System.out.println("k-means converged after " + iterations + " steps.");
+        } finally {
+            kMeans.shutdown();
+        }
+        double[][] centroids = kMeans.getCentroids();
+        int[] assignments = kMeans.getAssignments();
+        for (int clusterIndex = 0; clusterIndex < k; clusterIndex++) {
+            clusters[clusterIndex] = new Cluster(centroids[clusterIndex], distanceFunction);
+        }
+        for (int instanceIndex = 0; instanceIndex < numberOfInstances; instanceIndex++) {
+            clusters[assignments[instanceIndex]].addIndex(instanceIndex);
+            instancesInClusters.put(instanceIndex, assignments[instanceIndex]);
+        }
+        removeEmptyClusters();
+    }
+
     // TODO implement a better stop criterion (e.g. less than 10 per cent of instances move between clusters per step)
 
     /**
@@ -386,6 +428,23 @@ public class KMeans {
         }
     }
 
+    /** Takes the centroids chosen by k-means++, or by its parallel variant k-means||, from the input data. */
+    private void initClustersKMeansPlusPlus(DistanceMetric distanceFunction, boolean parallel) {
+        // with more clusters than instances, the remaining clusters start at already chosen centroids, and stay empty
+        int seeds = Math.min(k, numberOfInstances);
+        AcceleratedKMeans seeding = new AcceleratedKMeans(seeds, data);
+        seeding.setSeed(RANDOM_SEED);
+        if (parallel) {
+            seeding.seedKMeansParallel();
+        } else {
+            seeding.seedKMeansPlusPlus();
+        }
+        double[][] centroids = seeding.getCentroids();
+        for (int clusterIndex = 0; clusterIndex < k; clusterIndex++) {
+            clusters[clusterIndex] = new Cluster(centroids[clusterIndex % seeds].clone(), distanceFunction);
+        }
+    }
+
     /**
      * This one does linear initialisation. In the two dimensional space it will place the cluster centres on a diagonal
      * line of a square.
@@ -0,0 +1,448 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.visualization.clustering;
+
+import java.util.Arrays;
+
+import at.tuwien.ifs.somtoolbox.layers.metrics.L2Metric;
+
+/**
+ * Creates agglomerative clusterings of all units with the linkages that can be expressed by the Lance-Williams update
+ * formula, i.e. the distance of a cluster <code>k</code> to the union of the clusters <code>i</code> and
+ * <code>j</code> is computed from the distances between the three clusters only:
+ * 
+ * <pre>
+ * d(k, i+j) = a_i d(k, i) + a_j d(k, j) + b d(i, j) + c |d(k, i) - d(k, j)|
+ * </pre>
+ * 
+ * The distances between all clusters are kept in a condensed array of the upper-right half of the distance matrix, i.e.
+ * O(n^2) memory. The merges are found with the nearest-neighbour chain algorithm in O(n^2) time for the linkages that
+ * never merge two clusters at a lower distance than an earlier merge, i.e. all but {@link Linkage#CENTROID} and
+ * {@link Linkage#MEDIAN}. For those two, the nearest neighbour of each cluster is cached, which is O(n^2) in typical
+ * cases, and the merges are kept in the order they were made in.<br/>
+ * {@link Linkage#SINGLE} linkage does not need the distance matrix: the dendrogram is the minimum spanning tree of the
+ * units, which is found with Prim's algorithm in O(n^2) time and O(n) memory, computing the distances when needed.
+ * 
+ * @author agent
+ * @version $Id$
+ */
+public class LinkageDendrogramBuilder extends DendrogramBuilder {
+
+    /** The linkage criteria supported; the merge costs are given in the unit of the distances noted. */
+    public enum Linkage {
+        /** The smallest Euclidean distance between any two units of the clusters. */
+        SINGLE("Single Linkage"),
+        /** The largest Euclidean distance between any two units of the clusters. */
+        COMPLETE("Complete Linkage"),
+        /** The average Euclidean distance between the units of the clusters (UPGMA). */
+        AVERAGE("Average Linkage"),
+        /** The average of the distances of the two clusters merged last (WPGMA, McQuitty). */
+        WEIGHTED("Weighted Average Linkage"),
+        /** The Euclidean distance between the means of the clusters (UPGMC). */
+        CENTROID("Centroid Linkage"),
+        /** The Euclidean distance between the midpoints of the clusters merged last (WPGMC). */
+        MEDIAN("Median Linkage"),
+        /** The increase of the error sum of squares, as computed by {@link WardsLinkageDendrogramBuilder#calcESSincrease}. */
+        WARD("Ward's Linkage");
+
+        private final String name;
+
+        private Linkage(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** Whether this linkage works on squared Euclidean distances. */
+        boolean isSquared() {
+            return this == CENTROID || this == MEDIAN || this == WARD;
+        }
+
+        /** Whether this linkage can merge clusters at a lower distance than an earlier merge. */
+        boolean hasInversions() {
+            return this == CENTROID || this == MEDIAN;
+        }
+    }
+
+    private final Linkage linkage;
+
+    public LinkageDendrogramBuilder(Linkage linkage) {
+        this.linkage = linkage;
+    }
+
+    public Linkage getLinkage() {
+        return linkage;
+    }
+
+    /** Single linkage needs one step per unit, the other linkages two. */
+    @Override
+    public int getProgressSteps(int units) {
+        return linkage == Linkage.SINGLE ? units : super.getProgressSteps(units);
+    }
+
+    @Override
+    public Dendrogram createDendrogram(double[] weights, int dim, int[] xPositions, int[] yPositions)
+            throws ClusteringAbortedException {
+        return createDendrogram(weights, dim, xPositions.length, null);
+    }
+
+    @Override
+    public Dendrogram createDendrogram(double[] weights, int dim, int[] xPositions, int[] yPositions, int[] leafSizes)
+            throws ClusteringAbortedException {
+        if (leafSizes == null) {
+            return createDendrogram(weights, dim, xPositions, yPositions);
+        }
+        return createWeightedDendrogram(weights, dim, leafSizes);
+    }
+
+    /**
+     * Clusters leafs that each stand for a cluster of the given size, e.g. units with the number of inputs mapped to
+     * them. The sizes are used by the linkages that depend on the size of the clusters, i.e. {@link Linkage#AVERAGE},
+     * {@link Linkage#CENTROID} and {@link Linkage#WARD}; for Ward's linkage, the initial merge costs are thus the
+     * increase of the error sum of squares of merging two clusters of the given sizes whose means are the given
+     * vectors.
+     * 
+     * @param weights the vectors of the leafs, the vector of leaf <code>i</code> is stored at
+     *            <code>[i * dim, (i + 1) * dim)</code>.
+     * @param dim the dimensionality of the vectors.
+     * @param leafSizes the size of each leaf, which have to be positive.
+     */
+    public Dendrogram createWeightedDendrogram(double[] weights, int dim, int[] leafSizes)
+            throws ClusteringAbortedException {
+        for (int size : leafSizes) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("Leaf sizes have to be positive, found " + size);
+            }
+        }
+        return createDendrogram(weights, dim, leafSizes.length, leafSizes);
+    }
+
+    private Dendrogram createDendrogram(double[] weights, int dim, int n, int[] leafSizes)
+            throws ClusteringAbortedException {
+        if (linkage == Linkage.SINGLE) {
+            return createMinimumSpanningTreeDendrogram(weights, dim, n);
+        }
+
+        double[] distances = calculateInitialDistances(weights, dim, n, leafSizes);
+        int[] mergeLeafs1 = new int[n - 1];
+        int[] mergeLeafs2 = new int[n - 1];
+        double[] mergeCosts = new double[n - 1];
+        int[] sizes = new int[n];
+        for (int i = 0; i < n; i++) {
+            sizes[i] = leafSizes != null ? leafSizes[i] : 1;
+        }
+        if (linkage.hasInversions()) {
+            clusterWithNearestNeighbours(distances, n, sizes, mergeLeafs1, mergeLeafs2, mergeCosts);
+            for (int m = 0; m < mergeCosts.length; m++) {
+                mergeCosts[m] = Math.sqrt(Math.max(0, mergeCosts[m]));
+            }
+            return Dendrogram.fromLeafMerges(n, mergeLeafs1, mergeLeafs2, mergeCosts, false);
+        } else {
+            clusterWithNearestNeighbourChain(distances, n, sizes, mergeLeafs1, mergeLeafs2, mergeCosts);
+            return Dendrogram.fromLeafMerges(n, mergeLeafs1, mergeLeafs2, mergeCosts);
+        }
+    }
+
+    /**
+     * Calculates the initial distances between all units, stored in a condensed array as indexed by
+     * {@link #condensedIndex(int, int, int)}: the Euclidean distance, its square, or for Ward's linkage the increase
+     * of the error sum of squares, i.e. half the squared distance for leafs of size one.
+     */
+    private double[] calculateInitialDistances(double[] weights, int dim, int n, int[] leafSizes)
+            throws ClusteringAbortedException {
+        if ((long) n * (n - 1) / 2 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many units for the clustering of all units: " + n);
+        }
+        double[] distances = new double[(int) ((long) n * (n - 1) / 2)];
+        double[] vector = new double[dim];
+        int index = 0;
+        for (int i = 0; i < n; i++) {
+            progress();
+            System.arraycopy(weights, i * dim, vector, 0, dim);
+            for (int j = i + 1; j < n; j++) {
+                distances[index] = getInitialDistance(weights, j * dim, vector);
+                if (leafSizes != null && linkage == Linkage.WARD) {
+                    // 2 * n_i * n_j / (n_i + n_j) times the ESS increase of two single units
+                    distances[index] = distances[index] * 2 * leafSizes[i] * leafSizes[j]
+                            / (leafSizes[i] + leafSizes[j]);
+                }
+                index++;
+            }
+        }
+        return distances;
+    }
+
+    private double getInitialDistance(double[] weights, int offset, double[] vector) {
+        double squaredDistance = L2Metric.squaredDistance(weights, offset, vector, Double.POSITIVE_INFINITY);
+        if (linkage == Linkage.WARD) {
+            // the ESS increase of two single units, with the means being the weight vectors
+            return squaredDistance / 2;
+        } else if (linkage.isSquared()) {
+            return squaredDistance;
+        } else {
+            return Math.sqrt(squaredDistance);
+        }
+    }
+
+    /** Returns the index of the distance between clusters i and j in the condensed distance array. */
+    static int condensedIndex(int i, int j, int n) {
+        if (i > j) {
+            int tmp = i;
+            i = j;
+            j = tmp;
+        }
+        return (int) ((long) i * (2 * n - i - 1) / 2) + j - i - 1;
+    }
+
+    /**
+     * Computes the distance of cluster k to the union of clusters i and j with the Lance-Williams formula.
+     * 
+     * @param dki the distance between k and i
+     * @param dkj the distance between k and j
+     * @param dij the distance between i and j
+     */
+    private double lanceWilliams(double dki, double dkj, double dij, int sizeI, int sizeJ, int sizeK) {
+        switch (linkage) {
+            case COMPLETE:
+                return Math.max(dki, dkj);
+            case AVERAGE:
+                return (sizeI * dki + sizeJ * dkj) / (sizeI + sizeJ);
+            case WEIGHTED:
+                return (dki + dkj) / 2;
+            case CENTROID:
+                double size = sizeI + sizeJ;
+                return (sizeI * dki + sizeJ * dkj) / size - (double) sizeI * sizeJ * dij / (size * size);
+            case MEDIAN:
+                return (dki + dkj) / 2 - dij / 4;
+            case WARD:
+                return ((sizeI + sizeK) * dki + (sizeJ + sizeK) * dkj - sizeK * dij) / (sizeI + sizeJ + sizeK);
+            default:
+                // single linkage
+                return Math.min(dki, dkj);
+        }
+    }
+
+    /**
+     * Merges the clusters i and j, updating the distances of all other active clusters to the merged cluster, which is
+     * stored at i.
+     */
+    private void merge(double[] distances, int n, int[] sizes, boolean[] active, int i, int j, double dij) {
+        int sizeI = sizes[i];
+        int sizeJ = sizes[j];
+        for (int k = 0; k < n; k++) {
+            if (!active[k] || k == i || k == j) {
+                continue;
+            }
+            int indexI = condensedIndex(i, k, n);
+            distances[indexI] = lanceWilliams(distances[indexI], distances[condensedIndex(j, k, n)], dij, sizeI,
+                    sizeJ, sizes[k]);
+        }
+        sizes[i] = sizeI + sizeJ;
+        active[j] = false;
+    }
+
+    /**
+     * Finds the merges with the nearest-neighbour chain algorithm: the chain is grown from a cluster to its nearest
+     * neighbour, until the last two clusters are each other's nearest neighbours, and can thus be merged; this is only
+     * valid for linkages without inversions. The merges are found in a different order than their costs would suggest.
+     */
+    private void clusterWithNearestNeighbourChain(double[] distances, int n, int[] sizes, int[] mergeLeafs1,
+            int[] mergeLeafs2, double[] mergeCosts) throws ClusteringAbortedException {
+        // each active cluster is stored at the index of one of its leafs
+        boolean[] active = new boolean[n];
+        Arrays.fill(active, true);
+
+        int[] chain = new int[n];
+        int chainLength = 0;
+        int firstActive = 0;
+
+        for (int merge = 0; merge < n - 1; merge++) {
+            progress();
+            if (chainLength == 0) {
+                while (!active[firstActive]) {
+                    firstActive++;
+                }
+                chain[chainLength++] = firstActive;
+            }
+
+            // grow the chain until its last two clusters are each other's nearest neighbours
+            int a;
+            int b;
+            double cost;
+            for (;;) {
+                a = chain[chainLength - 1];
+                // on equal costs, prefer the previous cluster in the chain, which guarantees termination
+                if (chainLength > 1) {
+                    b = chain[chainLength - 2];
+                    cost = distances[condensedIndex(a, b, n)];
+                } else {
+                    b = -1;
+                    cost = Double.POSITIVE_INFINITY;
+                }
+                int previous = b;
+                for (int k = 0; k < n; k++) {
+                    if (!active[k] || k == a) {
+                        continue;
+                    }
+                    double d = distances[condensedIndex(a, k, n)];
+                    if (d < cost) {
+                        cost = d;
+                        b = k;
+                    }
+                }
+                if (b == previous) {
+                    break;
+                }
+                chain[chainLength++] = b;
+            }
+            chainLength -= 2;
+
+            // the merged cluster is kept at the lower index
+            if (b < a) {
+                int tmp = a;
+                a = b;
+                b = tmp;
+            }
+            mergeLeafs1[merge] = a;
+            mergeLeafs2[merge] = b;
+            mergeCosts[merge] = cost;
+            merge(distances, n, sizes, active, a, b, cost);
+        }
+    }
+
+    /**
+     * Finds the merges by always merging the two closest clusters, keeping the nearest neighbour of each cluster to
+     * find them in O(n). After a merge, the nearest neighbours only need to be searched again for the clusters whose
+     * nearest neighbour was one of the merged clusters, and for the merged cluster itself.
+     */
+    private void clusterWithNearestNeighbours(double[] distances, int n, int[] sizes, int[] mergeLeafs1,
+            int[] mergeLeafs2, double[] mergeCosts) throws ClusteringAbortedException {
+        boolean[] active = new boolean[n];
+        Arrays.fill(active, true);
+        int[] neighbours = new int[n];
+        double[] neighbourDistances = new double[n];
+        for (int i = 0; i < n; i++) {
+            findNearestNeighbour(distances, n, active, i, neighbours, neighbourDistances);
+        }
+
+        for (int merge = 0; merge < n - 1; merge++) {
+            progress();
+            int a = -1;
+            for (int i = 0; i < n; i++) {
+                if (active[i] && (a == -1 || neighbourDistances[i] < neighbourDistances[a])) {
+                    a = i;
+                }
+            }
+            int b = neighbours[a];
+            double cost = neighbourDistances[a];
+            if (b < a) {
+                int tmp = a;
+                a = b;
+                b = tmp;
+            }
+            mergeLeafs1[merge] = a;
+            mergeLeafs2[merge] = b;
+            mergeCosts[merge] = cost;
+            merge(distances, n, sizes, active, a, b, cost);
+
+            for (int k = 0; k < n; k++) {
+                if (!active[k] || k == a) {
+                    continue;
+                }
+                double d = distances[condensedIndex(a, k, n)];
+                if (neighbours[k] == a || neighbours[k] == b) {
+                    findNearestNeighbour(distances, n, active, k, neighbours, neighbourDistances);
+                } else if (d < neighbourDistances[k]) {
+                    neighbours[k] = a;
+                    neighbourDistances[k] = d;
+                }
+            }
+            findNearestNeighbour(distances, n, active, a, neighbours, neighbourDistances);
+        }
+    }
+
+    private static void findNearestNeighbour(double[] distances, int n, boolean[] active, int i, int[] neighbours,
+            double[] neighbourDistances) {
+        neighbours[i] = -1;
+        neighbourDistances[i] = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < n; k++) {
+            if (!active[k] || k == i) {
+                continue;
+            }
+            double d = distances[condensedIndex(i, k, n)];
+            if (d < neighbourDistances[i]) {
+                neighbours[i] = k;
+                neighbourDistances[i] = d;
+            }
+        }
+    }
+
+    /**
+     * Creates the single linkage dendrogram from the minimum spanning tree of the units, found with Prim's algorithm:
+     * starting from the first unit, the unit closest to the tree is added in each step, and the distances of the
+     * remaining units to the tree are updated with their distances to the new unit.
+     */
+    private Dendrogram createMinimumSpanningTreeDendrogram(double[] weights, int dim, int n)
+            throws ClusteringAbortedException {
+        int[] mergeLeafs1 = new int[n - 1];
+        int[] mergeLeafs2 = new int[n - 1];
+        double[] mergeCosts = new double[n - 1];
+
+        boolean[] inTree = new boolean[n];
+        // the distance of each unit to the tree, and the unit of the tree it is closest to
+        double[] treeDistances = new double[n];
+        int[] treeNeighbours = new int[n];
+        Arrays.fill(treeDistances, Double.POSITIVE_INFINITY);
+        double[] vector = new double[dim];
+
+        int last = 0;
+        inTree[0] = true;
+        for (int merge = 0; merge < n - 1; merge++) {
+            progress();
+            System.arraycopy(weights, last * dim, vector, 0, dim);
+            int next = -1;
+            for (int k = 0; k < n; k++) {
+                if (inTree[k]) {
+                    continue;
+                }
+                double d = L2Metric.squaredDistance(weights, k * dim, vector, treeDistances[k]);
+                if (d < treeDistances[k]) {
+                    treeDistances[k] = d;
+                    treeNeighbours[k] = last;
+                }
+                if (next == -1 || treeDistances[k] < treeDistances[next]) {
+                    next = k;
+                }
+            }
+            inTree[next] = true;
+            mergeLeafs1[merge] = treeNeighbours[next];
+            mergeLeafs2[merge] = next;
+            mergeCosts[merge] = Math.sqrt(treeDistances[next]);
+            last = next;
+        }
+        return Dendrogram.fromLeafMerges(n, mergeLeafs1, mergeLeafs2, mergeCosts);
+    }
+
+    @Override
+    public String getClusteringAlgName() {
+        return linkage.getName();
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.visualization.clustering;
+
+import java.util.logging.Logger;
+
+import at.tuwien.ifs.somtoolbox.apps.viewer.GeneralUnitPNode;
+import at.tuwien.ifs.somtoolbox.visualization.clustering.LinkageDendrogramBuilder.Linkage;
+
+/**
+ * Creates the clustering of all units with any of the {@link Linkage}s supported by {@link LinkageDendrogramBuilder}.
+ * Units that do not exist (e.g. in mnemonic SOMs) are left out.
+ * 
+ * @author agent
+ * @version $Id$
+ */
+public class LinkageTreeBuilder extends TreeBuilder {
+
+    private final Linkage linkage;
+
+    public LinkageTreeBuilder(Linkage linkage) {
+        this.linkage = linkage;
+    }
+
+    @Override
+    public ClusteringTree createTree(GeneralUnitPNode[][] units) throws ClusteringAbortedException {
+        Logger.getLogger("at.tuwien.ifs.somtoolbox").info("Start Clustering ");
+        ClusteringTree tree = createTree(units, new LinkageDendrogramBuilder(linkage));
+        Logger.getLogger("at.tuwien.ifs.somtoolbox").info("Finished Clustering - " + linkage.getName());
+        return tree;
+    }
+
+    @Override
+    public String getClusteringAlgName() {
+        return linkage.getName();
+    }
+
+}
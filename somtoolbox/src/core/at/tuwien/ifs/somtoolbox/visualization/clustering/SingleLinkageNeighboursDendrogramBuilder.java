@@ -0,0 +1,176 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.visualization.clustering;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import at.tuwien.ifs.somtoolbox.layers.metrics.L2Metric;
+import at.tuwien.ifs.somtoolbox.util.UnionFind;
+
+/**
+ * Creates a single linkage clustering in which only units that are neighbours on the map are linked, as done by
+ * {@link SingleLinkageTreeBuilder}. The dendrogram is the minimum spanning tree of the neighbourhood graph, which is
+ * found with Kruskal's algorithm: the edges between adjacent units, or the edges given to
+ * {@link #createDendrogram(double[], int, int[], int[], int[], int[][])}, are sorted by the Euclidean distance of the
+ * units, and each edge connecting two different components, as tracked by a {@link UnionFind}, is a merge. Units that
+ * are not connected in the neighbourhood graph, e.g. in mnemonic SOMs, are finally merged by single linkage over all
+ * units, i.e. the minimum spanning tree of the components, found with Prim's algorithm.
+ * 
+ * @author agent
+ * @version $Id$
+ */
+public class SingleLinkageNeighboursDendrogramBuilder extends DendrogramBuilder {
+
+    @Override
+    public Dendrogram createDendrogram(double[] weights, int dim, int[] xPositions, int[] yPositions)
+            throws ClusteringAbortedException {
+        return createDendrogram(weights, dim, xPositions, yPositions, null, createGridEdges(xPositions, yPositions));
+    }
+
+    /** Links the units along the given edges; the sizes of the units are ignored. */
+    @Override
+    public Dendrogram createDendrogram(double[] weights, int dim, int[] xPositions, int[] yPositions,
+            int[] leafSizes, int[][] neighbourEdges) throws ClusteringAbortedException {
+        int n = xPositions.length;
+        int[] units1 = neighbourEdges[0];
+        int[] units2 = neighbourEdges[1];
+        final double[] edgeDistances = new double[units1.length];
+        double[] vector = new double[dim];
+        for (int e = 0; e < units1.length; e++) {
+            System.arraycopy(weights, units1[e] * dim, vector, 0, dim);
+            edgeDistances[e] = Math.sqrt(L2Metric.squaredDistance(weights, units2[e] * dim, vector,
+                    Double.POSITIVE_INFINITY));
+        }
+        Integer[] order = new Integer[units1.length];
+        for (int e = 0; e < order.length; e++) {
+            order[e] = e;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(edgeDistances[o1], edgeDistances[o2]);
+            }
+        });
+
+        int[] mergeLeafs1 = new int[n - 1];
+        int[] mergeLeafs2 = new int[n - 1];
+        double[] mergeCosts = new double[n - 1];
+        int merge = 0;
+        UnionFind components = new UnionFind(n);
+        for (int e : order) {
+            if (merge == n - 1) {
+                break;
+            }
+            if (!components.isConnected(units1[e], units2[e])) {
+                progress();
+                components.union(units1[e], units2[e]);
+                mergeLeafs1[merge] = units1[e];
+                mergeLeafs2[merge] = units2[e];
+                mergeCosts[merge] = edgeDistances[e];
+                merge++;
+            }
+        }
+
+        if (merge < n - 1) {
+            linkComponents(weights, dim, components, mergeLeafs1, mergeLeafs2, mergeCosts, merge);
+        }
+        return Dendrogram.fromLeafMerges(n, mergeLeafs1, mergeLeafs2, mergeCosts);
+    }
+
+    /**
+     * Links the components of the neighbourhood graph by single linkage over all units, with Prim's algorithm as in
+     * {@link LinkageDendrogramBuilder}: starting from the component of the first unit, the unit closest to the tree is
+     * linked to it in each step, and all units of its component are added to the tree, updating the distances of the
+     * remaining units to the tree. This needs O(n^2) time and O(n) memory.
+     */
+    private void linkComponents(double[] weights, int dim, UnionFind components, int[] mergeLeafs1,
+            int[] mergeLeafs2, double[] mergeCosts, int merge) throws ClusteringAbortedException {
+        int n = mergeLeafs1.length + 1;
+        // the units of each component, stored at [memberOffsets[root], memberOffsets[root + 1])
+        int[] roots = new int[n];
+        int[] memberOffsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            roots[i] = components.find(i);
+            memberOffsets[roots[i] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            memberOffsets[i + 1] += memberOffsets[i];
+        }
+        int[] members = new int[n];
+        int[] memberCounts = new int[n];
+        for (int i = 0; i < n; i++) {
+            members[memberOffsets[roots[i]] + memberCounts[roots[i]]++] = i;
+        }
+
+        boolean[] inTree = new boolean[n];
+        // the squared distance of each unit to the tree, and the unit of the tree it is closest to
+        double[] treeDistances = new double[n];
+        int[] treeNeighbours = new int[n];
+        Arrays.fill(treeDistances, Double.POSITIVE_INFINITY);
+        double[] vector = new double[dim];
+
+        int next = 0;
+        for (;;) {
+            int root = roots[next];
+            for (int p = memberOffsets[root]; p < memberOffsets[root + 1]; p++) {
+                inTree[members[p]] = true;
+            }
+            for (int p = memberOffsets[root]; p < memberOffsets[root + 1]; p++) {
+                System.arraycopy(weights, members[p] * dim, vector, 0, dim);
+                for (int k = 0; k < n; k++) {
+                    if (inTree[k]) {
+                        continue;
+                    }
+                    double d = L2Metric.squaredDistance(weights, k * dim, vector, treeDistances[k]);
+                    if (d < treeDistances[k]) {
+                        treeDistances[k] = d;
+                        treeNeighbours[k] = members[p];
+                    }
+                }
+            }
+            if (merge == n - 1) {
+                break;
+            }
+
+            progress();
+            next = -1;
+            for (int k = 0; k < n; k++) {
+                if (!inTree[k] && (next == -1 || treeDistances[k] < treeDistances[next])) {
+                    next = k;
+                }
+            }
+            mergeLeafs1[merge] = treeNeighbours[next];
+            mergeLeafs2[merge] = next;
+            mergeCosts[merge] = Math.sqrt(treeDistances[next]);
+            merge++;
+        }
+    }
+
+    /** Needs one step per unit. */
+    @Override
+    public int getProgressSteps(int units) {
+        return units;
+    }
+
+    @Override
+    public String getClusteringAlgName() {
+        return "SingleLinkage";
+    }
+
+}
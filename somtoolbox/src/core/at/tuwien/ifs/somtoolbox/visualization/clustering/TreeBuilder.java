@@ -17,9 +17,16 @@
  */
 package at.tuwien.ifs.somtoolbox.visualization.clustering;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
 import javax.swing.ProgressMonitor;
 
 import at.tuwien.ifs.somtoolbox.apps.viewer.GeneralUnitPNode;
+import at.tuwien.ifs.somtoolbox.layers.Unit;
+import at.tuwien.ifs.somtoolbox.layers.metrics.L2Metric;
 import at.tuwien.ifs.somtoolbox.util.AdaptiveStdErrProgressWriter;
 import at.tuwien.ifs.somtoolbox.util.StdErrProgressWriter;
 
@@ -38,12 +45,44 @@ public abstract class TreeBuilder {
 
     protected int progress = 0; // how far are we?
 
+    /** The weight vector file of the map, next to which the dendrogram is cached; null if not cached. */
+    private String cacheWeightVectorFileName;
+
+    /** Whether the units are weighted by the number of inputs mapped to them. */
+    private boolean weightByHits = false;
+
     public abstract ClusteringTree createTree(GeneralUnitPNode[][] units) throws ClusteringAbortedException;
 
     public void setMonitor(ProgressMonitor monitor) {
         this.monitor = monitor;
     }
 
+    /**
+     * Caches the dendrograms created by this builder next to the given weight vector file, see
+     * {@link DendrogramCache}; a cached dendrogram is used if it was created for the same weight vectors. Pass
+     * <code>null</code> to disable the cache.
+     */
+    public void setDendrogramCache(String weightVectorFileName) {
+        this.cacheWeightVectorFileName = weightVectorFileName;
+    }
+
+    /**
+     * Sets whether each unit is weighted by the number of inputs mapped to it, i.e. stands for a cluster of that size,
+     * for the linkages that depend on the size of the clusters, e.g. Ward's linkage. Units without mapped inputs are
+     * then not clustered, which reduces the size of the clustering problem on sparsely populated maps; each of them is
+     * attached to the cluster of a non-empty unit close to it on the map, at a merge cost of zero, before all other
+     * merges. The non-empty units stay neighbours through the empty units between them, for the linkages that only
+     * merge neighbouring clusters. If no inputs are mapped at all, all units are clustered with weight one.<br/>
+     * This only applies to the builders based on a {@link DendrogramBuilder}.
+     */
+    public void setWeightByHits(boolean weightByHits) {
+        this.weightByHits = weightByHits;
+    }
+
+    public boolean isWeightByHits() {
+        return weightByHits;
+    }
+
     protected void resetMonitor(int maximum) {
         progress = 0;
         if (monitor != null) {
@@ -72,6 +111,353 @@ public abstract class TreeBuilder {
         }
     }
 
+    /**
+     * Creates the clustering tree with the given headless {@link DendrogramBuilder}, and creates the
+     * {@link ClusterNode}s for its merges. Units that do not exist (e.g. in mnemonic SOMs) are left out of the
+     * clustering; empty units are attached to the clustering of the other units if
+     * {@link #setWeightByHits(boolean) weighting by hits} is enabled.<br/>
+     * If a dendrogram cache is set via {@link #setDendrogramCache(String)}, a cached dendrogram of the same units is
+     * used instead of clustering, and a newly created dendrogram is written to the cache.
+     */
+    protected ClusteringTree createTree(GeneralUnitPNode[][] units, DendrogramBuilder builder)
+            throws ClusteringAbortedException {
+        ArrayList<GeneralUnitPNode> leafUnits = new ArrayList<GeneralUnitPNode>();
+        for (GeneralUnitPNode[] column : units) {
+            for (GeneralUnitPNode unit : column) {
+                if (unit != null) {
+                    leafUnits.add(unit);
+                }
+            }
+        }
+        int n = leafUnits.size();
+        int dim = leafUnits.get(0).getUnit().getWeightVector().length;
+
+        double[] weights = new double[n * dim];
+        int[] xPositions = new int[n];
+        int[] yPositions = new int[n];
+        for (int i = 0; i < n; i++) {
+            Unit unit = leafUnits.get(i).getUnit();
+            System.arraycopy(unit.getWeightVector(), 0, weights, i * dim, dim);
+            xPositions[i] = unit.getXPos();
+            yPositions[i] = unit.getYPos();
+        }
+
+        // the number of inputs mapped to each unit if weighting by hits, and the number of units that are clustered
+        int[] hits = null;
+        int clusteredCount = n;
+        if (weightByHits) {
+            hits = new int[n];
+            clusteredCount = 0;
+            for (int i = 0; i < n; i++) {
+                hits[i] = leafUnits.get(i).getUnit().getNumberOfMappedInputs();
+                if (hits[i] > 0) {
+                    clusteredCount++;
+                }
+            }
+            if (clusteredCount == 0) {
+                Logger.getLogger("at.tuwien.ifs.somtoolbox").warning(
+                        "No inputs mapped to the map, clustering all units with equal weights.");
+                hits = null;
+                clusteredCount = n;
+            }
+        }
+
+        resetMonitor(builder.getProgressSteps(clusteredCount));
+        Dendrogram dendrogram = createDendrogram(builder, weights, dim, xPositions, yPositions, hits);
+
+        ClusterNode[] clusters = new ClusterNode[n + dendrogram.getMergeCount()];
+        this.level = n;
+        for (int i = 0; i < n; i++) {
+            clusters[i] = new ClusterNode(leafUnits.get(i), level);
+        }
+        for (int m = 0; m < dendrogram.getMergeCount(); m++) {
+            level--;
+            clusters[n + m] = new ClusterNode(clusters[dendrogram.getChild1(m)], clusters[dendrogram.getChild2(m)],
+                    level, dendrogram.getCost(m));
+        }
+        finishMonitor();
+        return new ClusteringTree(clusters[clusters.length - 1], units.length);
+    }
+
+    /** Creates the dendrogram of all units with the given builder, or reads it from the dendrogram cache. */
+    private Dendrogram createDendrogram(DendrogramBuilder builder, double[] weights, int dim, int[] xPositions,
+            int[] yPositions, int[] hits) throws ClusteringAbortedException {
+        String cacheFileName = null;
+        byte[] cacheKey = null;
+        if (cacheWeightVectorFileName != null) {
+            String algName = builder.getClusteringAlgName() + (hits != null ? " weighted by hits" : "");
+            cacheFileName = DendrogramCache.getCacheFileName(cacheWeightVectorFileName, algName);
+            cacheKey = DendrogramCache.computeKey(weights, dim, xPositions, yPositions, hits, algName);
+            Dendrogram dendrogram = DendrogramCache.read(cacheFileName, cacheKey, xPositions.length);
+            if (dendrogram != null) {
+                Logger.getLogger("at.tuwien.ifs.somtoolbox").info("Read cached clustering from " + cacheFileName);
+                return dendrogram;
+            }
+        }
+
+        builder.setProgressHandler(new DendrogramBuilder.ProgressHandler() {
+            @Override
+            public void progress() throws ClusteringAbortedException {
+                incrementMonitor();
+                allowAborting();
+            }
+        });
+        Dendrogram dendrogram;
+        try {
+            if (hits != null) {
+                dendrogram = createWeightedDendrogram(builder, weights, dim, xPositions, yPositions, hits);
+            } else {
+                dendrogram = builder.createDendrogram(weights, dim, xPositions, yPositions);
+            }
+        } finally {
+            builder.setProgressHandler(null);
+        }
+        if (cacheFileName != null) {
+            try {
+                DendrogramCache.write(cacheFileName, cacheKey, dendrogram);
+            } catch (IOException e) {
+                Logger.getLogger("at.tuwien.ifs.somtoolbox").warning(
+                        "Could not write clustering cache " + cacheFileName + ": " + e.getMessage());
+            }
+        }
+        return dendrogram;
+    }
+
+    /**
+     * Clusters the units with mapped inputs, each weighted by its number of inputs, and attaches the empty units
+     * afterwards.<br/>
+     * Each empty unit is assigned to a non-empty unit closest to it on the map grid, see {@link #assignEmptyUnits},
+     * and two non-empty units are neighbours if any of the units assigned to them are adjacent. The neighbourhood of
+     * the non-empty units is thus the map grid contracted through the empty units, and stays connected wherever the
+     * grid is. Each empty unit is then merged into the cluster of the unit it is assigned to, at cost zero, before all
+     * other merges.
+     */
+    private static Dendrogram createWeightedDendrogram(DendrogramBuilder builder, double[] weights, int dim,
+            int[] xPositions, int[] yPositions, int[] hits) throws ClusteringAbortedException {
+        int n = hits.length;
+        // the index of each unit among the clustered units, or -1 if it is empty
+        int[] clusterIndices = new int[n];
+        int[] clusteredLeafs = new int[n];
+        int clusteredCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (hits[i] > 0) {
+                clusterIndices[i] = clusteredCount;
+                clusteredLeafs[clusteredCount++] = i;
+            } else {
+                clusterIndices[i] = -1;
+            }
+        }
+        if (clusteredCount == n) {
+            return builder.createDendrogram(weights, dim, xPositions, yPositions, hits);
+        }
+
+        double[] clusteredWeights = new double[clusteredCount * dim];
+        int[] clusteredXPositions = new int[clusteredCount];
+        int[] clusteredYPositions = new int[clusteredCount];
+        int[] leafSizes = new int[clusteredCount];
+        for (int k = 0; k < clusteredCount; k++) {
+            int i = clusteredLeafs[k];
+            System.arraycopy(weights, i * dim, clusteredWeights, k * dim, dim);
+            clusteredXPositions[k] = xPositions[i];
+            clusteredYPositions[k] = yPositions[i];
+            leafSizes[k] = hits[i];
+        }
+
+        int[][] gridEdges = DendrogramBuilder.createGridEdges(xPositions, yPositions);
+        int[] assignmentOrder = new int[n - clusteredCount];
+        int[] assignments = assignEmptyUnits(weights, clusteredWeights, dim, clusterIndices, gridEdges,
+                assignmentOrder);
+        int[][] neighbourEdges = contractEdges(gridEdges, assignments, clusteredCount);
+        Dendrogram dendrogram = builder.createDendrogram(clusteredWeights, dim, clusteredXPositions,
+                clusteredYPositions, leafSizes, neighbourEdges);
+        return attachEmptyUnits(dendrogram, weights, dim, clusteredLeafs, clusteredWeights, assignments,
+                assignmentOrder);
+    }
+
+    /**
+     * Assigns each empty unit to a non-empty unit closest to it on the map grid: the units are visited in
+     * breadth-first order from all non-empty units at once, along the given edges, and each empty unit is assigned to
+     * the same unit as one of its neighbours visited before, namely the one whose assigned unit has the closest weight
+     * vector. The units assigned to a non-empty unit are thus connected on the grid.
+     * 
+     * @param clusteredWeights the weight vectors of the non-empty units.
+     * @param clusterIndices the index of each unit among the non-empty units, or -1 if it is empty.
+     * @param assignmentOrder filled with the empty units in the order they are assigned, i.e. each after a neighbour
+     *            assigned to the same unit; the empty units not assigned follow at the end.
+     * @return the index of the non-empty unit each unit is assigned to, the unit itself for the non-empty units, or -1
+     *         for the empty units not connected to any non-empty unit.
+     */
+    private static int[] assignEmptyUnits(double[] weights, double[] clusteredWeights, int dim, int[] clusterIndices,
+            int[][] gridEdges, int[] assignmentOrder) {
+        int n = clusterIndices.length;
+        // the neighbours of each unit, stored at [neighbourOffsets[i], neighbourOffsets[i + 1])
+        int[] neighbourOffsets = new int[n + 1];
+        for (int e = 0; e < gridEdges[0].length; e++) {
+            neighbourOffsets[gridEdges[0][e] + 1]++;
+            neighbourOffsets[gridEdges[1][e] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            neighbourOffsets[i + 1] += neighbourOffsets[i];
+        }
+        int[] neighbours = new int[neighbourOffsets[n]];
+        int[] neighbourCounts = new int[n];
+        for (int e = 0; e < gridEdges[0].length; e++) {
+            int a = gridEdges[0][e];
+            int b = gridEdges[1][e];
+            neighbours[neighbourOffsets[a] + neighbourCounts[a]++] = b;
+            neighbours[neighbourOffsets[b] + neighbourCounts[b]++] = a;
+        }
+
+        int[] assignments = clusterIndices.clone();
+        boolean[] visited = new boolean[n];
+        int[] frontier = new int[n];
+        int frontierSize = 0;
+        for (int i = 0; i < n; i++) {
+            if (assignments[i] != -1) {
+                visited[i] = true;
+                frontier[frontierSize++] = i;
+            }
+        }
+        int[] next = new int[n];
+        double[] vector = new double[dim];
+        int assigned = 0;
+        while (frontierSize > 0) {
+            int nextSize = 0;
+            for (int f = 0; f < frontierSize; f++) {
+                for (int p = neighbourOffsets[frontier[f]]; p < neighbourOffsets[frontier[f] + 1]; p++) {
+                    if (!visited[neighbours[p]]) {
+                        visited[neighbours[p]] = true;
+                        next[nextSize++] = neighbours[p];
+                    }
+                }
+            }
+            // choose from the neighbours of the previous steps only, the units of this step are assigned afterwards
+            int[] chosen = new int[nextSize];
+            for (int f = 0; f < nextSize; f++) {
+                int i = next[f];
+                System.arraycopy(weights, i * dim, vector, 0, dim);
+                chosen[f] = -1;
+                double closestDistance = Double.POSITIVE_INFINITY;
+                for (int p = neighbourOffsets[i]; p < neighbourOffsets[i + 1]; p++) {
+                    int assignment = assignments[neighbours[p]];
+                    if (assignment == -1) {
+                        continue;
+                    }
+                    // the weights of the non-empty units are compared, as all units assigned to them will be merged
+                    double distance = L2Metric.squaredDistance(clusteredWeights, assignment * dim, vector,
+                            closestDistance);
+                    if (chosen[f] == -1 || distance < closestDistance) {
+                        closestDistance = distance;
+                        chosen[f] = assignment;
+                    }
+                }
+            }
+            for (int f = 0; f < nextSize; f++) {
+                assignments[next[f]] = chosen[f];
+                assignmentOrder[assigned++] = next[f];
+            }
+            int[] tmp = frontier;
+            frontier = next;
+            next = tmp;
+            frontierSize = nextSize;
+        }
+        for (int i = 0; i < n; i++) {
+            if (!visited[i]) {
+                assignmentOrder[assigned++] = i;
+            }
+        }
+        return assignments;
+    }
+
+    /**
+     * Contracts the given edges between all units to the edges between the non-empty units they are assigned to,
+     * dropping duplicate edges and those within the units assigned to the same non-empty unit.
+     * 
+     * @return the edges between the non-empty units, as indices among the non-empty units.
+     */
+    private static int[][] contractEdges(int[][] gridEdges, int[] assignments, int clusteredCount) {
+        long[] keys = new long[gridEdges[0].length];
+        int count = 0;
+        for (int e = 0; e < gridEdges[0].length; e++) {
+            int a = assignments[gridEdges[0][e]];
+            int b = assignments[gridEdges[1][e]];
+            if (a != -1 && b != -1 && a != b) {
+                keys[count++] = (long) Math.min(a, b) * clusteredCount + Math.max(a, b);
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        int[] units1 = new int[count];
+        int[] units2 = new int[count];
+        int edgeCount = 0;
+        for (int k = 0; k < count; k++) {
+            if (k == 0 || keys[k] != keys[k - 1]) {
+                units1[edgeCount] = (int) (keys[k] / clusteredCount);
+                units2[edgeCount] = (int) (keys[k] % clusteredCount);
+                edgeCount++;
+            }
+        }
+        return new int[][] { Arrays.copyOf(units1, edgeCount), Arrays.copyOf(units2, edgeCount) };
+    }
+
+    /**
+     * Extends the dendrogram of the non-empty units to all units: each empty unit is first merged, at cost zero, into
+     * the cluster of the non-empty unit it is assigned to, or if it is not assigned to any, of the non-empty unit with
+     * the closest weight vector; these merges are followed by the merges of the given dendrogram.
+     * 
+     * @param clusteredLeafs the index of each non-empty unit among all units.
+     * @param clusteredWeights the weight vectors of the non-empty units.
+     * @param assignments the index of the non-empty unit each unit is assigned to, or -1.
+     * @param assignmentOrder the empty units, in the order they are merged.
+     */
+    private static Dendrogram attachEmptyUnits(Dendrogram dendrogram, double[] weights, int dim,
+            int[] clusteredLeafs, double[] clusteredWeights, int[] assignments, int[] assignmentOrder) {
+        int n = assignments.length;
+        int clusteredCount = dendrogram.getLeafCount();
+        int attachCount = n - clusteredCount;
+        int[] children1 = new int[n - 1];
+        int[] children2 = new int[n - 1];
+        double[] costs = new double[n - 1];
+        int[] sizes = new int[n - 1];
+
+        // the current id of the cluster of each non-empty unit, initially the unit itself
+        int[] clusterIds = Arrays.copyOf(clusteredLeafs, clusteredCount);
+        double[] vector = new double[dim];
+        int merge = 0;
+        for (int i : assignmentOrder) {
+            int closest = assignments[i];
+            if (closest == -1) {
+                System.arraycopy(weights, i * dim, vector, 0, dim);
+                double closestDistance = Double.POSITIVE_INFINITY;
+                for (int k = 0; k < clusteredCount; k++) {
+                    double distance = L2Metric.squaredDistance(clusteredWeights, k * dim, vector, closestDistance);
+                    if (closest == -1 || distance < closestDistance) {
+                        closestDistance = distance;
+                        closest = k;
+                    }
+                }
+            }
+            children1[merge] = clusterIds[closest];
+            children2[merge] = i;
+            sizes[merge] = (clusterIds[closest] < n ? 1 : sizes[clusterIds[closest] - n]) + 1;
+            clusterIds[closest] = n + merge;
+            merge++;
+        }
+
+        for (int m = 0; m < dendrogram.getMergeCount(); m++, merge++) {
+            children1[merge] = getAttachedId(dendrogram.getChild1(m), clusterIds, n + attachCount);
+            children2[merge] = getAttachedId(dendrogram.getChild2(m), clusterIds, n + attachCount);
+            costs[merge] = dendrogram.getCost(m);
+            sizes[merge] = (children1[merge] < n ? 1 : sizes[children1[merge] - n])
+                    + (children2[merge] < n ? 1 : sizes[children2[merge] - n]);
+        }
+        return new Dendrogram(n, children1, children2, costs, sizes);
+    }
+
+    /** Maps an id of the dendrogram of the non-empty units to the id in the dendrogram of all units. */
+    private static int getAttachedId(int id, int[] clusterIds, int firstMergeId) {
+        return id < clusterIds.length ? clusterIds[id] : firstMergeId + id - clusterIds.length;
+    }
+
     public abstract String getClusteringAlgName();
 
 }
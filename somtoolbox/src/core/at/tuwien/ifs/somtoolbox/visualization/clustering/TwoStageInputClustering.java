@@ -0,0 +1,290 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.visualization.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import at.tuwien.ifs.somtoolbox.data.InputData;
+import at.tuwien.ifs.somtoolbox.data.InputDatum;
+import at.tuwien.ifs.somtoolbox.layers.GrowingLayer;
+import at.tuwien.ifs.somtoolbox.layers.Unit;
+import at.tuwien.ifs.somtoolbox.visualization.clustering.LinkageDendrogramBuilder.Linkage;
+
+/**
+ * Creates a Ward's linkage {@link Dendrogram} of all input vectors mapped to a SOM, using the SOM as a pre-quantiser.
+ * Clustering all inputs directly takes O(n^2) time and memory; instead, the clustering is done in two stages:
+ * <ol>
+ * <li>The inputs mapped to each unit are clustered with the exact Ward's linkage of
+ * {@link WardsLinkageDendrogramBuilder}. The units are clustered independently, and thus in parallel, in
+ * O(sum of the squared number of inputs per unit).</li>
+ * <li>The units with mapped inputs are clustered with Ward's linkage, each unit standing for the cluster of its inputs,
+ * i.e. the mean of its inputs with the number of inputs as size, see
+ * {@link LinkageDendrogramBuilder#createWeightedDendrogram(double[], int, int[])}, in O(units^2). Empty units are left
+ * out.</li>
+ * </ol>
+ * The dendrogram has one leaf per input; its merges are the merges within the units, ordered by their cost, followed by
+ * the merges of the units. Cutting the dendrogram into at most as many clusters as there are non-empty units thus gives
+ * the Ward's clustering of the units; cutting it into more clusters splits the units. All merge costs are the increase
+ * of the error sum of squares, but the costs of the unit merges are not necessarily higher than the costs of the merges
+ * within the units.<br/>
+ * The leafs are labelled with the names of the inputs, see {@link #getLabels()} and {@link #getClusters(int)}.
+ * 
+ * @author agent
+ * @version $Id$
+ */
+public class TwoStageInputClustering {
+
+    private final GrowingLayer layer;
+
+    private final InputData data;
+
+    private int numberOfCPUs = 1;
+
+    private Dendrogram dendrogram;
+
+    private String[] labels;
+
+    public TwoStageInputClustering(GrowingLayer layer, InputData data) {
+        this.layer = layer;
+        this.data = data;
+    }
+
+    /** Sets the number of threads used to cluster the inputs of the units. */
+    public void setNumberOfCPUs(int numberOfCPUs) {
+        this.numberOfCPUs = Math.max(1, numberOfCPUs);
+    }
+
+    /** Returns the dendrogram of all inputs mapped to the layer, which is created on the first call. */
+    public Dendrogram getDendrogram() throws ClusteringAbortedException {
+        if (dendrogram == null) {
+            createDendrogram();
+        }
+        return dendrogram;
+    }
+
+    /** Returns the names of the inputs, i.e. the label of each leaf of the {@link #getDendrogram()}. */
+    public String[] getLabels() throws ClusteringAbortedException {
+        getDendrogram();
+        return labels;
+    }
+
+    /**
+     * Cuts the dendrogram into the given number of clusters.
+     * 
+     * @return the names of the inputs in each cluster
+     * @see Dendrogram#getClusterAssignment(int)
+     */
+    public String[][] getClusters(int clusters) throws ClusteringAbortedException {
+        int[] assignment = getDendrogram().getClusterAssignment(clusters);
+        int[] clusterSizes = new int[Math.min(Math.max(1, clusters), labels.length)];
+        for (int cluster : assignment) {
+            clusterSizes[cluster]++;
+        }
+        String[][] clusterLabels = new String[clusterSizes.length][];
+        for (int c = 0; c < clusterLabels.length; c++) {
+            clusterLabels[c] = new String[clusterSizes[c]];
+            clusterSizes[c] = 0;
+        }
+        for (int i = 0; i < assignment.length; i++) {
+            clusterLabels[assignment[i]][clusterSizes[assignment[i]]++] = labels[i];
+        }
+        return clusterLabels;
+    }
+
+    private void createDendrogram() throws ClusteringAbortedException {
+        ArrayList<Unit> units = new ArrayList<Unit>();
+        for (Unit unit : layer.getAllUnits()) {
+            if (unit != null && unit.getNumberOfMappedInputs() > 0) {
+                units.add(unit);
+            }
+        }
+        if (units.isEmpty()) {
+            throw new IllegalArgumentException("No inputs are mapped to the layer.");
+        }
+        final int dim = layer.getDim();
+
+        // the leafs of each unit are numbered consecutively, starting at unitStarts[u]
+        int unitCount = units.size();
+        int[] unitStarts = new int[unitCount + 1];
+        final double[][] unitVectors = new double[unitCount][];
+        int[] hits = new int[unitCount];
+        double[] centroids = new double[unitCount * dim];
+        ArrayList<String> leafLabels = new ArrayList<String>();
+        for (int u = 0; u < unitCount; u++) {
+            String[] names = units.get(u).getMappedInputNames();
+            hits[u] = names.length;
+            unitStarts[u + 1] = unitStarts[u] + names.length;
+            unitVectors[u] = new double[names.length * dim];
+            for (int i = 0; i < names.length; i++) {
+                InputDatum datum = data.getInputDatum(names[i]);
+                if (datum == null) {
+                    throw new IllegalArgumentException("Input '" + names[i] + "' mapped to unit "
+                            + units.get(u).printCoordinates() + " is not contained in the input data.");
+                }
+                for (int d = 0; d < dim; d++) {
+                    double value = datum.getVector().getQuick(d);
+                    unitVectors[u][i * dim + d] = value;
+                    centroids[u * dim + d] += value;
+                }
+                leafLabels.add(names[i]);
+            }
+            for (int d = 0; d < dim; d++) {
+                centroids[u * dim + d] /= names.length;
+            }
+        }
+        int n = unitStarts[unitCount];
+
+        Dendrogram[] unitDendrograms = clusterUnits(unitVectors, dim);
+        Dendrogram top = new LinkageDendrogramBuilder(Linkage.WARD).createWeightedDendrogram(centroids, dim, hits);
+
+        // order the merges within the units by their cost; merges of equal cost keep their order
+        int unitMergeCount = n - unitCount;
+        final int[] mergeUnits = new int[unitMergeCount];
+        final int[] unitMerges = new int[unitMergeCount];
+        final double[] unitMergeCosts = new double[unitMergeCount];
+        int[] unitMergeStarts = new int[unitCount];
+        Integer[] order = new Integer[unitMergeCount];
+        for (int u = 0, index = 0; u < unitCount; u++) {
+            unitMergeStarts[u] = index;
+            for (int m = 0; m < hits[u] - 1; m++, index++) {
+                mergeUnits[index] = u;
+                unitMerges[index] = m;
+                unitMergeCosts[index] = unitDendrograms[u].getCost(m);
+                order[index] = index;
+            }
+        }
+        // merge sort, i.e. stable
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(unitMergeCosts[o1], unitMergeCosts[o2]);
+            }
+        });
+        int[] mergeIds = new int[unitMergeCount];
+        for (int m = 0; m < unitMergeCount; m++) {
+            mergeIds[order[m]] = n + m;
+        }
+
+        int[] children1 = new int[n - 1];
+        int[] children2 = new int[n - 1];
+        double[] costs = new double[n - 1];
+        int[] sizes = new int[n - 1];
+        for (int m = 0; m < unitMergeCount; m++) {
+            int merge = order[m];
+            int u = mergeUnits[merge];
+            Dendrogram unitDendrogram = unitDendrograms[u];
+            children1[m] = getId(unitDendrogram, unitDendrogram.getChild1(unitMerges[merge]), unitStarts[u],
+                    mergeIds, unitMergeStarts[u]);
+            children2[m] = getId(unitDendrogram, unitDendrogram.getChild2(unitMerges[merge]), unitStarts[u],
+                    mergeIds, unitMergeStarts[u]);
+            costs[m] = unitMergeCosts[merge];
+        }
+        // the unit clusters are the leafs of the top dendrogram, and the roots of the unit dendrograms
+        int[] unitRoots = new int[unitCount];
+        for (int u = 0; u < unitCount; u++) {
+            unitRoots[u] = hits[u] == 1 ? unitStarts[u] : mergeIds[unitMergeStarts[u] + hits[u] - 2];
+        }
+        for (int m = 0; m < top.getMergeCount(); m++) {
+            children1[unitMergeCount + m] = getTopId(top.getChild1(m), unitRoots, n + unitMergeCount);
+            children2[unitMergeCount + m] = getTopId(top.getChild2(m), unitRoots, n + unitMergeCount);
+            costs[unitMergeCount + m] = top.getCost(m);
+        }
+        for (int m = 0; m < n - 1; m++) {
+            sizes[m] = getSize(children1[m], n, sizes) + getSize(children2[m], n, sizes);
+        }
+
+        labels = leafLabels.toArray(new String[n]);
+        dendrogram = new Dendrogram(n, children1, children2, costs, sizes);
+    }
+
+    /** Maps an id of the dendrogram of a unit to the id in the dendrogram of all inputs. */
+    private static int getId(Dendrogram unitDendrogram, int id, int unitStart, int[] mergeIds, int unitMergeStart) {
+        if (unitDendrogram.isLeaf(id)) {
+            return unitStart + id;
+        } else {
+            return mergeIds[unitMergeStart + id - unitDendrogram.getLeafCount()];
+        }
+    }
+
+    /** Maps an id of the dendrogram of the units to the id in the dendrogram of all inputs. */
+    private static int getTopId(int id, int[] unitRoots, int firstTopMergeId) {
+        return id < unitRoots.length ? unitRoots[id] : firstTopMergeId + id - unitRoots.length;
+    }
+
+    private static int getSize(int id, int leafCount, int[] sizes) {
+        return id < leafCount ? 1 : sizes[id - leafCount];
+    }
+
+    /** Creates the dendrograms of the inputs of each unit, in parallel if more than one CPU is used. */
+    private Dendrogram[] clusterUnits(final double[][] unitVectors, final int dim) throws ClusteringAbortedException {
+        final Dendrogram[] unitDendrograms = new Dendrogram[unitVectors.length];
+        if (numberOfCPUs == 1) {
+            for (int u = 0; u < unitVectors.length; u++) {
+                unitDendrograms[u] = clusterUnit(unitVectors[u], dim);
+            }
+            return unitDendrograms;
+        }
+
+        ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(unitVectors.length);
+        for (int u = 0; u < unitVectors.length; u++) {
+            final int unit = u;
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() throws ClusteringAbortedException {
+                    unitDendrograms[unit] = clusterUnit(unitVectors[unit], dim);
+                    return null;
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfCPUs);
+        try {
+            for (Future<Object> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ClusteringAbortedException) {
+                throw (ClusteringAbortedException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        return unitDendrograms;
+    }
+
+    /** Creates the dendrogram of the inputs of one unit, or null if only one input is mapped to it. */
+    private static Dendrogram clusterUnit(double[] vectors, int dim) throws ClusteringAbortedException {
+        int inputs = vectors.length / dim;
+        if (inputs < 2) {
+            return null;
+        }
+        // the positions are not used by the linkage
+        int[] positions = new int[inputs];
+        return new WardsLinkageDendrogramBuilder().createDendrogram(vectors, dim, positions, positions);
+    }
+
+}
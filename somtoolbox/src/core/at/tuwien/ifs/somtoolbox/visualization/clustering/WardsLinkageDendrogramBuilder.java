@@ -0,0 +1,61 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.visualization.clustering;
+
+import at.tuwien.ifs.somtoolbox.layers.metrics.L2Metric;
+
+/**
+ * Creates the exact Ward's linkage clustering using the nearest-neighbour chain algorithm of
+ * {@link LinkageDendrogramBuilder}. The merge costs between all clusters are kept in a condensed array of the
+ * upper-right half of the distance matrix, and updated after each merge with the Lance-Williams formula for Ward's
+ * linkage, which avoids computing the cluster means altogether:
+ * 
+ * <pre>
+ * d(k, i+j) = ((n_i + n_k) d(k, i) + (n_j + n_k) d(k, j) - n_k d(i, j)) / (n_i + n_j + n_k)
+ * </pre>
+ * 
+ * As Ward's linkage is reducible, two clusters that are each other's nearest neighbours can be merged as soon as they
+ * are found, and the nearest neighbour chain finds all merges in O(n^2) time, using O(n^2) memory for the distances.
+ * The merges are found in a different order than their costs would suggest, and are thus sorted by their cost, which
+ * gives the same merge order and merge costs as {@link WardsLinkageTreeBuilderAll}.
+ * 
+ * @author agent
+ * @version $Id$
+ */
+public class WardsLinkageDendrogramBuilder extends LinkageDendrogramBuilder {
+
+    public WardsLinkageDendrogramBuilder() {
+        super(Linkage.WARD);
+    }
+
+    /**
+     * Calculates the increase of the Error Sum of Squares if two clusters with the given means and sizes are united,
+     * without allocating any temporary objects. As in {@link AbstractWardsLinkageTreeBuilder}, the square root is not
+     * taken.
+     */
+    public static double calcESSincrease(double[] mean1, int size1, double[] mean2, int size2) {
+        double squaredDistance = L2Metric.squaredDistance(mean1, 0, mean2, Double.POSITIVE_INFINITY);
+        return squaredDistance / (size1 + size2) * size1 * size2;
+    }
+
+    @Override
+    public String getClusteringAlgName() {
+        return "Ward's Linkage (nearest neighbour chain)";
+    }
+
+}
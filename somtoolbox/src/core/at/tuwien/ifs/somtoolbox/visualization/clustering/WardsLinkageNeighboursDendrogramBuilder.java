@@ -0,0 +1,414 @@
+/*
+ * Copyright 2026 Information & Software Engineering Group (188/1)
+ *                Institute of Software Technology and Interactive Systems
+ *                Vienna University of Technology, Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.ifs.tuwien.ac.at/dm/somtoolbox/license.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.tuwien.ifs.somtoolbox.visualization.clustering;
+
+import java.util.Arrays;
+
+/**
+ * Creates a Ward's linkage clustering in which only clusters that are neighbours on the map can be merged; two clusters
+ * are neighbours if any of their units are horizontally, vertically or diagonally adjacent, or connected by one of the
+ * edges given to {@link #createDendrogram(double[], int, int[], int[], int[], int[][])}. This is the clustering of
+ * {@link WardsLinkageTreeBuilder}.
+ * <p>
+ * As the neighbourhood graph has only O(n) edges, each cluster keeps a list of its edges, and all edges are kept in an
+ * indexed min-heap ordered by their merge cost. A merge only visits the edges of the two merged clusters, redirecting
+ * them to the new cluster and updating their costs in the heap, which needs O(log n) per edge. The cluster means are
+ * kept in a primitive array, and merged in O(dim).
+ * </p>
+ * As the merge costs are not monotonic, the merges are kept in the order they are made in. If the neighbourhood graph
+ * is not connected, e.g. for mnemonic SOMs, the remaining clusters are finally merged
+ * without the neighbourhood restriction, using the nearest-neighbour chain algorithm over their means.
+ * 
+ * @author agent
+ * @version $Id$
+ */
+public class WardsLinkageNeighboursDendrogramBuilder extends DendrogramBuilder {
+
+    /** the end points of each edge; after a merge, the merged cluster is stored at the lower index */
+    private int[] edgeClusters1;
+
+    private int[] edgeClusters2;
+
+    private double[] edgeCosts;
+
+    /**
+     * the heap of the edges, the costs of the edges in the heap (kept alongside to avoid cache misses), and the
+     * position of each edge in the heap, or -1 if it is not in the heap any more
+     */
+    private int[] heap;
+
+    private double[] heapCosts;
+
+    private int[] heapPositions;
+
+    private int heapSize;
+
+    @Override
+    public Dendrogram createDendrogram(double[] weights, int dim, int[] xPositions, int[] yPositions)
+            throws ClusteringAbortedException {
+        return createDendrogram(weights, dim, xPositions, yPositions, null);
+    }
+
+    @Override
+    public Dendrogram createDendrogram(double[] weights, int dim, int[] xPositions, int[] yPositions, int[] leafSizes)
+            throws ClusteringAbortedException {
+        return createDendrogram(weights, dim, xPositions, yPositions, leafSizes,
+                createGridEdges(xPositions, yPositions));
+    }
+
+    @Override
+    public Dendrogram createDendrogram(double[] weights, int dim, int[] xPositions, int[] yPositions,
+            int[] leafSizes, int[][] neighbourEdges) throws ClusteringAbortedException {
+        int n = xPositions.length;
+        double[] means = weights.clone();
+        int[] sizes;
+        if (leafSizes != null) {
+            sizes = leafSizes.clone();
+        } else {
+            sizes = new int[n];
+            Arrays.fill(sizes, 1);
+        }
+
+        // the end points are changed by the merges
+        edgeClusters1 = neighbourEdges[0].clone();
+        edgeClusters2 = neighbourEdges[1].clone();
+        int edgeCount = edgeClusters1.length;
+        edgeCosts = new double[edgeCount];
+
+        // the edges of each cluster; edges that were removed are skipped, and dropped when the cluster is merged
+        int[][] clusterEdges = new int[n][];
+        int[] clusterEdgeCounts = new int[n];
+        for (int e = 0; e < edgeCount; e++) {
+            addEdge(clusterEdges, clusterEdgeCounts, edgeClusters1[e], e);
+            addEdge(clusterEdges, clusterEdgeCounts, edgeClusters2[e], e);
+        }
+
+        heap = new int[edgeCount];
+        heapCosts = new double[edgeCount];
+        heapPositions = new int[edgeCount];
+        heapSize = 0;
+        for (int e = 0; e < edgeCount; e++) {
+            if (e % Math.max(1, edgeCount / n) == 0) {
+                progress();
+            }
+            edgeCosts[e] = calcESSincrease(means, dim, edgeClusters1[e], sizes[edgeClusters1[e]], edgeClusters2[e],
+                    sizes[edgeClusters2[e]]);
+            heap[heapSize] = e;
+            heapCosts[heapSize] = edgeCosts[e];
+            heapPositions[e] = heapSize;
+            heapSize++;
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+
+        int[] mergeLeafs1 = new int[n - 1];
+        int[] mergeLeafs2 = new int[n - 1];
+        double[] mergeCosts = new double[n - 1];
+        int merge = 0;
+
+        // marks the neighbours of the new cluster, to find duplicate edges
+        int[] neighbourMarks = new int[n];
+        Arrays.fill(neighbourMarks, -1);
+
+        while (heapSize > 0) {
+            progress();
+            int edge = heap[0];
+            removeFromHeap(edge);
+            int a = Math.min(edgeClusters1[edge], edgeClusters2[edge]);
+            int b = Math.max(edgeClusters1[edge], edgeClusters2[edge]);
+            mergeLeafs1[merge] = a;
+            mergeLeafs2[merge] = b;
+            mergeCosts[merge] = edgeCosts[edge];
+            merge++;
+            mergeMeans(means, dim, sizes, a, b);
+
+            // redirect the edges of both clusters to the merged cluster at a, dropping the edge between them and
+            // duplicate edges to the same neighbour
+            int[] mergedEdges = new int[clusterEdgeCounts[a] + clusterEdgeCounts[b]];
+            int count = 0;
+            for (int cluster : new int[] { a, b }) {
+                for (int i = 0; i < clusterEdgeCounts[cluster]; i++) {
+                    int e = clusterEdges[cluster][i];
+                    if (heapPositions[e] == -1) {
+                        continue;
+                    }
+                    int neighbour = edgeClusters1[e] == cluster ? edgeClusters2[e] : edgeClusters1[e];
+                    if (neighbour == a || neighbour == b || neighbourMarks[neighbour] == a) {
+                        removeFromHeap(e);
+                        continue;
+                    }
+                    neighbourMarks[neighbour] = a;
+                    edgeClusters1[e] = a;
+                    edgeClusters2[e] = neighbour;
+                    mergedEdges[count++] = e;
+                }
+            }
+            clusterEdges[a] = mergedEdges;
+            clusterEdgeCounts[a] = count;
+            clusterEdges[b] = null;
+            clusterEdgeCounts[b] = 0;
+
+            for (int i = 0; i < count; i++) {
+                int e = mergedEdges[i];
+                int neighbour = edgeClusters2[e];
+                neighbourMarks[neighbour] = -1;
+                double cost = calcESSincrease(means, dim, a, sizes[a], neighbour, sizes[neighbour]);
+                double oldCost = edgeCosts[e];
+                edgeCosts[e] = cost;
+                int position = heapPositions[e];
+                heapCosts[position] = cost;
+                if (cost < oldCost) {
+                    siftUp(position);
+                } else {
+                    siftDown(position);
+                }
+            }
+        }
+
+        if (merge < n - 1) {
+            merge = mergeComponents(means, dim, sizes, mergeLeafs1, mergeLeafs2, mergeCosts, merge);
+        }
+
+        edgeClusters1 = null;
+        edgeClusters2 = null;
+        edgeCosts = null;
+        heap = null;
+        heapCosts = null;
+        heapPositions = null;
+        // with the neighbourhood restriction, a merge can be cheaper than an earlier one; keep the order of the merges
+        return Dendrogram.fromLeafMerges(n, mergeLeafs1, mergeLeafs2, mergeCosts, false);
+    }
+
+    private static void addEdge(int[][] clusterEdges, int[] clusterEdgeCounts, int cluster, int edge) {
+        if (clusterEdges[cluster] == null) {
+            clusterEdges[cluster] = new int[8];
+        } else if (clusterEdgeCounts[cluster] == clusterEdges[cluster].length) {
+            clusterEdges[cluster] = Arrays.copyOf(clusterEdges[cluster], clusterEdges[cluster].length * 2);
+        }
+        clusterEdges[cluster][clusterEdgeCounts[cluster]++] = edge;
+    }
+
+    /**
+     * Merges the clusters that are not connected in the neighbourhood graph with the nearest-neighbour chain
+     * algorithm, as {@link LinkageDendrogramBuilder} does for Ward's linkage, in O(c^2) for c clusters: the chain is
+     * grown from a cluster to the cluster with the lowest merge cost, until the last two clusters are each other's
+     * nearest neighbours, and can thus be merged. The merges are then ordered by their cost, as if always the two
+     * clusters with the lowest merge cost were merged.
+     * 
+     * @return the number of merges done in total
+     */
+    private int mergeComponents(double[] means, int dim, int[] sizes, int[] mergeLeafs1, int[] mergeLeafs2,
+            double[] mergeCosts, int merge) throws ClusteringAbortedException {
+        int n = sizes.length;
+        // the clusters left are those not merged into another cluster
+        boolean[] merged = new boolean[n];
+        for (int m = 0; m < merge; m++) {
+            merged[mergeLeafs2[m]] = true;
+        }
+        int[] clusters = new int[n - merge];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (!merged[i]) {
+                clusters[count++] = i;
+            }
+        }
+
+        int firstMerge = merge;
+        boolean[] active = new boolean[count];
+        Arrays.fill(active, true);
+        int[] chain = new int[count];
+        int chainLength = 0;
+        int firstActive = 0;
+        for (int left = count; left > 1; left--) {
+            progress();
+            if (chainLength == 0) {
+                while (!active[firstActive]) {
+                    firstActive++;
+                }
+                chain[chainLength++] = firstActive;
+            }
+
+            // grow the chain until its last two clusters are each other's nearest neighbours
+            int a;
+            int b;
+            double cost;
+            for (;;) {
+                a = chain[chainLength - 1];
+                // on equal costs, prefer the previous cluster in the chain, which guarantees termination
+                if (chainLength > 1) {
+                    b = chain[chainLength - 2];
+                    cost = calcESSincrease(means, dim, clusters[a], sizes[clusters[a]], clusters[b],
+                            sizes[clusters[b]]);
+                } else {
+                    b = -1;
+                    cost = Double.POSITIVE_INFINITY;
+                }
+                int previous = b;
+                for (int k = 0; k < count; k++) {
+                    if (!active[k] || k == a) {
+                        continue;
+                    }
+                    double c = calcESSincrease(means, dim, clusters[a], sizes[clusters[a]], clusters[k],
+                            sizes[clusters[k]]);
+                    if (c < cost) {
+                        cost = c;
+                        b = k;
+                    }
+                }
+                if (b == previous) {
+                    break;
+                }
+                chain[chainLength++] = b;
+            }
+            chainLength -= 2;
+
+            // the merged cluster is kept at the lower index, as in the neighbourhood merges
+            if (clusters[b] < clusters[a]) {
+                int tmp = a;
+                a = b;
+                b = tmp;
+            }
+            mergeLeafs1[merge] = clusters[a];
+            mergeLeafs2[merge] = clusters[b];
+            mergeCosts[merge] = cost;
+            merge++;
+            mergeMeans(means, dim, sizes, clusters[a], clusters[b]);
+            active[b] = false;
+        }
+
+        // order the merges by cost with a stable insertion sort; as Ward's linkage has no inversions, a merge is never
+        // moved before a merge of one of its clusters
+        for (int m = firstMerge + 1; m < merge; m++) {
+            int leaf1 = mergeLeafs1[m];
+            int leaf2 = mergeLeafs2[m];
+            double cost = mergeCosts[m];
+            int position = m;
+            while (position > firstMerge && mergeCosts[position - 1] > cost) {
+                mergeLeafs1[position] = mergeLeafs1[position - 1];
+                mergeLeafs2[position] = mergeLeafs2[position - 1];
+                mergeCosts[position] = mergeCosts[position - 1];
+                position--;
+            }
+            mergeLeafs1[position] = leaf1;
+            mergeLeafs2[position] = leaf2;
+            mergeCosts[position] = cost;
+        }
+        return merge;
+    }
+
+    /** Merges the mean and size of cluster b into cluster a. */
+    private static void mergeMeans(double[] means, int dim, int[] sizes, int a, int b) {
+        int sizeA = sizes[a];
+        int sizeB = sizes[b];
+        int size = sizeA + sizeB;
+        int offsetA = a * dim;
+        int offsetB = b * dim;
+        for (int d = 0; d < dim; d++) {
+            means[offsetA + d] = (means[offsetA + d] * sizeA + means[offsetB + d] * sizeB) / size;
+        }
+        sizes[a] = size;
+    }
+
+    /** The Ward's linkage cost of merging the clusters a and b, as {@link WardsLinkageDendrogramBuilder#calcESSincrease}. */
+    private static double calcESSincrease(double[] means, int dim, int a, int sizeA, int b, int sizeB) {
+        int offsetA = a * dim;
+        int offsetB = b * dim;
+        double squaredDistance = 0;
+        for (int d = 0; d < dim; d++) {
+            double diff = means[offsetA + d] - means[offsetB + d];
+            squaredDistance += diff * diff;
+        }
+        return squaredDistance / (sizeA + sizeB) * sizeA * sizeB;
+    }
+
+    /** Compares two edges by their cost; edges of equal cost are ordered by their index, for a deterministic result. */
+    private static boolean isLess(double cost1, int edge1, double cost2, int edge2) {
+        return cost1 < cost2 || cost1 == cost2 && edge1 < edge2;
+    }
+
+    private void removeFromHeap(int edge) {
+        int position = heapPositions[edge];
+        heapPositions[edge] = -1;
+        heapSize--;
+        if (position == heapSize) {
+            return;
+        }
+        int last = heap[heapSize];
+        double lastCost = heapCosts[heapSize];
+        heap[position] = last;
+        heapCosts[position] = lastCost;
+        heapPositions[last] = position;
+        int parent = (position - 1) / 2;
+        if (position > 0 && isLess(lastCost, last, heapCosts[parent], heap[parent])) {
+            siftUp(position);
+        } else {
+            siftDown(position);
+        }
+    }
+
+    private void siftUp(int position) {
+        int edge = heap[position];
+        double cost = heapCosts[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!isLess(cost, edge, heapCosts[parent], heap[parent])) {
+                break;
+            }
+            moveInHeap(parent, position);
+            position = parent;
+        }
+        heap[position] = edge;
+        heapCosts[position] = cost;
+        heapPositions[edge] = position;
+    }
+
+    private void siftDown(int position) {
+        int edge = heap[position];
+        double cost = heapCosts[position];
+        for (;;) {
+            int child = 2 * position + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && isLess(heapCosts[child + 1], heap[child + 1], heapCosts[child], heap[child])) {
+                child++;
+            }
+            if (!isLess(heapCosts[child], heap[child], cost, edge)) {
+                break;
+            }
+            moveInHeap(child, position);
+            position = child;
+        }
+        heap[position] = edge;
+        heapCosts[position] = cost;
+        heapPositions[edge] = position;
+    }
+
+    private void moveInHeap(int from, int to) {
+        heap[to] = heap[from];
+        heapCosts[to] = heapCosts[from];
+        heapPositions[heap[to]] = to;
+    }
+
+    @Override
+    public String getClusteringAlgName() {
+        return "Ward's Linkage (onlyNeighbourDistances)";
+    }
+
+}
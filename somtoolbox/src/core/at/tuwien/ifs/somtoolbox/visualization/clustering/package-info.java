@@ -23,6 +23,9 @@
  <li>Single Linkage: {@link at.tuwien.ifs.somtoolbox.visualization.clustering.SingleLinkageTreeBuilder}</li>
  <li>Complete Linkage: {@link at.tuwien.ifs.somtoolbox.visualization.clustering.CompleteLinkageTreeBuilder}</li>
  <li>Wards Clustering: {@link at.tuwien.ifs.somtoolbox.visualization.clustering.WardsLinkageTreeBuilder}</li>
+ <li>Exact Wards Clustering: {@link at.tuwien.ifs.somtoolbox.visualization.clustering.WardsLinkageTreeBuilderNNChain}</li>
+ <li>Average, weighted, centroid and median linkage: {@link at.tuwien.ifs.somtoolbox.visualization.clustering.LinkageTreeBuilder}</li>
+ <li>Wards Clustering of the input vectors, using the SOM as a pre-quantiser: {@link at.tuwien.ifs.somtoolbox.visualization.clustering.TwoStageInputClustering}</li>
  </ul>
 
  @see at.tuwien.ifs.somtoolbox.visualization.clustering.SingleLinkageTreeBuilder
@@ -40,7 +40,7 @@ import at.tuwien.ifs.somtoolbox.visualization.clustering.ClusteringAbortedExcept
 import at.tuwien.ifs.somtoolbox.visualization.clustering.ClusteringTree;
 import at.tuwien.ifs.somtoolbox.visualization.clustering.LabelCoordinates;
 import at.tuwien.ifs.somtoolbox.visualization.clustering.WardsLinkageTreeBuilder;
-import at.tuwien.ifs.somtoolbox.visualization.clustering.WardsLinkageTreeBuilderAll;
+import at.tuwien.ifs.somtoolbox.visualization.clustering.WardsLinkageTreeBuilderNNChain;
 
 /**
  * @author Doris Baum
@@ -602,11 +602,11 @@ public class SOMComparison {
 
     public ArrayList<Shift> calculateClusterShifts(MapPNode map1, MapPNode map2) throws ClusteringAbortedException {
         // build clustering trees for both maps
-        // Angela: WardsLinkageTreeBuilderAll() ist jetzt das "richtige" wards (aber halt langsam)
+        // the exact Ward's clustering, as WardsLinkageTreeBuilderAll(), but in O(n^2)
         // 2x "if" dazugegeben, damit nicht jedesmal der baum neu berechnet wird, wenn ein anderes level von
         // clustern angezeigt wird...
         if (map1.getCurrentClusteringTree() == null) {
-            map1.buildTree(new WardsLinkageTreeBuilderAll());
+            map1.buildTree(new WardsLinkageTreeBuilderNNChain());
         }
 
         ClusteringTree tree1 = map1.getClusteringTree();
@@ -614,7 +614,7 @@ public class SOMComparison {
                 gsom1.getLayer().getYSize());
 
         if (map2.getCurrentClusteringTree() == null) {
-            map2.buildTree(new WardsLinkageTreeBuilderAll());
+            map2.buildTree(new WardsLinkageTreeBuilderNNChain());
         }
 
         ClusteringTree tree2 = map2.getClusteringTree();
@@ -25,13 +25,13 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.TreeMap;
-import java.util.TreeSet;
 import java.util.logging.Logger;
 
 import at.tuwien.ifs.somtoolbox.layers.Unit;
 import at.tuwien.ifs.somtoolbox.layers.metrics.L2Metric;
 import at.tuwien.ifs.somtoolbox.layers.metrics.MetricException;
 import at.tuwien.ifs.somtoolbox.models.GrowingSOM;
+import at.tuwien.ifs.somtoolbox.util.UnionFind;
 
 /**
  * @author Thomas Kern
@@ -122,43 +122,31 @@ public abstract class Graph {
         // Create an empty list of edges to hold the tree edges (for Kruskal)
         ArrayList<Edge> treeEdges = new ArrayList<Edge>();
 
-        // Create a set for every node
-        LinkedList<TreeSet<Node>> kruskalSets = new LinkedList<TreeSet<Node>>();
+        // Create a set for every node, identified by the index of the node
+        HashMap<String, Integer> nodeIndices = new HashMap<String, Integer>(adjList.size() * 2);
         for (Node n : adjList.keySet()) {
-            TreeSet<Node> s = new TreeSet<Node>();
-            s.add(n);
-            kruskalSets.add(s);
+            nodeIndices.put(n.getLabel(), nodeIndices.size());
         }
+        UnionFind kruskalSets = new UnionFind(nodeIndices.size());
 
-        // Sort edges by weight (Fancy code...)
+        // Sort edges by weight
         Collections.sort(edges, new Comparator<Edge>() {
             @Override
             public int compare(Edge e1, Edge e2) {
-                return e1.getWeight() > e2.getWeight() ? 1 : -1;
+                return Double.compare(e1.getWeight(), e2.getWeight());
             }
         });
 
         /* Do Kruskal */
         for (Edge e : edges) {
-            Node u = e.getStart();
-            Node v = e.getEnd();
-            TreeSet<Node> uset = null;
-            TreeSet<Node> vset = null;
-
-            for (TreeSet<Node> s : kruskalSets) {
-                if (s.contains(u)) {
-                    uset = s;
-                }
-                if (s.contains(v)) {
-                    vset = s;
-                }
-            }
-
-            assert uset != null;
-            if (!uset.equals(vset)) {
-                uset.addAll(vset);
-                kruskalSets.remove(vset);
+            int u = nodeIndices.get(e.getStart().getLabel());
+            int v = nodeIndices.get(e.getEnd().getLabel());
+            if (!kruskalSets.isConnected(u, v)) {
+                kruskalSets.union(u, v);
                 treeEdges.add(e);
+                if (kruskalSets.getSetCount() == 1) {
+                    break;
+                }
             }
         }
 